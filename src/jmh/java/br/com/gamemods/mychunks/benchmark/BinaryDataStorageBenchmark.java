@@ -0,0 +1,118 @@
+package br.com.gamemods.mychunks.benchmark;
+
+import br.com.gamemods.mychunks.data.binary.BinaryDataStorage;
+import br.com.gamemods.mychunks.data.state.*;
+import com.flowpowered.math.vector.Vector3i;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the throughput of the binary storage on a temporary directory. A full region of 1024 claimed chunks with
+ * a few members each is saved on the setup.
+ * <ul>
+ *     <li>saveChunk: rewrites a single chunk</li>
+ *     <li>saveRegion: rewrites all chunks of the region in a single batch</li>
+ *     <li>loadCached: loads a chunk that is still cached by the storage</li>
+ *     <li>loadCold: loads a chunk with a new storage instance, reading the region header and the record</li>
+ * </ul>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BinaryDataStorageBenchmark
+{
+    private static final int CHUNKS = 32 * 32;
+
+    @Param({"false", "true"})
+    public boolean memoryMapped;
+
+    private Path dir;
+    private BinaryDataStorage storage;
+    private WorldFallbackContext world;
+    private List<ClaimedChunk> chunks;
+    private int next;
+
+    @Setup
+    public void setUp() throws Exception
+    {
+        dir = Files.createTempDirectory("mychunks-benchmark");
+        storage = new BinaryDataStorage(dir.toFile(), memoryMapped);
+        world = new WorldFallbackContext(UUID.randomUUID());
+        chunks = new ArrayList<>(CHUNKS);
+        PlayerName owner = new PlayerName(UUID.randomUUID(), "Owner");
+        Rank builder = new Rank("builder", EnumSet.of(Permission.MODIFY));
+        for(int i = 0; i < CHUNKS; i++)
+        {
+            ClaimedChunk chunk = new ClaimedChunk(world, new Vector3i(i & 31, 0, i >> 5));
+            chunk.setOwner(owner);
+            for(int j = 0; j < 4; j++)
+                chunk.addMember(new Member(new PlayerName(UUID.randomUUID(), "Member "+j), builder));
+            chunks.add(chunk);
+        }
+        storage.prepareSave(chunks).write();
+    }
+
+    @TearDown
+    public void tearDown() throws IOException
+    {
+        Files.walkFileTree(dir, new SimpleFileVisitor<Path>()
+        {
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException
+            {
+                Files.delete(file);
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult postVisitDirectory(Path dir, IOException exc) throws IOException
+            {
+                Files.delete(dir);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    private ClaimedChunk nextChunk()
+    {
+        return chunks.get(next++ & (CHUNKS - 1));
+    }
+
+    @Benchmark
+    public ClaimedChunk saveChunk() throws Exception
+    {
+        ClaimedChunk chunk = nextChunk();
+        storage.saveChunk(chunk);
+        return chunk;
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @BenchmarkMode(Mode.AverageTime)
+    public void saveRegion() throws Exception
+    {
+        storage.prepareSave(chunks).write();
+    }
+
+    @Benchmark
+    public Optional<ClaimedChunk> loadCached() throws Exception
+    {
+        return storage.loadChunk(world, nextChunk().getPosition());
+    }
+
+    @Benchmark
+    public Optional<ClaimedChunk> loadCold() throws Exception
+    {
+        File storageDir = dir.toFile();
+        return new BinaryDataStorage(storageDir, memoryMapped).loadChunk(world, nextChunk().getPosition());
+    }
+}
@@ -0,0 +1,109 @@
+package br.com.gamemods.mychunks.benchmark;
+
+import br.com.gamemods.mychunks.BulkChangeEvaluator;
+import br.com.gamemods.mychunks.ChunkMap;
+import br.com.gamemods.mychunks.data.state.ClaimedChunk;
+import br.com.gamemods.mychunks.data.state.Permission;
+import br.com.gamemods.mychunks.data.state.PlayerName;
+import br.com.gamemods.mychunks.data.state.WorldFallbackContext;
+import com.flowpowered.math.vector.Vector3i;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+import static br.com.gamemods.mychunks.PositionType.BLOCK;
+
+/**
+ * Evaluates a block change with {@value #TRANSACTIONS} transactions on claimed chunks, comparing the old per-transaction
+ * evaluation that remembered the checked chunks in a {@link HashSet} of {@link Vector3i} with the {@link BulkChangeEvaluator}.
+ * <p>The "explosion" shape affects a sphere that touches a few chunks, the "edit" shape is a flat area that touches
+ * many chunks, like a WorldEdit selection.</p>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BulkChangeBenchmark
+{
+    private static final int TRANSACTIONS = 10_000;
+
+    @Param({"explosion", "edit"})
+    public String shape;
+
+    private Vector3i[] blocks;
+    private ChunkMap<ClaimedChunk> claims;
+    private Map<Vector3i, ClaimedChunk> vectorClaims;
+    private UUID player;
+    private BulkChangeEvaluator evaluator;
+    private BitSet denied;
+
+    @Setup
+    public void setUp()
+    {
+        Random random = new Random(1);
+        blocks = new Vector3i[TRANSACTIONS];
+        for(int i = 0; i < TRANSACTIONS; i++)
+        {
+            if("explosion".equals(shape))
+                blocks[i] = new Vector3i(random.nextInt(24) - 12, 64 + random.nextInt(24) - 12, random.nextInt(24) - 12);
+            else
+                blocks[i] = new Vector3i(i % 400, 64, i / 400 * 16);
+        }
+
+        WorldFallbackContext world = new WorldFallbackContext(UUID.randomUUID());
+        PlayerName owner = new PlayerName(UUID.randomUUID(), "Owner");
+        player = owner.getUniqueId();
+        claims = new ChunkMap<>();
+        vectorClaims = new HashMap<>();
+        for(Vector3i block: blocks)
+        {
+            Vector3i chunk = BLOCK.toMinChunk(block);
+            if(!claims.containsKey(chunk))
+            {
+                ClaimedChunk claimedChunk = new ClaimedChunk(world, chunk);
+                claimedChunk.setOwner(owner);
+                claims.put(chunk, claimedChunk);
+                vectorClaims.put(chunk, claimedChunk);
+            }
+        }
+
+        evaluator = new BulkChangeEvaluator();
+        denied = new BitSet();
+    }
+
+    @Benchmark
+    public boolean perTransaction()
+    {
+        Set<Vector3i> checked = new HashSet<>();
+        for(Vector3i block: blocks)
+        {
+            Vector3i chunk = BLOCK.toMinChunk(block);
+            if(!checked.add(chunk))
+                continue;
+
+            ClaimedChunk claimedChunk = vectorClaims.get(chunk);
+            if(claimedChunk != null && !claimedChunk.check(Permission.MODIFY, player))
+                return false;
+        }
+        return true;
+    }
+
+    @Benchmark
+    public int bulk()
+    {
+        long[] keys = evaluator.keyBuffer(TRANSACTIONS);
+        for(int i = 0; i < TRANSACTIONS; i++)
+        {
+            Vector3i block = blocks[i];
+            keys[i] = BLOCK.toMinChunkKey(block.getX(), block.getZ());
+        }
+
+        return evaluator.evaluate(keys, TRANSACTIONS, key -> {
+            ClaimedChunk claimedChunk = claims.get(key);
+            return claimedChunk == null || claimedChunk.check(Permission.MODIFY, player);
+        }, denied, false);
+    }
+}
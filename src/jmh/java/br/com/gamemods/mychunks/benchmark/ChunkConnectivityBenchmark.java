@@ -0,0 +1,86 @@
+package br.com.gamemods.mychunks.benchmark;
+
+import br.com.gamemods.mychunks.ChunkConnectivity;
+import br.com.gamemods.mychunks.ChunkMap;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures {@link ChunkConnectivity#isSplitByRemoval(ChunkMap, int, int)} on groups of about {@code size} chunks.
+ * <ul>
+ *     <li>square: a filled square, the center is solved by the local ring check</li>
+ *     <li>grid: a square with a hole on every other chunk, the search must go around the holes</li>
+ *     <li>loop: the border of a square, the searches walk half of the border each before meeting</li>
+ *     <li>line: a straight line split in the middle, the searches walk until one side is exhausted</li>
+ * </ul>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ChunkConnectivityBenchmark
+{
+    @Param({"100", "10000", "40000"})
+    public int size;
+
+    @Param({"square", "grid", "loop", "line"})
+    public String shape;
+
+    private ChunkMap<Boolean> chunks;
+    private int x, z;
+
+    @Setup
+    public void setUp()
+    {
+        chunks = new ChunkMap<>();
+        int side = (int) Math.ceil(Math.sqrt(size));
+        switch (shape)
+        {
+            case "square":
+                for(int i = 0; i < side * side; i++)
+                    chunks.put(i % side, i / side, true);
+                x = z = side / 2;
+                break;
+            case "grid":
+                side |= 1;
+                for(int i = 0; i < side * side; i++)
+                {
+                    int cx = i % side, cz = i / side;
+                    if((cx & 1) == 0 || (cz & 1) == 0)
+                        chunks.put(cx, cz, true);
+                }
+                x = side / 2 | 1;
+                z = x - 1;
+                break;
+            case "loop":
+                side = size / 4 + 1;
+                for(int i = 0; i < side; i++)
+                {
+                    chunks.put(i, 0, true);
+                    chunks.put(i, side - 1, true);
+                    chunks.put(0, i, true);
+                    chunks.put(side - 1, i, true);
+                }
+                x = side / 2;
+                z = 0;
+                break;
+            case "line":
+                for(int i = 0; i < size; i++)
+                    chunks.put(i, 0, true);
+                x = size / 2;
+                z = 0;
+                break;
+            default:
+                throw new IllegalArgumentException(shape);
+        }
+    }
+
+    @Benchmark
+    public boolean isSplitByRemoval()
+    {
+        return ChunkConnectivity.isSplitByRemoval(chunks, x, z);
+    }
+}
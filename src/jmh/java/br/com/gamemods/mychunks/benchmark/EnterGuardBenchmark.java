@@ -0,0 +1,109 @@
+package br.com.gamemods.mychunks.benchmark;
+
+import br.com.gamemods.mychunks.ChunkMap;
+import br.com.gamemods.mychunks.EnterGuard;
+import br.com.gamemods.mychunks.data.state.*;
+import com.flowpowered.math.vector.Vector3i;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.spongepowered.api.util.Tristate;
+
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import static br.com.gamemods.mychunks.PositionType.BLOCK;
+
+/**
+ * Measures one server tick of movement packets from {@code players} players walking around a claimed area, comparing
+ * the {@link EnterGuard} with a full permission check on every packet. Each player moves about 0.3 blocks per packet
+ * so most packets stay inside the same chunk, like walking players do.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EnterGuardBenchmark
+{
+    @Param({"200"})
+    public int players;
+
+    private WorldFallbackContext worldContext;
+    private ChunkMap<ClaimedChunk> chunks;
+    private EnterGuard guard;
+    private UUID[] playerIds;
+    private double[] x, z, dx, dz;
+
+    @Setup
+    public void setUp()
+    {
+        worldContext = new WorldFallbackContext(UUID.randomUUID());
+        chunks = new ChunkMap<>();
+        PlayerName owner = new PlayerName(UUID.randomUUID(), "Owner");
+        for(int cx = -8; cx < 8; cx++)
+            for(int cz = -8; cz < 8; cz++)
+            {
+                ClaimedChunk chunk = new ClaimedChunk(worldContext, new Vector3i(cx, 0, cz));
+                chunk.setOwner(owner);
+                chunk.setPublicPermission(Permission.ENTER, Tristate.fromBoolean(((cx ^ cz) & 3) != 0));
+                chunks.put(cx, cz, chunk);
+                worldContext.publish(chunk);
+            }
+
+        guard = new EnterGuard();
+        Random random = new Random(7);
+        playerIds = new UUID[players];
+        x = new double[players];
+        z = new double[players];
+        dx = new double[players];
+        dz = new double[players];
+        for(int i = 0; i < players; i++)
+        {
+            playerIds[i] = UUID.randomUUID();
+            x[i] = random.nextInt(256) - 128;
+            z[i] = random.nextInt(256) - 128;
+            double angle = random.nextDouble() * Math.PI * 2;
+            dx[i] = Math.cos(angle) * 0.3;
+            dz[i] = Math.sin(angle) * 0.3;
+        }
+    }
+
+    private void move(int i)
+    {
+        x[i] += dx[i];
+        z[i] += dz[i];
+        // Bounces inside the claimed area
+        if(x[i] < -128 || x[i] >= 128)
+            dx[i] = -dx[i];
+        if(z[i] < -128 || z[i] >= 128)
+            dz[i] = -dz[i];
+    }
+
+    @Benchmark
+    public void guard(Blackhole blackhole)
+    {
+        for(int i = 0; i < players; i++)
+        {
+            int fromX = (int) Math.floor(x[i]), fromZ = (int) Math.floor(z[i]);
+            move(i);
+            int toX = (int) Math.floor(x[i]), toZ = (int) Math.floor(z[i]);
+            if(EnterGuard.isCrossing(fromX, fromZ, toX, toZ))
+                blackhole.consume(guard.canEnter(playerIds[i], worldContext, BLOCK.toMinChunkKey(toX, toZ), () -> false));
+        }
+    }
+
+    @Benchmark
+    public void fullCheck(Blackhole blackhole)
+    {
+        for(int i = 0; i < players; i++)
+        {
+            move(i);
+            int toX = (int) Math.floor(x[i]), toZ = (int) Math.floor(z[i]);
+            ClaimedChunk chunk = chunks.get(BLOCK.toMinChunkKey(toX, toZ));
+            blackhole.consume(chunk == null? worldContext.getWilderness().check(Permission.ENTER, playerIds[i], false)
+                    : chunk.check(Permission.ENTER, playerIds[i], false));
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package br.com.gamemods.mychunks.benchmark;
+
+import br.com.gamemods.mychunks.data.state.*;
+import com.flowpowered.math.vector.Vector3i;
+import org.openjdk.jmh.annotations.*;
+import org.spongepowered.api.util.Tristate;
+
+import java.util.EnumSet;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the permission checks that are done for every block change, with contexts that have a varying amount of members.
+ * The member is the last one that was added and the outsider falls back to the public permissions.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PermissionCheckBenchmark
+{
+    @Param({"0", "10", "100", "1000"})
+    public int members;
+
+    private PublicContext publicContext;
+    private OwnedContext ownedContext;
+    private ClaimedChunk claimedChunk;
+    private ClaimedChunk zoneChunk;
+    private UUID owner, member, outsider;
+
+    @Setup
+    public void setUp() throws Exception
+    {
+        Rank builder = new Rank("builder", EnumSet.of(Permission.MODIFY));
+        PlayerName ownerName = new PlayerName(UUID.randomUUID(), "Owner");
+        owner = ownerName.getUniqueId();
+        outsider = UUID.randomUUID();
+        member = outsider;
+
+        publicContext = new PublicContext();
+        publicContext.setPublicPermission(Permission.ENTER, Tristate.TRUE);
+
+        WorldFallbackContext world = new WorldFallbackContext(UUID.randomUUID());
+        ownedContext = new OwnedContext();
+        claimedChunk = new ClaimedChunk(world, new Vector3i(0, 0, 0));
+        Zone zone = new Zone(world, "Benchmark");
+        zoneChunk = new ClaimedChunk(world, new Vector3i(1, 0, 0));
+        for(OwnedContext context: new OwnedContext[]{ownedContext, claimedChunk, zone})
+        {
+            context.setOwner(ownerName);
+            context.setPublicPermission(Permission.ENTER, Tristate.TRUE);
+        }
+        zoneChunk.setOwner(ownerName);
+        zone.addChunk(zoneChunk);
+
+        for(int i = 0; i < members; i++)
+        {
+            PlayerName player = new PlayerName(UUID.randomUUID(), "Member "+i);
+            member = player.getUniqueId();
+            ownedContext.addMember(new Member(player, builder));
+            claimedChunk.addMember(new Member(player, builder));
+            zone.addMember(new Member(player, builder));
+        }
+    }
+
+    @Benchmark
+    public boolean publicContext()
+    {
+        return publicContext.check(Permission.ENTER, outsider);
+    }
+
+    @Benchmark
+    public boolean ownedContextOwner()
+    {
+        return ownedContext.check(Permission.MODIFY, owner, false);
+    }
+
+    @Benchmark
+    public boolean ownedContextMember()
+    {
+        return ownedContext.check(Permission.MODIFY, member, false);
+    }
+
+    @Benchmark
+    public boolean ownedContextOutsider()
+    {
+        return ownedContext.check(Permission.MODIFY, outsider, false);
+    }
+
+    @Benchmark
+    public boolean claimedChunkMember()
+    {
+        return claimedChunk.check(Permission.MODIFY, member, false);
+    }
+
+    @Benchmark
+    public boolean claimedChunkOutsider()
+    {
+        return claimedChunk.check(Permission.MODIFY, outsider, false);
+    }
+
+    @Benchmark
+    public boolean zoneChunkMember()
+    {
+        return zoneChunk.check(Permission.MODIFY, member, false);
+    }
+}
@@ -0,0 +1,121 @@
+package br.com.gamemods.mychunks.benchmark;
+
+import br.com.gamemods.mychunks.ChunkMap;
+import br.com.gamemods.mychunks.Util;
+import com.flowpowered.math.vector.Vector3i;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import static br.com.gamemods.mychunks.PositionType.BLOCK;
+import static br.com.gamemods.mychunks.PositionType.CHUNK;
+
+/**
+ * Compares the {@link Vector3i} conversions with the primitive conversions that are used on the block change path.
+ * Each invocation converts a batch of {@value #POSITIONS} positions.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PositionTypeBenchmark
+{
+    private static final int POSITIONS = 1024;
+
+    private Vector3i[] blocks;
+    private Vector3i[] chunks;
+    private int[] blockX, blockZ;
+    private int[] chunkX, chunkZ;
+
+    private Map<Vector3i, Object> vectorMap;
+    private ChunkMap<Object> chunkMap;
+
+    @Setup
+    public void setUp()
+    {
+        Random random = new Random(1);
+        blocks = new Vector3i[POSITIONS];
+        chunks = new Vector3i[POSITIONS];
+        blockX = new int[POSITIONS];
+        blockZ = new int[POSITIONS];
+        chunkX = new int[POSITIONS];
+        chunkZ = new int[POSITIONS];
+        vectorMap = new HashMap<>();
+        chunkMap = new ChunkMap<>();
+
+        for(int i = 0; i < POSITIONS; i++)
+        {
+            blocks[i] = new Vector3i(random.nextInt(20000) - 10000, random.nextInt(256), random.nextInt(20000) - 10000);
+            blockX[i] = blocks[i].getX();
+            blockZ[i] = blocks[i].getZ();
+            chunks[i] = BLOCK.toMinChunk(blocks[i]);
+            chunkX[i] = chunks[i].getX();
+            chunkZ[i] = chunks[i].getZ();
+
+            // Half of the positions are claimed
+            if(i % 2 == 0)
+            {
+                vectorMap.put(chunks[i], chunks[i]);
+                chunkMap.put(chunks[i], chunks[i]);
+            }
+        }
+    }
+
+    @Benchmark
+    public void blockToChunkVector(Blackhole blackhole)
+    {
+        for(Vector3i block: blocks)
+            blackhole.consume(BLOCK.toMinChunk(block));
+    }
+
+    @Benchmark
+    public void blockToChunkKey(Blackhole blackhole)
+    {
+        for(int i = 0; i < POSITIONS; i++)
+            blackhole.consume(BLOCK.toMinChunkKey(blockX[i], blockZ[i]));
+    }
+
+    @Benchmark
+    public void chunkToRegionVector(Blackhole blackhole)
+    {
+        for(Vector3i chunk: chunks)
+            blackhole.consume(Util.chunkToRegion(chunk));
+    }
+
+    @Benchmark
+    public void chunkToRegionMinVector(Blackhole blackhole)
+    {
+        for(Vector3i chunk: chunks)
+            blackhole.consume(CHUNK.toMinRegion(chunk));
+    }
+
+    @Benchmark
+    public void chunkToRegionKey(Blackhole blackhole)
+    {
+        for(int i = 0; i < POSITIONS; i++)
+            blackhole.consume(CHUNK.toMinRegionKey(chunkX[i], chunkZ[i]));
+    }
+
+    /**
+     * The block change lookup before the primitive keys: a vector conversion followed by a hash map lookup
+     */
+    @Benchmark
+    public void lookupVector(Blackhole blackhole)
+    {
+        for(Vector3i block: blocks)
+            blackhole.consume(vectorMap.get(BLOCK.toMinChunk(block)));
+    }
+
+    @Benchmark
+    public void lookupKey(Blackhole blackhole)
+    {
+        for(int i = 0; i < POSITIONS; i++)
+            blackhole.consume(chunkMap.get(BLOCK.toMinChunkKey(blockX[i], blockZ[i])));
+    }
+}
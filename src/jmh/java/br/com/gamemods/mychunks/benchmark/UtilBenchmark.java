@@ -0,0 +1,33 @@
+package br.com.gamemods.mychunks.benchmark;
+
+import br.com.gamemods.mychunks.Util;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the identifier normalization that is used by the rank and zone name checks
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class UtilBenchmark
+{
+    @Param({"builder", "Zone Spawn Área Nº 2", "  A much longer zone name with ümlauts and Ącçénts -- 12345  "})
+    public String identifier;
+
+    @Benchmark
+    public String normalizeIdentifier()
+    {
+        return Util.normalizeIdentifier(identifier);
+    }
+
+    @Benchmark
+    public String normalizeEnglishIdentifier()
+    {
+        return Util.normalizeEnglishIdentifier(identifier);
+    }
+}
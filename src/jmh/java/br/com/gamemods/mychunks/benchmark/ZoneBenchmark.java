@@ -0,0 +1,93 @@
+package br.com.gamemods.mychunks.benchmark;
+
+import br.com.gamemods.mychunks.data.state.ClaimedChunk;
+import br.com.gamemods.mychunks.data.state.WorldFallbackContext;
+import br.com.gamemods.mychunks.data.state.Zone;
+import com.flowpowered.math.vector.Vector3i;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the zone operations at different zone sizes. The zone is a square filled in row-major order so every added
+ * chunk touches the previous ones.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ZoneBenchmark
+{
+    @Param({"10", "100", "1000", "10000"})
+    public int size;
+
+    private WorldFallbackContext world;
+    private ClaimedChunk[] chunks;
+    private Zone zone;
+    private Vector3i center, corner;
+
+    @Setup
+    public void setUp() throws Exception
+    {
+        world = new WorldFallbackContext(UUID.randomUUID());
+        int side = (int) Math.ceil(Math.sqrt(size));
+        chunks = new ClaimedChunk[size];
+        for(int i = 0; i < size; i++)
+            chunks[i] = new ClaimedChunk(world, new Vector3i(i % side, 0, i / side));
+
+        zone = buildZone();
+        center = chunks[size / 2].getPosition();
+        corner = chunks[0].getPosition();
+    }
+
+    private Zone buildZone() throws Exception
+    {
+        Zone zone = new Zone(world, "Benchmark");
+        for(ClaimedChunk chunk: chunks)
+            zone.addChunk(chunk);
+        return zone;
+    }
+
+    /**
+     * Adds the last chunk of the zone again, measuring a single addChunk call on a zone with {@code size - 1} chunks
+     */
+    @Benchmark
+    public Zone addChunk()
+    {
+        ClaimedChunk last = chunks[size - 1];
+        zone.removeChunkAt(last.getPosition());
+        zone.addChunk(last);
+        return zone;
+    }
+
+    /**
+     * Creates a new zone with new chunks at the same positions
+     */
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @Warmup(iterations = 3)
+    @Measurement(iterations = 5)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public Zone buildWholeZone() throws Exception
+    {
+        Zone zone = new Zone(world, "Benchmark");
+        for(ClaimedChunk chunk: chunks)
+            zone.addChunk(new ClaimedChunk(world, chunk.getPosition()));
+        return zone;
+    }
+
+    @Benchmark
+    public boolean isChunkRequiredCenter()
+    {
+        return zone.isChunkRequired(center);
+    }
+
+    @Benchmark
+    public boolean isChunkRequiredCorner()
+    {
+        return zone.isChunkRequired(corner);
+    }
+}
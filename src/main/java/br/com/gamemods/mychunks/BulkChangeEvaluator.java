@@ -0,0 +1,122 @@
+package br.com.gamemods.mychunks;
+
+import org.spongepowered.api.util.annotation.NonnullByDefault;
+
+import javax.annotation.ParametersAreNonnullByDefault;
+import java.util.BitSet;
+
+/**
+ * <p>Evaluates the transactions of a block change grouped by chunk. The transactions are visited in a single pass and
+ * each distinct chunk is evaluated only once, no matter how many transactions it contains, so events with thousands of
+ * transactions like explosions and pistons costs one check per affected chunk.</p>
+ * <p>The instance reuses its buffers between evaluations and must be used by a single thread.</p>
+ */
+@ParametersAreNonnullByDefault
+@NonnullByDefault
+public final class BulkChangeEvaluator
+{
+    /**
+     * Decides if the changes inside a chunk are allowed
+     */
+    @FunctionalInterface
+    public interface ChunkPredicate
+    {
+        /**
+         * @param chunkKey The chunk position packed with {@link PositionType#pack(int, int)}
+         */
+        boolean test(long chunkKey);
+    }
+
+    private final ChunkMap<Boolean> decisions = new ChunkMap<>();
+    private long[] keys = new long[64];
+    private int evaluatedChunks;
+    private long firstDeniedChunk;
+
+    /**
+     * A buffer that can hold the chunk keys of all transactions of an event. The same array is returned until a bigger
+     * one is needed.
+     * @param count The amount of transactions
+     */
+    public long[] keyBuffer(int count)
+    {
+        if(keys.length < count)
+            keys = new long[Math.max(count, keys.length * 2)];
+        return keys;
+    }
+
+    /**
+     * Evaluates all transactions
+     * @param chunkKeys The packed chunk key of each transaction, in the transaction order
+     * @param count The amount of transactions
+     * @param predicate Called once for each distinct chunk
+     * @param denied Receives the index of each denied transaction, it's cleared before the evaluation
+     * @param stopOnDenial If the evaluation should stop on the first denied transaction, used when the whole change
+     *                     will be cancelled anyway
+     * @return The amount of denied transactions that were found
+     */
+    public int evaluate(long[] chunkKeys, int count, ChunkPredicate predicate, BitSet denied, boolean stopOnDenial)
+    {
+        denied.clear();
+        evaluatedChunks = 0;
+        int deniedCount = 0;
+        try
+        {
+            // Transactions are usually sorted by position, consecutive keys skips the map lookup
+            long lastKey = 0;
+            boolean lastAllowed = true, hasLast = false;
+            for(int i = 0; i < count; i++)
+            {
+                long key = chunkKeys[i];
+                boolean allowed;
+                if(hasLast && key == lastKey)
+                    allowed = lastAllowed;
+                else
+                {
+                    Boolean decision = decisions.get(key);
+                    if(decision == null)
+                    {
+                        allowed = predicate.test(key);
+                        decisions.put(key, allowed? Boolean.TRUE : Boolean.FALSE);
+                        evaluatedChunks++;
+                    }
+                    else
+                        allowed = decision;
+
+                    lastKey = key;
+                    lastAllowed = allowed;
+                    hasLast = true;
+                }
+
+                if(!allowed)
+                {
+                    if(deniedCount++ == 0)
+                        firstDeniedChunk = key;
+                    denied.set(i);
+                    if(stopOnDenial)
+                        return deniedCount;
+                }
+            }
+            return deniedCount;
+        }
+        finally
+        {
+            decisions.clear();
+        }
+    }
+
+    /**
+     * The amount of distinct chunks that were evaluated by the last {@link #evaluate(long[], int, ChunkPredicate, BitSet, boolean)} call
+     */
+    public int getEvaluatedChunks()
+    {
+        return evaluatedChunks;
+    }
+
+    /**
+     * The chunk of the first denied transaction found by the last evaluation, only valid when a transaction was denied
+     */
+    public long getFirstDeniedChunk()
+    {
+        return firstDeniedChunk;
+    }
+}
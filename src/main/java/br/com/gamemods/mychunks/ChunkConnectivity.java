@@ -0,0 +1,214 @@
+package br.com.gamemods.mychunks;
+
+import org.spongepowered.api.util.annotation.NonnullByDefault;
+
+import javax.annotation.ParametersAreNonnullByDefault;
+import java.util.Arrays;
+
+import static br.com.gamemods.mychunks.PositionType.*;
+
+/**
+ * <p>Checks if removing a chunk from a 4-connected group of chunks splits the group in two or more parts.</p>
+ * <p>The check is done in two steps:</p>
+ * <ol>
+ *     <li>The 8 chunks around the removed chunk are inspected, if all remaining neighbours are connected through them
+ *     the group stays connected. This solves most checks with 8 lookups.</li>
+ *     <li>Otherwise a breadth-first search starts from each neighbour and the searches advances in lockstep, one chunk each
+ *     per step. The searches are merged when they meet, the group stays connected when all of them meet and is split
+ *     when a search runs out of chunks alone. The cost is bounded by the size of the smallest part that would be
+ *     disconnected or by the distance between the neighbours, not by the group size.</li>
+ * </ol>
+ * <p>The group must be connected before the removal.</p>
+ */
+@ParametersAreNonnullByDefault
+@NonnullByDefault
+public final class ChunkConnectivity
+{
+    // The 8 chunks around a chunk in circular order, the cardinal neighbours are on the even indexes
+    private static final int[] RING_X = { 1, 1, 0, -1, -1, -1,  0,  1};
+    private static final int[] RING_Z = { 0, 1, 1,  1,  0, -1, -1, -1};
+    private static final Integer[] LABELS = {0, 1, 2, 3};
+
+    private ChunkConnectivity()
+    {}
+
+    /**
+     * Checks if removing a chunk disconnects the other chunks of the group
+     * @param chunks The chunks of the group, including the chunk that will be removed
+     * @param chunkX The X coordinate of the chunk that will be removed
+     * @param chunkZ The Z coordinate of the chunk that will be removed
+     * @return {@code true} if the remaining chunks would not be connected anymore. {@code false} if the group stays
+     * connected or if the chunk is not part of the group
+     */
+    public static boolean isSplitByRemoval(ChunkMap<?> chunks, int chunkX, int chunkZ)
+    {
+        if(chunks.size() <= 2 || !chunks.containsKey(chunkX, chunkZ))
+            return false;
+
+        boolean[] ring = new boolean[8];
+        int neighbours = 0;
+        for(int i = 0; i < 8; i++)
+        {
+            ring[i] = chunks.containsKey(chunkX + RING_X[i], chunkZ + RING_Z[i]);
+            if(ring[i] && (i & 1) == 0)
+                neighbours++;
+        }
+
+        // A chunk with a single neighbour is a tip, nothing depends on it
+        if(neighbours <= 1 || isRingConnected(ring))
+            return false;
+
+        return !searchConnected(chunks, chunkX, chunkZ, ring);
+    }
+
+    /**
+     * Checks if all cardinal neighbours are in the same sequence of present chunks around the removed chunk
+     */
+    private static boolean isRingConnected(boolean[] ring)
+    {
+        int start = -1;
+        for(int i = 0; i < 8; i++)
+            if(!ring[i])
+            {
+                start = i;
+                break;
+            }
+
+        if(start < 0)
+            return true;
+
+        int runsWithNeighbours = 0;
+        boolean runHasNeighbour = false;
+        for(int step = 1; step <= 8; step++)
+        {
+            int i = (start + step) & 7;
+            if(ring[i])
+            {
+                if((i & 1) == 0)
+                    runHasNeighbour = true;
+            }
+            else
+            {
+                if(runHasNeighbour)
+                    runsWithNeighbours++;
+                runHasNeighbour = false;
+            }
+        }
+
+        return runsWithNeighbours <= 1;
+    }
+
+    private static boolean searchConnected(ChunkMap<?> chunks, int chunkX, int chunkZ, boolean[] ring)
+    {
+        long removed = pack(chunkX, chunkZ);
+        ChunkMap<Integer> labels = new ChunkMap<>(64);
+        LongQueue[] queues = new LongQueue[4];
+        int[] parent = new int[4];
+        int searches = 0;
+        for(int i = 0; i < 8; i += 2)
+            if(ring[i])
+            {
+                long start = pack(chunkX + RING_X[i], chunkZ + RING_Z[i]);
+                labels.put(start, LABELS[searches]);
+                queues[searches] = new LongQueue();
+                queues[searches].add(start);
+                parent[searches] = searches;
+                searches++;
+            }
+
+        int groups = searches;
+        while(true)
+        {
+            for(int search = 0; search < searches; search++)
+            {
+                LongQueue queue = queues[search];
+                if(queue.isEmpty())
+                {
+                    if(isGroupExhausted(queues, parent, searches, find(parent, search)))
+                        return false;
+                    continue;
+                }
+
+                long current = queue.poll();
+                int x = unpackX(current), z = unpackZ(current);
+                for(int i = 0; i < 8; i += 2)
+                {
+                    int nx = x + RING_X[i], nz = z + RING_Z[i];
+                    long next = pack(nx, nz);
+                    if(next == removed)
+                        continue;
+
+                    Integer label = labels.get(next);
+                    if(label == null)
+                    {
+                        if(chunks.containsKey(next))
+                        {
+                            labels.put(next, LABELS[search]);
+                            queue.add(next);
+                        }
+                    }
+                    else
+                    {
+                        int a = find(parent, search), b = find(parent, label);
+                        if(a != b)
+                        {
+                            parent[b] = a;
+                            if(--groups == 1)
+                                return true;
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    private static int find(int[] parent, int search)
+    {
+        while(parent[search] != search)
+            search = parent[search];
+        return search;
+    }
+
+    private static boolean isGroupExhausted(LongQueue[] queues, int[] parent, int searches, int group)
+    {
+        for(int search = 0; search < searches; search++)
+            if(find(parent, search) == group && !queues[search].isEmpty())
+                return false;
+        return true;
+    }
+
+    /**
+     * A growable FIFO queue of primitive longs
+     */
+    private static final class LongQueue
+    {
+        private long[] elements = new long[16];
+        private int head, tail;
+
+        boolean isEmpty()
+        {
+            return head == tail;
+        }
+
+        void add(long value)
+        {
+            if(tail == elements.length)
+            {
+                if(head > elements.length / 2)
+                {
+                    System.arraycopy(elements, head, elements, 0, tail - head);
+                    tail -= head;
+                    head = 0;
+                }
+                else
+                    elements = Arrays.copyOf(elements, elements.length * 2);
+            }
+            elements[tail++] = value;
+        }
+
+        long poll()
+        {
+            return elements[head++];
+        }
+    }
+}
@@ -0,0 +1,417 @@
+package br.com.gamemods.mychunks;
+
+import com.flowpowered.math.vector.Vector3i;
+import org.spongepowered.api.util.annotation.NonnullByDefault;
+
+import javax.annotation.Nullable;
+import javax.annotation.ParametersAreNonnullByDefault;
+import java.util.*;
+
+import static br.com.gamemods.mychunks.PositionType.pack;
+import static br.com.gamemods.mychunks.PositionType.unpack;
+
+/**
+ * <p>A map that uses the X and Z coordinates packed by {@link PositionType#pack(int, int)} as key.</p>
+ * <p>The entries are stored in primitive arrays using open addressing with linear probing, so lookups by the
+ * primitive coordinates don't box or allocate anything. This makes it safe to be used on hot paths like block change events.</p>
+ * <p>This class also implements a {@link Map} view keyed by {@link Vector3i} for compatibility, the height of the keys
+ * is always {@code 0} on this view. The view allocates vectors so it should be avoided when performance matters.</p>
+ * <p>This map does not accept {@code null} values and it's not thread-safe.</p>
+ * @param <V> The type of the values stored by this map
+ */
+@ParametersAreNonnullByDefault
+@NonnullByDefault
+public class ChunkMap<V> extends AbstractMap<Vector3i, V>
+{
+    private static final int MIN_CAPACITY = 8;
+    private static final float LOAD_FACTOR = 0.6f;
+
+    private long[] keys;
+    // A null value marks an empty slot
+    private Object[] values;
+    private int mask;
+    private int size;
+    private int resizeAt;
+
+    @Nullable
+    private transient EntrySet entrySet;
+
+    /**
+     * Constructs an empty map with a small initial capacity
+     */
+    public ChunkMap()
+    {
+        this(MIN_CAPACITY);
+    }
+
+    /**
+     * Constructs an empty map that can hold an amount of entries without resizing
+     * @param expectedSize The amount of entries that is expected
+     */
+    public ChunkMap(int expectedSize)
+    {
+        allocate(capacityFor(expectedSize));
+    }
+
+    private static int capacityFor(int expectedSize)
+    {
+        int capacity = MIN_CAPACITY;
+        while(capacity * LOAD_FACTOR <= expectedSize)
+            capacity <<= 1;
+        return capacity;
+    }
+
+    private void allocate(int capacity)
+    {
+        keys = new long[capacity];
+        values = new Object[capacity];
+        mask = capacity - 1;
+        resizeAt = (int) (capacity * LOAD_FACTOR);
+    }
+
+    private int slot(long key)
+    {
+        long hash = key * 0x9E3779B97F4A7C15L;
+        return (int) (hash ^ (hash >>> 32)) & mask;
+    }
+
+    private int find(long key)
+    {
+        Object[] values = this.values;
+        long[] keys = this.keys;
+        for(int i = slot(key);; i = (i + 1) & mask)
+        {
+            if(values[i] == null)
+                return -1;
+            if(keys[i] == key)
+                return i;
+        }
+    }
+
+    /**
+     * Gets the value mapped to the packed coordinates
+     * @param key The coordinates packed with {@link PositionType#pack(int, int)}
+     * @return The value or {@code null} if there's no value mapped to the coordinates
+     */
+    @Nullable
+    @SuppressWarnings("unchecked")
+    public V get(long key)
+    {
+        int i = find(key);
+        return i < 0? null : (V) values[i];
+    }
+
+    /**
+     * Gets the value mapped to the coordinates
+     * @return The value or {@code null} if there's no value mapped to the coordinates
+     */
+    @Nullable
+    public V get(int x, int z)
+    {
+        return get(pack(x, z));
+    }
+
+    public boolean containsKey(long key)
+    {
+        return find(key) >= 0;
+    }
+
+    public boolean containsKey(int x, int z)
+    {
+        return find(pack(x, z)) >= 0;
+    }
+
+    /**
+     * Maps a value to the packed coordinates
+     * @param key The coordinates packed with {@link PositionType#pack(int, int)}
+     * @param value The value, can't be {@code null}
+     * @return The value that was replaced or {@code null} if the coordinates were not mapped
+     */
+    @Nullable
+    @SuppressWarnings("unchecked")
+    public V put(long key, V value)
+    {
+        Objects.requireNonNull(value, "value");
+        int i = slot(key);
+        while(values[i] != null)
+        {
+            if(keys[i] == key)
+            {
+                V previous = (V) values[i];
+                values[i] = value;
+                return previous;
+            }
+            i = (i + 1) & mask;
+        }
+
+        keys[i] = key;
+        values[i] = value;
+        if(++size > resizeAt)
+            rehash(keys.length << 1);
+        return null;
+    }
+
+    @Nullable
+    public V put(int x, int z, V value)
+    {
+        return put(pack(x, z), value);
+    }
+
+    /**
+     * Removes the value mapped to the packed coordinates
+     * @param key The coordinates packed with {@link PositionType#pack(int, int)}
+     * @return The value that was removed or {@code null} if the coordinates were not mapped
+     */
+    @Nullable
+    @SuppressWarnings("unchecked")
+    public V remove(long key)
+    {
+        int i = find(key);
+        if(i < 0)
+            return null;
+
+        V previous = (V) values[i];
+        shiftKeys(i, -1, null);
+        size--;
+        return previous;
+    }
+
+    @Nullable
+    public V remove(int x, int z)
+    {
+        return remove(pack(x, z));
+    }
+
+    /**
+     * Empties the slot at the given position moving back the next entries of the cluster so no tombstones are needed
+     * @param slot The slot that will be emptied
+     * @param visitedFrom When called from an iterator, the position being visited. Entries that are moved from unvisited
+     *                    positions to visited positions will be added to the {@code wrapped} list.
+     * @param wrapped The list that receives the entries that would be skipped by the iterator
+     */
+    private void shiftKeys(int slot, int visitedFrom, @Nullable List<Long> wrapped)
+    {
+        int gap = slot;
+        for(int i = (slot + 1) & mask; values[i] != null; i = (i + 1) & mask)
+        {
+            int ideal = slot(keys[i]);
+            if(((i - ideal) & mask) >= ((i - gap) & mask))
+            {
+                if(wrapped != null && i < visitedFrom && gap >= visitedFrom)
+                    wrapped.add(keys[i]);
+                keys[gap] = keys[i];
+                values[gap] = values[i];
+                gap = i;
+            }
+        }
+        values[gap] = null;
+    }
+
+    private void rehash(int capacity)
+    {
+        long[] oldKeys = keys;
+        Object[] oldValues = values;
+        allocate(capacity);
+        for(int j = 0; j < oldValues.length; j++)
+        {
+            Object value = oldValues[j];
+            if(value == null)
+                continue;
+
+            int i = slot(oldKeys[j]);
+            while(values[i] != null)
+                i = (i + 1) & mask;
+            keys[i] = oldKeys[j];
+            values[i] = value;
+        }
+    }
+
+    /**
+     * Calls the consumer for each entry without allocating vectors. The map must not be modified by the consumer.
+     */
+    @SuppressWarnings("unchecked")
+    public void forEachEntry(EntryConsumer<? super V> consumer)
+    {
+        Object[] values = this.values;
+        long[] keys = this.keys;
+        for(int i = 0; i < values.length; i++)
+            if(values[i] != null)
+                consumer.accept(keys[i], (V) values[i]);
+    }
+
+    @Override
+    public int size()
+    {
+        return size;
+    }
+
+    @Override
+    public boolean isEmpty()
+    {
+        return size == 0;
+    }
+
+    @Override
+    public void clear()
+    {
+        if(size == 0)
+            return;
+        Arrays.fill(values, null);
+        size = 0;
+    }
+
+    @Override
+    public boolean containsValue(Object value)
+    {
+        for(Object stored: values)
+            if(stored != null && stored.equals(value))
+                return true;
+        return false;
+    }
+
+    @Nullable
+    @Override
+    public V get(@Nullable Object key)
+    {
+        if(!(key instanceof Vector3i))
+            return null;
+        Vector3i position = (Vector3i) key;
+        return position.getY() == 0? get(position.getX(), position.getZ()) : null;
+    }
+
+    @Override
+    public boolean containsKey(@Nullable Object key)
+    {
+        return get(key) != null;
+    }
+
+    /**
+     * Maps a value to a chunk position
+     * @param key The chunk position, the height must be {@code 0}
+     * @throws IllegalArgumentException If the height is not {@code 0}
+     */
+    @Nullable
+    @Override
+    public V put(Vector3i key, V value) throws IllegalArgumentException
+    {
+        if(key.getY() != 0)
+            throw new IllegalArgumentException("The position "+key+" has height");
+        return put(key.getX(), key.getZ(), value);
+    }
+
+    @Nullable
+    @Override
+    public V remove(@Nullable Object key)
+    {
+        if(!(key instanceof Vector3i))
+            return null;
+        Vector3i position = (Vector3i) key;
+        return position.getY() == 0? remove(position.getX(), position.getZ()) : null;
+    }
+
+    @Override
+    public Set<Entry<Vector3i, V>> entrySet()
+    {
+        EntrySet entrySet = this.entrySet;
+        if(entrySet == null)
+            this.entrySet = entrySet = new EntrySet();
+        return entrySet;
+    }
+
+    /**
+     * Receives the entries of a {@link ChunkMap} without boxing the keys
+     */
+    @FunctionalInterface
+    public interface EntryConsumer<V>
+    {
+        void accept(long key, V value);
+    }
+
+    private class EntrySet extends AbstractSet<Entry<Vector3i, V>>
+    {
+        @Override
+        public Iterator<Entry<Vector3i, V>> iterator()
+        {
+            return new EntryIterator();
+        }
+
+        @Override
+        public int size()
+        {
+            return size;
+        }
+
+        @Override
+        public void clear()
+        {
+            ChunkMap.this.clear();
+        }
+    }
+
+    /**
+     * Iterates from the last slot to the first one, entries that are moved across the array bounds by a removal
+     * are remembered and returned at the end.
+     */
+    private class EntryIterator implements Iterator<Entry<Vector3i, V>>
+    {
+        private int pos = values.length;
+        private int last = -1;
+        private int remaining = size;
+        @Nullable
+        private List<Long> wrapped;
+        private int wrappedIndex;
+        @Nullable
+        private Long lastWrapped;
+
+        @Override
+        public boolean hasNext()
+        {
+            return remaining > 0;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public Entry<Vector3i, V> next()
+        {
+            if(remaining <= 0)
+                throw new NoSuchElementException();
+            remaining--;
+
+            while(--pos >= 0)
+                if(values[pos] != null)
+                {
+                    last = pos;
+                    lastWrapped = null;
+                    return new SimpleEntry<>(unpack(keys[pos]), (V) values[pos]);
+                }
+
+            List<Long> wrapped = this.wrapped;
+            if(wrapped == null || wrappedIndex >= wrapped.size())
+                throw new ConcurrentModificationException();
+
+            last = -1;
+            lastWrapped = wrapped.get(wrappedIndex++);
+            return new SimpleEntry<>(unpack(lastWrapped), get(lastWrapped.longValue()));
+        }
+
+        @Override
+        public void remove()
+        {
+            if(lastWrapped != null)
+            {
+                ChunkMap.this.remove(lastWrapped.longValue());
+                lastWrapped = null;
+                return;
+            }
+
+            if(last < 0)
+                throw new IllegalStateException();
+
+            if(wrapped == null)
+                wrapped = new ArrayList<>(2);
+            shiftKeys(last, last, wrapped);
+            size--;
+            last = -1;
+        }
+    }
+}
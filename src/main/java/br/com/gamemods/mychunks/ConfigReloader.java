@@ -0,0 +1,329 @@
+package br.com.gamemods.mychunks;
+
+import br.com.gamemods.mychunks.data.state.Permission;
+import br.com.gamemods.mychunks.data.state.WorldFallbackContext;
+import ninja.leaping.configurate.ConfigurationNode;
+import ninja.leaping.configurate.hocon.HoconConfigurationLoader;
+import org.slf4j.Logger;
+import org.spongepowered.api.util.annotation.NonnullByDefault;
+
+import javax.annotation.Nullable;
+import javax.annotation.ParametersAreNonnullByDefault;
+import java.io.IOException;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import static java.nio.file.StandardWatchEventKinds.*;
+
+/**
+ * <p>Reloads the permission configs without restarting the server: the {@code default-permissions.conf} file and the
+ * world files that were {@link #register(Path, UUID) registered} when the worlds were loaded.</p>
+ * <p>Only the files whose modification time or size changed since they were last applied are parsed again. The files are
+ * parsed by the parse executor and all changes of a reload are applied together by the apply executor, usually the
+ * server thread, so the server tick never waits for the disk and never sees half of a reload. The contexts swap all
+ * their public permissions at once and the caches detect the change by the revisions and the
+ * {@link Permission#getGeneration() defaults generation}.</p>
+ * <p>The files can also be {@link #startWatching() watched}, the changes are reloaded automatically by a daemon thread.</p>
+ */
+@ParametersAreNonnullByDefault
+@NonnullByDefault
+public class ConfigReloader implements AutoCloseable
+{
+    public static final String DEFAULT_PERMISSIONS_FILE = "default-permissions.conf";
+
+    // Editors usually write a file in several steps, the events are collected for this time before the reload
+    private static final long WATCH_DELAY_MILLIS = 250;
+
+    private final Path defaultsFile;
+    private final Path worldDir;
+    private final Executor parseExecutor;
+    private final Executor applyExecutor;
+    private final Function<UUID, Optional<WorldFallbackContext>> worldContexts;
+    private final Logger logger;
+    private final Map<Path, UUID> worldFiles = new ConcurrentHashMap<>();
+    // The modification time and size of the files when they were last applied
+    private final Map<Path, List<Object>> versions = new ConcurrentHashMap<>();
+    @Nullable
+    private volatile WatchService watchService;
+
+    /**
+     * The changes read from a file, applied on the apply executor
+     */
+    private static final class Change
+    {
+        private final Path file;
+        // The version of the file that was read, recorded only after the change is applied
+        private final List<Object> version;
+        @Nullable
+        private final UUID worldId;
+        private final Map<Permission, Boolean> fallback;
+        private final Map<Permission, Boolean> wild;
+
+        private Change(Path file, List<Object> version, @Nullable UUID worldId, Map<Permission, Boolean> fallback,
+                       Map<Permission, Boolean> wild)
+        {
+            this.file = file;
+            this.version = version;
+            this.worldId = worldId;
+            this.fallback = fallback;
+            this.wild = wild;
+        }
+    }
+
+    /**
+     * @param configDir The directory that contains the {@value #DEFAULT_PERMISSIONS_FILE} file and the world directory
+     * @param parseExecutor Reads the files, must not be the server thread
+     * @param applyExecutor Applies the changes, usually the server thread
+     * @param worldContexts Finds the context of the loaded worlds
+     */
+    public ConfigReloader(Path configDir, Executor parseExecutor, Executor applyExecutor,
+                          Function<UUID, Optional<WorldFallbackContext>> worldContexts, Logger logger)
+    {
+        this.defaultsFile = configDir.resolve(DEFAULT_PERMISSIONS_FILE).toAbsolutePath().normalize();
+        this.worldDir = configDir.resolve("world").toAbsolutePath().normalize();
+        this.parseExecutor = parseExecutor;
+        this.applyExecutor = applyExecutor;
+        this.worldContexts = worldContexts;
+        this.logger = logger;
+    }
+
+    /**
+     * The file that must be used for the config of a world
+     */
+    public Path getWorldFile(String worldName)
+    {
+        return worldDir.resolve(worldName.replaceAll("[^a-zA-Z0-9-]", "_") + ".conf");
+    }
+
+    /**
+     * Marks the {@value #DEFAULT_PERMISSIONS_FILE} file as read in its current state
+     */
+    public void defaultsLoaded()
+    {
+        versions.put(defaultsFile, version(defaultsFile));
+    }
+
+    /**
+     * Links a world config file that was just read to the world, the next changes to the file are reloaded
+     */
+    public void register(Path worldFile, UUID worldId)
+    {
+        Path file = worldFile.toAbsolutePath().normalize();
+        worldFiles.put(file, worldId);
+        versions.put(file, version(file));
+    }
+
+    /**
+     * Stops reloading the config of a world that was unloaded
+     */
+    public void unregister(UUID worldId)
+    {
+        worldFiles.entrySet().removeIf(entry -> {
+            if(!entry.getValue().equals(worldId))
+                return false;
+            versions.remove(entry.getKey());
+            return true;
+        });
+    }
+
+    /**
+     * Reloads all known files that changed
+     * @return The files that were reloaded, completed after the changes are applied
+     */
+    public CompletableFuture<List<Path>> reload()
+    {
+        List<Path> files = new ArrayList<>(worldFiles.size() + 1);
+        files.add(defaultsFile);
+        files.addAll(worldFiles.keySet());
+        return reload(files);
+    }
+
+    /**
+     * Reloads the given files if they are known and changed, the other files are ignored
+     * @return The files that were reloaded, completed after the changes are applied
+     */
+    public CompletableFuture<List<Path>> reload(Collection<Path> files)
+    {
+        List<Path> normalized = new ArrayList<>(files.size());
+        for(Path file: files)
+            normalized.add(file.toAbsolutePath().normalize());
+
+        return CompletableFuture.supplyAsync(() -> parse(normalized), parseExecutor)
+                .thenApplyAsync(this::apply, applyExecutor);
+    }
+
+    private List<Change> parse(Collection<Path> files)
+    {
+        List<Change> changes = new ArrayList<>(files.size());
+        for(Path file: new LinkedHashSet<>(files))
+        {
+            UUID worldId = worldFiles.get(file);
+            if(worldId == null && !file.equals(defaultsFile))
+                continue;
+
+            // A file that was deleted keeps the values that were read from it
+            List<Object> version = version(file);
+            if(version.isEmpty() || version.equals(versions.get(file)))
+                continue;
+
+            try
+            {
+                ConfigurationNode root = HoconConfigurationLoader.builder().setPath(file).build().load();
+                if(worldId == null)
+                    changes.add(new Change(file, version, null, readPermissions(root.getNode("fallback")),
+                            readPermissions(root.getNode("default-world-permissions"))));
+                else
+                    changes.add(new Change(file, version, worldId, readPermissions(root.getNode("fallback-permissions")),
+                            readPermissions(root.getNode("wild-permissions"))));
+            }
+            catch (IOException | RuntimeException e)
+            {
+                // The previous values are kept, the file is parsed again when it changes
+                logger.error("Failed to reload the config file "+file+", the previous values were kept", e);
+            }
+        }
+        return changes;
+    }
+
+    private List<Path> apply(List<Change> changes)
+    {
+        List<Path> applied = new ArrayList<>(changes.size());
+        for(Change change: changes)
+        {
+            if(change.worldId == null)
+            {
+                for(Permission permission: Permission.values())
+                {
+                    permission.setAllowedByDefault(
+                            change.fallback.getOrDefault(permission, permission.isBuiltInAllowedByDefault()));
+                    permission.setAllowedByDefaultOnTheWild(
+                            change.wild.getOrDefault(permission, permission.isBuiltInAllowedOnTheWild()));
+                    permission.setModified(false);
+                }
+            }
+            else
+            {
+                Optional<WorldFallbackContext> worldContext = worldContexts.apply(change.worldId);
+                if(!worldContext.isPresent())
+                    continue;
+
+                WorldFallbackContext context = worldContext.get();
+                context.setPublicPermissions(change.fallback);
+                context.setModified(false);
+                context.getWilderness().setPublicPermissions(change.wild);
+                context.getWilderness().setModified(false);
+            }
+
+            // A change that was skipped or failed is read again on the next reload, unless the world was unregistered
+            if(change.worldId == null || worldFiles.containsKey(change.file))
+                versions.put(change.file, change.version);
+            applied.add(change.file);
+            logger.info("Reloaded the config file "+change.file);
+        }
+        return applied;
+    }
+
+    /**
+     * The permissions that are explicitly set to a boolean value on the node, the other values are ignored
+     */
+    public static Map<Permission, Boolean> readPermissions(ConfigurationNode parentNode)
+    {
+        EnumMap<Permission, Boolean> permissions = new EnumMap<>(Permission.class);
+        for(Permission permission: Permission.values())
+        {
+            Object value = parentNode.getNode(permission.toString().toLowerCase()).getValue();
+            if(value instanceof Boolean)
+                permissions.put(permission, (Boolean) value);
+        }
+        return permissions;
+    }
+
+    private static List<Object> version(Path file)
+    {
+        try
+        {
+            BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+            return Arrays.asList(attributes.lastModifiedTime(), attributes.size());
+        }
+        catch (IOException e)
+        {
+            return Collections.emptyList();
+        }
+    }
+
+    /**
+     * Starts a daemon thread that reloads the files automatically when they are changed
+     * @throws IOException If the directories could not be watched
+     */
+    public synchronized void startWatching() throws IOException
+    {
+        if(watchService != null)
+            return;
+
+        Files.createDirectories(worldDir);
+        WatchService watchService = defaultsFile.getFileSystem().newWatchService();
+        try
+        {
+            defaultsFile.getParent().register(watchService, ENTRY_CREATE, ENTRY_MODIFY);
+            worldDir.register(watchService, ENTRY_CREATE, ENTRY_MODIFY);
+        }
+        catch (IOException e)
+        {
+            watchService.close();
+            throw e;
+        }
+
+        this.watchService = watchService;
+        Thread thread = new Thread(() -> watch(watchService), "MyChunks config watcher");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private void watch(WatchService watchService)
+    {
+        try
+        {
+            while(true)
+            {
+                Set<Path> changed = new HashSet<>();
+                WatchKey key = watchService.take();
+                do
+                {
+                    Path dir = (Path) key.watchable();
+                    for(WatchEvent<?> event: key.pollEvents())
+                        if(event.context() instanceof Path)
+                            changed.add(dir.resolve((Path) event.context()));
+                    key.reset();
+                }
+                while((key = watchService.poll(WATCH_DELAY_MILLIS, TimeUnit.MILLISECONDS)) != null);
+
+                reload(changed).exceptionally(e -> {
+                    logger.error("Failed to apply the reloaded config files", e);
+                    return Collections.emptyList();
+                });
+            }
+        }
+        catch (InterruptedException | ClosedWatchServiceException e)
+        {
+            // Stopped by close()
+        }
+    }
+
+    /**
+     * Stops watching the files, does nothing if they are not being watched
+     */
+    @Override
+    public synchronized void close() throws IOException
+    {
+        WatchService watchService = this.watchService;
+        this.watchService = null;
+        if(watchService != null)
+            watchService.close();
+    }
+}
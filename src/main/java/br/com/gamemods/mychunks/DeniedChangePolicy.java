@@ -0,0 +1,17 @@
+package br.com.gamemods.mychunks;
+
+/**
+ * Defines how a block change is handled when only some of its transactions are denied
+ */
+public enum DeniedChangePolicy
+{
+    /**
+     * The whole change is cancelled, nothing is changed
+     */
+    CANCEL_EVENT,
+
+    /**
+     * Only the denied transactions are invalidated, the changes on the allowed chunks still happens
+     */
+    FILTER_TRANSACTIONS
+}
@@ -0,0 +1,199 @@
+package br.com.gamemods.mychunks;
+
+import org.slf4j.Logger;
+import org.spongepowered.api.util.annotation.NonnullByDefault;
+
+import javax.annotation.ParametersAreNonnullByDefault;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * <p>Counters for the outcomes of the protection checks and rate limited trace logging, used to inspect the plugin
+ * behaviour on busy servers without logging every event.</p>
+ * <p>When disabled, {@link #count(Outcome)} and {@link #shouldTrace()} only read a volatile flag, the callers must guard
+ * the message building with {@link #shouldTrace()} so nothing is allocated:</p>
+ * <pre>
+ * if(diagnostics.shouldTrace())
+ *     diagnostics.trace("Chunk modification allowed: "+position);
+ * </pre>
+ */
+@ParametersAreNonnullByDefault
+@NonnullByDefault
+public final class Diagnostics
+{
+    /**
+     * The outcomes that are counted
+     */
+    public enum Outcome
+    {
+        /**
+         * A block change was allowed on all chunks
+         */
+        CHANGE_ALLOWED,
+
+        /**
+         * A block change was cancelled completely
+         */
+        CHANGE_CANCELLED,
+
+        /**
+         * Only some transactions of a block change were invalidated
+         */
+        CHANGE_FILTERED,
+
+        /**
+         * A block change was ignored because the player was only the notifier
+         */
+        CHANGE_IGNORED,
+
+        /**
+         * A chunk denied a change or an entry because its claim data was still loading
+         */
+        PENDING_DENIED,
+
+        /**
+         * A claimed chunk was loaded
+         */
+        CLAIM_LOADED,
+
+        /**
+         * A claimed chunk was unloaded
+         */
+        CLAIM_UNLOADED,
+
+        /**
+         * A chunk was loaded without reading the storage because it's surely not claimed
+         */
+        UNCLAIMED_SKIPPED,
+
+        /**
+         * A player movement was cancelled because the player can't enter the target chunk
+         */
+        ENTER_DENIED
+    }
+
+    private static final Outcome[] OUTCOMES = Outcome.values();
+
+    private final Logger logger;
+    private final AtomicLongArray counters = new AtomicLongArray(OUTCOMES.length);
+    private volatile boolean enabled;
+    private volatile boolean tracing;
+    private volatile int traceLimit = 20;
+
+    // Rate limit state, only changed inside synchronized methods
+    private long traceWindowStart;
+    private int tracedInWindow;
+    private long suppressed;
+
+    public Diagnostics(Logger logger)
+    {
+        this.logger = logger;
+    }
+
+    /**
+     * Counts an outcome if the diagnostics is enabled
+     */
+    public void count(Outcome outcome)
+    {
+        if(enabled)
+            counters.incrementAndGet(outcome.ordinal());
+    }
+
+    /**
+     * Checks if a trace message can be logged now, the message must be built only if this returns {@code true}.
+     * Each call that returns {@code true} consumes one message of the limit per second.
+     */
+    public boolean shouldTrace()
+    {
+        return tracing && acquireTrace();
+    }
+
+    private synchronized boolean acquireTrace()
+    {
+        long now = System.currentTimeMillis();
+        if(now - traceWindowStart >= 1000)
+        {
+            if(suppressed > 0)
+                logger.info("[Trace] "+suppressed+" messages were suppressed by the rate limit");
+            traceWindowStart = now;
+            tracedInWindow = 0;
+            suppressed = 0;
+        }
+
+        if(tracedInWindow < traceLimit)
+        {
+            tracedInWindow++;
+            return true;
+        }
+
+        suppressed++;
+        return false;
+    }
+
+    /**
+     * Logs a trace message, must be guarded by {@link #shouldTrace()}
+     */
+    public void trace(String message)
+    {
+        logger.info("[Trace] "+message);
+    }
+
+    public boolean isEnabled()
+    {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled)
+    {
+        this.enabled = enabled;
+    }
+
+    public boolean isTracing()
+    {
+        return tracing;
+    }
+
+    /**
+     * Enables or disables the trace logging, it's independent of the counters
+     */
+    public void setTracing(boolean tracing)
+    {
+        this.tracing = tracing;
+    }
+
+    /**
+     * The maximum amount of trace messages logged per second
+     */
+    public int getTraceLimit()
+    {
+        return traceLimit;
+    }
+
+    public void setTraceLimit(int traceLimit)
+    {
+        this.traceLimit = Math.max(1, traceLimit);
+    }
+
+    public long get(Outcome outcome)
+    {
+        return counters.get(outcome.ordinal());
+    }
+
+    /**
+     * A snapshot of all counters
+     */
+    public Map<Outcome, Long> snapshot()
+    {
+        Map<Outcome, Long> snapshot = new EnumMap<>(Outcome.class);
+        for(Outcome outcome: OUTCOMES)
+            snapshot.put(outcome, counters.get(outcome.ordinal()));
+        return snapshot;
+    }
+
+    public void reset()
+    {
+        for(int i = 0; i < OUTCOMES.length; i++)
+            counters.set(i, 0);
+    }
+}
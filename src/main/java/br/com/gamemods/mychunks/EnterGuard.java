@@ -0,0 +1,121 @@
+package br.com.gamemods.mychunks;
+
+import br.com.gamemods.mychunks.data.state.ClaimSnapshot;
+import br.com.gamemods.mychunks.data.state.Permission;
+import br.com.gamemods.mychunks.data.state.WildernessContext;
+import br.com.gamemods.mychunks.data.state.WorldFallbackContext;
+import org.spongepowered.api.util.annotation.NonnullByDefault;
+
+import javax.annotation.Nullable;
+import javax.annotation.ParametersAreNonnullByDefault;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.BooleanSupplier;
+
+import static br.com.gamemods.mychunks.PositionType.*;
+
+/**
+ * <p>Decides if players can enter the chunks that they are moving to, enforcing {@link Permission#ENTER}.</p>
+ * <p>Movements inside the same chunk are filtered by {@link #isCrossing(int, int, int, int)} without any lookup. When a
+ * chunk boundary is crossed the decision is cached on the player session together with the {@link ClaimSnapshot} or
+ * the {@link WildernessContext#getEffectiveMask() wilderness mask} that produced it, so a player walking back and forth
+ * on the same border or insisting on a denied chunk does not resolve the permissions again while the chunk is not
+ * changed.</p>
+ * <p>The instance must be used by a single thread, usually the server thread.</p>
+ */
+@ParametersAreNonnullByDefault
+@NonnullByDefault
+public final class EnterGuard
+{
+    private final Map<UUID, Session> sessions = new HashMap<>();
+
+    /**
+     * The last decision taken for a player
+     */
+    private static final class Session
+    {
+        @Nullable
+        private UUID worldId;
+        private long chunkKey;
+        // The state that produced the decision, the snapshot is null on the wilderness
+        @Nullable
+        private ClaimSnapshot snapshot;
+        private long wildernessMask;
+        private boolean allowed;
+        private boolean notified;
+    }
+
+    /**
+     * Checks if a movement crosses a chunk boundary, comparing only the packed chunk keys of the block coordinates.
+     * The caller must also check if the world changed.
+     */
+    public static boolean isCrossing(int fromBlockX, int fromBlockZ, int toBlockX, int toBlockZ)
+    {
+        return BLOCK.toMinChunkKey(fromBlockX, fromBlockZ) != BLOCK.toMinChunkKey(toBlockX, toBlockZ);
+    }
+
+    /**
+     * Checks if a player can enter a chunk, reusing the last decision when the player tries the same chunk again and
+     * the chunk did not change
+     * @param playerId The player that is moving
+     * @param worldContext The world that contains the target chunk
+     * @param chunkKey The target chunk packed with {@link PositionType#pack(int, int)}
+     * @param isAdmin Resolves if the player is a server admin, called only when the decision is not cached
+     * @return {@code true} if the movement is allowed
+     */
+    public boolean canEnter(UUID playerId, WorldFallbackContext worldContext, long chunkKey, BooleanSupplier isAdmin)
+    {
+        Session session = sessions.get(playerId);
+        if(session == null)
+            sessions.put(playerId, session = new Session());
+
+        ClaimSnapshot snapshot = worldContext.getClaimSnapshot(unpackX(chunkKey), unpackZ(chunkKey)).orElse(null);
+        WildernessContext wilderness = worldContext.getWilderness();
+        long wildernessMask = snapshot == null? wilderness.getEffectiveMask() : 0;
+        if(session.chunkKey == chunkKey && worldContext.getWorldId().equals(session.worldId)
+                && session.snapshot == snapshot && session.wildernessMask == wildernessMask)
+            return session.allowed;
+
+        session.worldId = worldContext.getWorldId();
+        session.chunkKey = chunkKey;
+        session.snapshot = snapshot;
+        session.wildernessMask = wildernessMask;
+        session.notified = false;
+        if(snapshot != null)
+            session.allowed = snapshot.check(Permission.ENTER, playerId, isAdmin.getAsBoolean());
+        else
+            session.allowed = (wildernessMask & Permission.ENTER.mask()) != 0;
+        return session.allowed;
+    }
+
+    /**
+     * Checks if the player must be notified about the last denial, only the first attempt is notified until a different
+     * decision is taken
+     */
+    public boolean shouldNotify(UUID playerId)
+    {
+        Session session = sessions.get(playerId);
+        if(session == null || session.allowed || session.notified)
+            return false;
+
+        session.notified = true;
+        return true;
+    }
+
+    /**
+     * Forgets the session of a player that left the server
+     */
+    public void removeSession(UUID playerId)
+    {
+        sessions.remove(playerId);
+    }
+
+    /**
+     * The amount of players that have a session
+     */
+    public int getSessionCount()
+    {
+        return sessions.size();
+    }
+}
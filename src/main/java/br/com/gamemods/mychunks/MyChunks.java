@@ -1,8 +1,9 @@
 package br.com.gamemods.mychunks;
 
+import br.com.gamemods.mychunks.Diagnostics.Outcome;
+import br.com.gamemods.mychunks.cmd.AdminCommands;
 import br.com.gamemods.mychunks.cmd.GlobalCommands;
 import br.com.gamemods.mychunks.data.api.DataStorage;
-import br.com.gamemods.mychunks.data.api.DataStorageException;
 import br.com.gamemods.mychunks.data.binary.BinaryDataStorage;
 import br.com.gamemods.mychunks.data.state.*;
 import com.flowpowered.math.vector.Vector3i;
@@ -14,17 +15,22 @@ import ninja.leaping.configurate.loader.ConfigurationLoader;
 import org.slf4j.Logger;
 import org.spongepowered.api.Sponge;
 import org.spongepowered.api.block.BlockSnapshot;
+import org.spongepowered.api.command.args.GenericArguments;
 import org.spongepowered.api.command.spec.CommandSpec;
 import org.spongepowered.api.config.ConfigDir;
 import org.spongepowered.api.config.DefaultConfig;
 import org.spongepowered.api.data.Transaction;
+import org.spongepowered.api.entity.Transform;
 import org.spongepowered.api.entity.living.player.Player;
 import org.spongepowered.api.event.Listener;
 import org.spongepowered.api.event.block.ChangeBlockEvent;
 import org.spongepowered.api.event.cause.NamedCause;
+import org.spongepowered.api.event.entity.DisplaceEntityEvent;
 import org.spongepowered.api.event.filter.cause.First;
 import org.spongepowered.api.event.game.state.GameInitializationEvent;
 import org.spongepowered.api.event.game.state.GameStartingServerEvent;
+import org.spongepowered.api.event.game.state.GameStoppingServerEvent;
+import org.spongepowered.api.event.network.ClientConnectionEvent;
 import org.spongepowered.api.event.world.LoadWorldEvent;
 import org.spongepowered.api.event.world.SaveWorldEvent;
 import org.spongepowered.api.event.world.UnloadWorldEvent;
@@ -34,6 +40,7 @@ import org.spongepowered.api.plugin.Plugin;
 import org.spongepowered.api.text.Text;
 import org.spongepowered.api.util.Tristate;
 import org.spongepowered.api.world.Chunk;
+import org.spongepowered.api.world.Location;
 import org.spongepowered.api.world.World;
 
 import javax.annotation.Nullable;
@@ -42,22 +49,53 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.*;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.*;
 
-import static br.com.gamemods.mychunks.Util.blockToChunk;
+import static br.com.gamemods.mychunks.PositionType.BLOCK;
+import static br.com.gamemods.mychunks.PositionType.pack;
+import static br.com.gamemods.mychunks.PositionType.unpack;
+import static br.com.gamemods.mychunks.data.state.Permission.ENTER;
 import static br.com.gamemods.mychunks.data.state.Permission.MODIFY;
 import static br.com.gamemods.mychunks.data.state.Permission.values;
 
 @Plugin(id="MyChunks", name = "MyChunks", version = "1.0-SNAPSHOT")
 public class MyChunks
 {
-    private Map<UUID, Map<Vector3i, ClaimedChunk>> claimedChunks = new ConcurrentHashMap<>(1);
+    private Map<UUID, ChunkMap<ClaimedChunk>> claimedChunks = new ConcurrentHashMap<>(1);
     private Map<UUID, WorldFallbackContext> worldContexts = new ConcurrentHashMap<>(1);
+    // Chunks whose claim data is being loaded by the I/O thread, only accessed by the server thread
+    private Map<UUID, ChunkMap<CompletableFuture<Optional<ClaimedChunk>>>> pendingChunks = new ConcurrentHashMap<>(1);
     private DataStorage dataStorage;
+    private final PlayerNameRegistry playerNames = new PlayerNameRegistry();
+    private PendingChunkPolicy pendingChunkPolicy = PendingChunkPolicy.WAIT;
+    private long pendingChunkWaitMillis = 50;
+    private WriteBehindFlusher flusher;
+    private long flushIntervalSeconds = 30;
+    private DeniedChangePolicy deniedChangePolicy = DeniedChangePolicy.CANCEL_EVENT;
+
+    // Buffers reused by the block change evaluation, only used by the server thread
+    private final BulkChangeEvaluator bulkEvaluator = new BulkChangeEvaluator();
+    private final EnterGuard enterGuard = new EnterGuard();
+    private final DecisionCache decisionCache = new DecisionCache();
+    private final AdminCache adminCache = new AdminCache();
+    private long adminRefreshSeconds;
+    private ConfigReloader configReloader;
+    private boolean watchPermissionFiles;
+    private final BitSet deniedTransactions = new BitSet();
+
+    // The storage operations are done on a dedicated thread to keep slow disks away from the server tick
+    private final ExecutorService ioExecutor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "MyChunks I/O");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final Executor serverThread = runnable -> Sponge.getScheduler().createTaskBuilder().execute(runnable).submit(this);
 
     @Inject
     private Logger logger;
 
+    private Diagnostics diagnostics;
+
     @Inject
     @DefaultConfig(sharedRoot = false)
     private ConfigurationLoader<CommentedConfigurationNode> mainConfigLoader;
@@ -69,11 +107,13 @@ public class MyChunks
     @Listener
     public void onGameInit(GameInitializationEvent event)
     {
+        diagnostics = new Diagnostics(logger);
+        configReloader = new ConfigReloader(configDir, ioExecutor, serverThread, this::getWorldContext, logger);
         ConfigurationOptions options = ConfigurationOptions.defaults().setShouldCopyDefaults(true);
         try
         {
             HoconConfigurationLoader defaultConfigLoader = HoconConfigurationLoader
-                    .builder().setPath(configDir.resolve("default-permissions.conf")).build();
+                    .builder().setPath(configDir.resolve(ConfigReloader.DEFAULT_PERMISSIONS_FILE)).build();
 
             CommentedConfigurationNode defaultPermissions = defaultConfigLoader.load(options);
 
@@ -94,6 +134,7 @@ public class MyChunks
             {
                 logger.error("Failed to save the default-permissions.config file", e);
             }
+            configReloader.defaultsLoaded();
         }
         catch (IOException e)
         {
@@ -118,12 +159,76 @@ public class MyChunks
             node.setComment("The directory where the binary data will be saved. It must be writable");
             String binarySaveDir = node.getString(configDir.resolve("data").resolve("binary").toString());
 
+            node = binaryNode.getNode("memory-mapped");
+            node.setComment("Reads the region files through memory mapped files, the records are read directly from " +
+                    "the operating system page cache. Recommended when the claims are read much more often than they are changed");
+            boolean binaryMemoryMapped = node.getBoolean(false);
+
+            BinaryDataStorage.CacheSettings defaultCache = BinaryDataStorage.CacheSettings.DEFAULT;
+            node = binaryNode.getNode("world-cache-minutes");
+            node.setComment("How long the cached data of a world is kept after its last access. All its regions are released when it expires");
+            long worldCacheMinutes = node.getLong(defaultCache.getWorldExpireMinutes());
+            node = binaryNode.getNode("region-cache-minutes");
+            node.setComment("How long a region file is kept in memory after its last access");
+            long regionCacheMinutes = node.getLong(defaultCache.getRegionExpireMinutes());
+            node = binaryNode.getNode("max-cached-chunks");
+            node.setComment("The maximum amount of claimed chunks on the cached regions of each world. Each region counts " +
+                    "as its claimed chunks plus one, the least used regions are released when the limit is reached. " +
+                    "The hit rates can be checked with /mychunk cache");
+            long maxCachedChunks = node.getLong(defaultCache.getMaxCachedChunks());
+
+            node = dataStorageNode.getNode("pending-chunk-policy");
+            node.setComment("What happens when a block is changed on a chunk whose claim data is still being loaded. " +
+                    "\"deny\" cancels the change, \"wait\" holds the server thread for up to pending-chunk-wait-millis " +
+                    "and cancels the change if the data is still not available");
+            pendingChunkPolicy = PendingChunkPolicy.valueOf(node.getString("wait").trim().toUpperCase());
+
+            node = dataStorageNode.getNode("pending-chunk-wait-millis");
+            node.setComment("The maximum time that the server thread waits for the claim data when the pending-chunk-policy is \"wait\"");
+            pendingChunkWaitMillis = node.getLong(50);
+
+            node = dataStorageNode.getNode("flush-interval-seconds");
+            node.setComment("How often the modified chunks are saved. Changes done between the flushes are grouped " +
+                    "and written once per region file. The chunks are also saved when the world is saved or unloaded");
+            flushIntervalSeconds = Math.max(1, node.getLong(30));
+
+            CommentedConfigurationNode protectionNode = mainConfig.getNode("protection");
+            node = protectionNode.getNode("denied-block-changes");
+            node.setComment("What happens when a block change affects multiple chunks and only some of them denies it. " +
+                    "\"cancel-event\" cancels the whole change, \"filter-transactions\" cancels only the blocks " +
+                    "inside the chunks that denied the change");
+            deniedChangePolicy = DeniedChangePolicy.valueOf(node.getString("cancel-event").trim().toUpperCase().replace('-', '_'));
+
+            node = protectionNode.getNode("admin-refresh-seconds");
+            node.setComment("How often the mychunks.server-admin permission of the online players is checked again. " +
+                    "The permission is also checked when the player joins the server");
+            adminRefreshSeconds = Math.max(1, node.getLong(30));
+
+            node = protectionNode.getNode("watch-permission-files");
+            node.setComment("Reloads the default-permissions.conf file and the world files automatically when they are " +
+                    "changed. They can also be reloaded with /mychunk reload");
+            watchPermissionFiles = node.getBoolean(false);
+
+            CommentedConfigurationNode diagnosticsNode = mainConfig.getNode("diagnostics");
+            diagnosticsNode.setComment("Helps to inspect the protection checks. Can also be changed with /mychunk diagnostics");
+            node = diagnosticsNode.getNode("counters");
+            node.setComment("Counts the outcome of every block change and chunk load, costs nothing when disabled");
+            diagnostics.setEnabled(node.getBoolean(false));
+            node = diagnosticsNode.getNode("trace");
+            node.setComment("Logs the details of the checks, limited to trace-limit messages per second");
+            diagnostics.setTracing(node.getBoolean(false));
+            node = diagnosticsNode.getNode("trace-limit");
+            diagnostics.setTraceLimit(node.getInt(20));
+
             String engine = engineNode.getString("binary");
             if("binary".equalsIgnoreCase(engine.trim()))
-                dataStorage = new BinaryDataStorage(Paths.get(binarySaveDir).toFile());
+                dataStorage = new BinaryDataStorage(Paths.get(binarySaveDir).toFile(), binaryMemoryMapped, playerNames,
+                        new BinaryDataStorage.CacheSettings(worldCacheMinutes, regionCacheMinutes, maxCachedChunks));
             else
                 throw new IllegalArgumentException("The storage engine '"+engine+"' is not supported");
 
+            flusher = new WriteBehindFlusher(dataStorage, ioExecutor, serverThread, logger);
+
             try
             {
                 mainConfigLoader.save(mainConfig);
@@ -177,10 +282,9 @@ public class MyChunks
 
     private WorldFallbackContext loadWorldContext(World world) throws IOException
     {
-        Path worldPath = configDir.resolve("world");
-        Path configPath = worldPath.resolve(world.getName().replaceAll("[^a-zA-Z0-9-]", "_") + ".conf");
-        if(!Files.isDirectory(worldPath))
-            Files.createDirectory(worldPath);
+        Path configPath = configReloader.getWorldFile(world.getName());
+        if(!Files.isDirectory(configPath.getParent()))
+            Files.createDirectory(configPath.getParent());
 
         HoconConfigurationLoader loader = HoconConfigurationLoader.builder().setPath(configPath).build();
         CommentedConfigurationNode main = loader.load(
@@ -213,6 +317,7 @@ public class MyChunks
             logger.error("Failed to save the world config file for " + world.getName() + " DIM:" +
                     world.getDimension().getName(), e);
         }
+        configReloader.register(configPath, world.getUniqueId());
 
         return worldContext;
     }
@@ -237,77 +342,354 @@ public class MyChunks
                 .child(claim, "claim")
                 .build();
 
+        AdminCommands adminCommands = new AdminCommands(this);
+        CommandSpec diagnostics = CommandSpec.builder()
+                .description(Text.of("Shows the diagnostics counters or changes the diagnostics mode"))
+                .extendedDescription(Text.of("Actions: on, off, trace-on, trace-off, reset"))
+                .permission("mychunks.command.diagnostics")
+                .arguments(GenericArguments.optional(GenericArguments.string(Text.of("action"))))
+                .executor(adminCommands::diagnostics)
+                .build();
+
+        CommandSpec cache = CommandSpec.builder()
+                .description(Text.of("Shows the statistics of the storage caches"))
+                .permission("mychunks.command.cache")
+                .executor(adminCommands::cache)
+                .build();
+
+        CommandSpec reload = CommandSpec.builder()
+                .description(Text.of("Reloads the permission config files that were changed"))
+                .permission("mychunks.command.reload")
+                .executor(adminCommands::reload)
+                .build();
+
         CommandSpec mychunk = CommandSpec.builder()
                 .description(Text.of("All mychunk commands"))
                 .child(chunk, "chunk", "c")
+                .child(diagnostics, "diagnostics")
+                .child(cache, "cache")
+                .child(reload, "reload")
                 .build();
 
         Sponge.getCommandManager().register(this, chunk, "chunk");
         Sponge.getCommandManager().register(this, mychunk, "mychunk");
+
+        Sponge.getScheduler().createTaskBuilder()
+                .name("MyChunks write-behind flusher")
+                .execute(this::flushModifiedChunks)
+                .interval(flushIntervalSeconds, TimeUnit.SECONDS)
+                .submit(this);
+
+        Sponge.getScheduler().createTaskBuilder()
+                .name("MyChunks admin status refresh")
+                .execute(() -> adminCache.refreshAll(Sponge.getServer().getOnlinePlayers()))
+                .interval(adminRefreshSeconds, TimeUnit.SECONDS)
+                .submit(this);
+
+        if(watchPermissionFiles)
+        {
+            try
+            {
+                configReloader.startWatching();
+            }
+            catch (IOException e)
+            {
+                logger.error("Failed to watch the permission config files, use /mychunk reload to apply the changes", e);
+            }
+        }
+    }
+
+    /**
+     * Saves all loaded chunks that have unsaved modifications and all chunks that were unloaded since the last flush
+     */
+    private void flushModifiedChunks()
+    {
+        claimedChunks.values().forEach(chunkMap -> flusher.collectModified(chunkMap.values()));
+        flusher.flushAll();
     }
 
     @Listener
     public void onModifyBlock(ChangeBlockEvent event, @First Player player)
     {
-        logger.info("Call: "+event.getClass());
         if(event.getCause().get(NamedCause.NOTIFIER, Player.class).map(p -> p.equals(player)).orElse(false))
         {
-            logger.info("Player cause is notifier.");
+            diagnostics.count(Outcome.CHANGE_IGNORED);
             return;
         }
 
-        WorldFallbackContext worldContext = worldContexts.get(event.getTargetWorld().getUniqueId());
+        UUID worldId = event.getTargetWorld().getUniqueId();
+        WorldFallbackContext worldContext = worldContexts.get(worldId);
 
-        boolean canModifyWild = Optional.ofNullable(worldContext)
-                .flatMap(w->w.getWilderness().getPublicPermission(MODIFY)).orElse(MODIFY.isAllowedByDefaultOnTheWild());
+        boolean canModifyWild = worldContext != null? worldContext.getWilderness().isAllowed(MODIFY) : MODIFY.isAllowedByDefaultOnTheWild();
 
-        Optional<Map<Vector3i, ClaimedChunk>> chunkMap = getChunkMap(event.getTargetWorld());
+        ChunkMap<ClaimedChunk> subMap = claimedChunks.get(worldId);
+        if(subMap == null)
+        {
+            if(!canModifyWild)
+            {
+                notifyFailure(worldContext, null, player);
+                diagnostics.count(Outcome.CHANGE_CANCELLED);
+                if(diagnostics.shouldTrace())
+                    diagnostics.trace("Chunk modification cancelled because MODIFY is not allowed on unclaimed chunks of "+
+                            event.getTargetWorld().getName());
+                event.setCancelled(true);
+            }
+            return;
+        }
 
-        claimedCheck:
-        if(chunkMap.isPresent())
+        List<Transaction<BlockSnapshot>> transactions = event.getTransactions();
+        int count = transactions.size();
+        long[] chunkKeys = bulkEvaluator.keyBuffer(count);
+        for(int i = 0; i < count; i++)
         {
-            Map<Vector3i, ClaimedChunk> subMap = chunkMap.get();
-            Set<Vector3i> checkedChunks = new HashSet<>(2);
+            Vector3i blockPosition = transactions.get(i).getOriginal().getPosition();
+            chunkKeys[i] = BLOCK.toMinChunkKey(blockPosition.getX(), blockPosition.getZ());
+        }
 
-            for(Transaction<BlockSnapshot> transaction: event.getTransactions())
+        boolean filter = deniedChangePolicy == DeniedChangePolicy.FILTER_TRANSACTIONS;
+        boolean isAdmin = adminCache.isAdmin(player);
+        int denied = bulkEvaluator.evaluate(chunkKeys, count, chunkKey -> {
+            ClaimedChunk claimedChunk = subMap.get(chunkKey);
+            if(claimedChunk == null && isPending(worldId, chunkKey))
             {
-                Vector3i chunkPosition = blockToChunk(transaction.getOriginal().getPosition());
-                if (checkedChunks.contains(chunkPosition))
-                    continue;
-
-                ClaimedChunk claimedChunk = subMap.get(chunkPosition);
-                if (claimedChunk != null && !claimedChunk.check(MODIFY, player))
+                if(!awaitPending(worldId, chunkKey))
                 {
-                    logger.info("Chunk modification cancelled: "+chunkPosition+" "+event.getCause());
-                    event.setCancelled(true);
-                    return;
+                    diagnostics.count(Outcome.PENDING_DENIED);
+                    if(diagnostics.shouldTrace())
+                        diagnostics.trace("Chunk modification denied because the claim data is still loading: "+unpack(chunkKey));
+                    return false;
                 }
-                else if(!canModifyWild)
-                    break claimedCheck;
-
-                checkedChunks.add(chunkPosition);
-                logger.info("Chunk modification allowed: "+chunkPosition+" "+event);
+                claimedChunk = subMap.get(chunkKey);
             }
 
+            if(claimedChunk == null)
+                return canModifyWild;
+            return decisionCache.check(claimedChunk, MODIFY, player.getUniqueId(), isAdmin);
+        }, deniedTransactions, !filter);
+
+        if(denied == 0)
+        {
+            diagnostics.count(Outcome.CHANGE_ALLOWED);
+            if(diagnostics.shouldTrace())
+                diagnostics.trace("Chunk modification allowed on "+bulkEvaluator.getEvaluatedChunks()+" chunks by "+player.getName());
             return;
         }
 
-        if(!canModifyWild)
+        long deniedChunk = bulkEvaluator.getFirstDeniedChunk();
+        notifyFailure(worldContext, subMap.get(deniedChunk), player);
+
+        if(!filter || denied == count)
         {
-            if(worldContext != null)
-                worldContext.getWilderness().notifyFailure(MODIFY, player);
-            else
-                MODIFY.notifyFailure(player,PlayerName.WILDERNESS);
+            diagnostics.count(Outcome.CHANGE_CANCELLED);
+            if(diagnostics.shouldTrace())
+                diagnostics.trace("Chunk modification cancelled: "+unpack(deniedChunk)+" "+event.getCause());
+            event.setCancelled(true);
+            return;
+        }
+
+        for(int i = deniedTransactions.nextSetBit(0); i >= 0; i = deniedTransactions.nextSetBit(i + 1))
+            transactions.get(i).setValid(false);
+        diagnostics.count(Outcome.CHANGE_FILTERED);
+        if(diagnostics.shouldTrace())
+            diagnostics.trace("Chunk modification filtered: "+denied+" of "+count+" transactions denied "+event.getCause());
+    }
+
+    /**
+     * Notifies the player that a block change was denied
+     * @param claimedChunk The chunk that denied the change or {@code null} if it was denied by the wilderness
+     */
+    private void notifyFailure(@Nullable WorldFallbackContext worldContext, @Nullable ClaimedChunk claimedChunk, Player player)
+    {
+        if(claimedChunk != null)
+            claimedChunk.notifyFailure(MODIFY, player);
+        else if(worldContext != null)
+            worldContext.getWilderness().notifyFailure(MODIFY, player);
+        else
+            MODIFY.notifyFailure(player, PlayerName.WILDERNESS);
+    }
+
+    @Listener
+    public void onPlayerMove(DisplaceEntityEvent.Move.TargetPlayer event)
+    {
+        // Fired for every movement packet, nothing is looked up while the player stays inside the same chunk
+        Transform<World> from = event.getFromTransform(), to = event.getToTransform();
+        Location<World> fromLocation = from.getLocation(), toLocation = to.getLocation();
+        int toX = toLocation.getBlockX(), toZ = toLocation.getBlockZ();
+        if(from.getExtent() == to.getExtent() && !EnterGuard.isCrossing(fromLocation.getBlockX(), fromLocation.getBlockZ(), toX, toZ))
+            return;
 
-            logger.info("Chunk modification cancelled because MODIFY is not allowed on unclaimed chunks");
+        if(!canEnter(event.getTargetEntity(), to.getExtent(), toX, toZ, false))
             event.setCancelled(true);
+    }
+
+    @Listener
+    public void onPlayerTeleport(DisplaceEntityEvent.Teleport.TargetPlayer event)
+    {
+        // Teleports are rare, they are always checked because the target chunk may not be loaded yet
+        Transform<World> to = event.getToTransform();
+        Location<World> toLocation = to.getLocation();
+        if(!canEnter(event.getTargetEntity(), to.getExtent(), toLocation.getBlockX(), toLocation.getBlockZ(), true))
+            event.setCancelled(true);
+    }
+
+    /**
+     * Checks if a player can enter the chunk that contains a block, applying the {@link PendingChunkPolicy} when the
+     * claim data of the chunk is not available yet. The player is notified when the entry is denied.
+     * @param teleport If the target chunk may be unloaded, in this case its claim data is read from the storage
+     * @return {@code true} if the player can enter the chunk
+     */
+    private boolean canEnter(Player player, World world, int blockX, int blockZ, boolean teleport)
+    {
+        UUID worldId = world.getUniqueId();
+        WorldFallbackContext worldContext = worldContexts.get(worldId);
+        if(worldContext == null)
+            return true;
+
+        long chunkKey = BLOCK.toMinChunkKey(blockX, blockZ);
+        Vector3i chunkPosition = unpack(chunkKey);
+        if(isPending(worldId, chunkKey))
+        {
+            if(!awaitPending(worldId, chunkKey))
+                return denyPendingEnter(player, worldId, chunkKey);
+        }
+        else if(teleport && !world.getChunk(chunkPosition).isPresent()
+                && dataStorage.mayBeClaimed(worldId, chunkPosition.getX(), chunkPosition.getZ()))
+        {
+            // The claim data of an unloaded chunk was never requested, it's read only for this check
+            Optional<ClaimedChunk> claimedChunk = flusher.getDirty(worldId, chunkKey);
+            if(!claimedChunk.isPresent())
+            {
+                Optional<Optional<ClaimedChunk>> loaded = awaitUnloaded(worldContext, chunkPosition);
+                if(!loaded.isPresent())
+                    return denyPendingEnter(player, worldId, chunkKey);
+                claimedChunk = loaded.get();
+            }
+
+            boolean admin = adminCache.isAdmin(player);
+            boolean allowed = claimedChunk.isPresent()?
+                    claimedChunk.get().check(ENTER, player.getUniqueId(), admin) :
+                    worldContext.getWilderness().check(ENTER, player.getUniqueId(), admin);
+            if(!allowed)
+            {
+                denyEnter(player, worldId, chunkKey);
+                if(claimedChunk.isPresent())
+                    claimedChunk.get().notifyFailure(ENTER, player);
+                else
+                    worldContext.getWilderness().notifyFailure(ENTER, player);
+            }
+            return allowed;
+        }
+
+        if(enterGuard.canEnter(player.getUniqueId(), worldContext, chunkKey, () -> adminCache.isAdmin(player)))
+            return true;
+
+        denyEnter(player, worldId, chunkKey);
+        if(enterGuard.shouldNotify(player.getUniqueId()))
+        {
+            ChunkMap<ClaimedChunk> chunkMap = claimedChunks.get(worldId);
+            ClaimedChunk claimedChunk = chunkMap == null? null : chunkMap.get(chunkKey);
+            if(claimedChunk != null)
+                claimedChunk.notifyFailure(ENTER, player);
+            else
+                worldContext.getWilderness().notifyFailure(ENTER, player);
+        }
+        return false;
+    }
+
+    private void denyEnter(Player player, UUID worldId, long chunkKey)
+    {
+        diagnostics.count(Outcome.ENTER_DENIED);
+        if(diagnostics.shouldTrace())
+            diagnostics.trace("Chunk enter denied: "+player.getName()+" to "+worldId+unpack(chunkKey));
+    }
+
+    private boolean denyPendingEnter(Player player, UUID worldId, long chunkKey)
+    {
+        diagnostics.count(Outcome.PENDING_DENIED);
+        if(diagnostics.shouldTrace())
+            diagnostics.trace("Chunk enter denied because the claim data is still loading: "+player.getName()+" to "+
+                    worldId+unpack(chunkKey));
+        return false;
+    }
+
+    /**
+     * Reads the claim data of a chunk that is not loaded, applying the {@link PendingChunkPolicy} to the read
+     * @return The claim data or empty if it was not available in time and the action must be denied
+     */
+    private Optional<Optional<ClaimedChunk>> awaitUnloaded(WorldFallbackContext worldContext, Vector3i chunkPosition)
+    {
+        if(pendingChunkPolicy == PendingChunkPolicy.DENY)
+            return Optional.empty();
+
+        CompletableFuture<Optional<ClaimedChunk>> future = dataStorage.loadChunkAsync(worldContext, chunkPosition, ioExecutor);
+        try
+        {
+            return Optional.of(future.get(pendingChunkWaitMillis, TimeUnit.MILLISECONDS));
+        }
+        catch (TimeoutException e)
+        {
+            return Optional.empty();
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            return Optional.empty();
+        }
+        catch (ExecutionException e)
+        {
+            logger.error("Failed to load chunk information on "+worldContext.getWorldId()+chunkPosition, e.getCause());
+            return Optional.empty();
+        }
+    }
+
+    @Listener
+    public void onServerStopping(GameStoppingServerEvent event)
+    {
+        try
+        {
+            configReloader.close();
+        }
+        catch (IOException e)
+        {
+            logger.error("Failed to stop watching the permission config files", e);
+        }
+        flushModifiedChunks();
+        ioExecutor.shutdown();
+        try
+        {
+            if(!ioExecutor.awaitTermination(10, TimeUnit.SECONDS))
+                logger.error("The I/O thread did not finish in time, some chunks may not be loaded or saved");
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
         }
     }
 
     @Listener
-    public void on(SaveWorldEvent event)
+    public void onPlayerJoin(ClientConnectionEvent.Join event)
     {
-        logger.info("World save: "+event.getTargetWorld().getName());
+        Player player = event.getTargetEntity();
+        playerNames.update(player.getUniqueId(), player.getName());
+        adminCache.refresh(player);
+    }
+
+    @Listener
+    public void onPlayerDisconnect(ClientConnectionEvent.Disconnect event)
+    {
+        UUID playerId = event.getTargetEntity().getUniqueId();
+        enterGuard.removeSession(playerId);
+        decisionCache.remove(playerId);
+        adminCache.remove(playerId);
+    }
+
+    @Listener
+    public void onWorldSave(SaveWorldEvent event)
+    {
+        logger.debug("World save: "+event.getTargetWorld().getName());
+        UUID worldId = event.getTargetWorld().getUniqueId();
+        getChunkMap(worldId).ifPresent(chunkMap -> flusher.collectModified(chunkMap.values()));
+        flusher.flush(worldId);
     }
 
     @Listener
@@ -316,10 +698,13 @@ public class MyChunks
         World world = event.getTargetWorld();
         logger.info("World loaded: "+ world.getName());
         UUID uniqueId = world.getUniqueId();
-        claimedChunks.put(uniqueId, new HashMap<>());
+        claimedChunks.put(uniqueId, new ChunkMap<>());
+        pendingChunks.put(uniqueId, new ChunkMap<>());
         try
         {
-            worldContexts.put(uniqueId, loadWorldContext(world));
+            WorldFallbackContext worldContext = loadWorldContext(world);
+            worldContext.addOwnerListener(dataStorage::ownerChanged);
+            worldContexts.put(uniqueId, worldContext);
         }
         catch (IOException e)
         {
@@ -332,27 +717,39 @@ public class MyChunks
     public void onWorldUnload(UnloadWorldEvent event)
     {
         logger.info("World unloaded: "+event.getTargetWorld().getName());
-        claimedChunks.remove(event.getTargetWorld().getUniqueId());
+        pendingChunks.remove(event.getTargetWorld().getUniqueId());
+        ChunkMap<ClaimedChunk> chunkMap = claimedChunks.remove(event.getTargetWorld().getUniqueId());
+        if(chunkMap != null)
+            flusher.collectModified(chunkMap.values());
+        flusher.flush(event.getTargetWorld().getUniqueId());
         worldContexts.remove(event.getTargetWorld().getUniqueId());
+        configReloader.unregister(event.getTargetWorld().getUniqueId());
     }
 
     public Optional<ClaimedChunk> getChunkData(Chunk chunk)
     {
-        return getChunkMap(chunk.getWorld())
-                .map(subMap -> subMap.get(chunk.getPosition()));
+        ChunkMap<ClaimedChunk> subMap = claimedChunks.get(chunk.getWorld().getUniqueId());
+        if(subMap == null)
+            return Optional.empty();
+
+        Vector3i position = chunk.getPosition();
+        return Optional.ofNullable(subMap.get(position.getX(), position.getZ()));
     }
 
-    private Optional<Map<Vector3i, ClaimedChunk>> getChunkMap(World world)
+    private Optional<ChunkMap<ClaimedChunk>> getChunkMap(World world)
     {
         return getChunkMap(world.getUniqueId());
     }
 
-    public Optional<Map<Vector3i, ClaimedChunk>> getChunkMap(UUID worldId)
+    /**
+     * The claimed chunks that are loaded on a world
+     * @param worldId The world ID
+     * @return The chunk map that can be used with primitive keys or as a {@link Map} keyed by the chunk position.
+     * Empty if the world is not loaded
+     */
+    public Optional<ChunkMap<ClaimedChunk>> getChunkMap(UUID worldId)
     {
-        Map<Vector3i, ClaimedChunk> subMap = claimedChunks.get(worldId);
-        if(subMap == null)
-            return Optional.empty();
-        return Optional.of(subMap);
+        return Optional.ofNullable(claimedChunks.get(worldId));
     }
 
     @Listener
@@ -373,30 +770,203 @@ public class MyChunks
             throw exception;
         }
 
+        ChunkMap<CompletableFuture<Optional<ClaimedChunk>>> pending = pendingChunks.get(worldId);
+        if(pending == null)
+            throw new IllegalStateException("The world "+chunk.getWorld().getName()+" is not loaded");
+
+        long chunkKey = pack(position.getX(), position.getZ());
+
+        // The chunk was unloaded and loaded again before its modifications were flushed
+        Optional<ClaimedChunk> dirty = flusher.getDirty(worldId, chunkKey);
+        if(dirty.isPresent())
+        {
+            pending.remove(chunkKey);
+            getChunkMap(worldId).orElseThrow(IllegalStateException::new).put(chunkKey, dirty.get());
+            context.publish(dirty.get());
+            return;
+        }
+
+        // Most loaded chunks are wilderness, they don't need to wait for the I/O thread
+        if(!dataStorage.mayBeClaimed(worldId, position.getX(), position.getZ()))
+        {
+            pending.remove(chunkKey);
+            diagnostics.count(Outcome.UNCLAIMED_SKIPPED);
+            return;
+        }
+
+        CompletableFuture<Optional<ClaimedChunk>> future = dataStorage.loadChunkAsync(context, position, ioExecutor);
+        pending.put(chunkKey, future);
+        context.markPending(position.getX(), position.getZ());
+        future.whenCompleteAsync((result, error) -> completeLoad(context, chunkKey, future), serverThread);
+    }
+
+    /**
+     * Moves the claim data of a chunk that finished loading to the loaded claims, must be called from the server thread.
+     * Nothing is done if the chunk was unloaded or the future was already handled.
+     */
+    private void completeLoad(WorldFallbackContext context, long chunkKey, CompletableFuture<Optional<ClaimedChunk>> future)
+    {
+        UUID worldId = context.getWorldId();
+        ChunkMap<CompletableFuture<Optional<ClaimedChunk>>> pending = pendingChunks.get(worldId);
+        ChunkMap<ClaimedChunk> chunkMap = claimedChunks.get(worldId);
+        if(pending == null || chunkMap == null || pending.get(chunkKey) != future)
+            return;
+
+        pending.remove(chunkKey);
+        Vector3i position = unpack(chunkKey);
         try
         {
-            dataStorage.loadChunk(worldId, position).ifPresent(claimedChunk ->{
-                logger.info("Chunk loaded: "+chunk.getWorld().getName()+position);
-                getChunkMap(worldId).orElseThrow(IllegalStateException::new).put(position, claimedChunk);
-            });
-        } catch (DataStorageException e)
+            Optional<ClaimedChunk> result = future.join();
+            if(!result.isPresent())
+            {
+                context.unpublish(position.getX(), position.getZ());
+                return;
+            }
+
+            ClaimedChunk claimedChunk = result.get();
+            diagnostics.count(Outcome.CLAIM_LOADED);
+            if(diagnostics.shouldTrace())
+                diagnostics.trace("Chunk loaded: "+worldId+position);
+            chunkMap.put(chunkKey, claimedChunk);
+            context.publish(claimedChunk);
+        }
+        catch (CompletionException e)
         {
-            logger.error("Failed to load chunk information on "+chunk.getWorld().getName()+position, e);
-            getChunkMap(worldId).orElseThrow(IllegalStateException::new).put(position, new ClaimedChunk(context, position));
+            logger.error("Failed to load chunk information on "+worldId+position, e.getCause());
+            ClaimedChunk claimedChunk = new ClaimedChunk(context, position);
+            chunkMap.put(chunkKey, claimedChunk);
+            context.publish(claimedChunk);
         }
     }
 
+    /**
+     * Checks if the claim data of a chunk is still being loaded by the storage engine
+     * @param worldId The world ID
+     * @param chunkPosition The chunk position
+     * @return {@code true} if the data is not available yet on {@link #getChunkMap(UUID)}
+     */
+    public boolean isChunkPending(UUID worldId, Vector3i chunkPosition)
+    {
+        return isPending(worldId, pack(chunkPosition.getX(), chunkPosition.getZ()));
+    }
+
+    private boolean isPending(UUID worldId, long chunkKey)
+    {
+        ChunkMap<CompletableFuture<Optional<ClaimedChunk>>> pending = pendingChunks.get(worldId);
+        return pending != null && !pending.isEmpty() && pending.containsKey(chunkKey);
+    }
+
+    /**
+     * Applies the {@link PendingChunkPolicy} to a chunk whose claim data is still loading
+     * @return {@code true} if the data is now available on the loaded claims, {@code false} if the action must be denied
+     */
+    private boolean awaitPending(UUID worldId, long chunkKey)
+    {
+        if(pendingChunkPolicy == PendingChunkPolicy.DENY)
+            return false;
+
+        CompletableFuture<Optional<ClaimedChunk>> future = pendingChunks.get(worldId).get(chunkKey);
+        WorldFallbackContext context = worldContexts.get(worldId);
+        if(future == null || context == null)
+            return false;
+
+        try
+        {
+            future.get(pendingChunkWaitMillis, TimeUnit.MILLISECONDS);
+        }
+        catch (TimeoutException e)
+        {
+            return false;
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+        catch (ExecutionException ignored)
+        {
+            // The failure is handled by completeLoad
+        }
+
+        completeLoad(context, chunkKey, future);
+        return true;
+    }
+
     @Listener
     public void onChunkUnload(UnloadChunkEvent event)
     {
         Chunk chunk = event.getTargetChunk();
         Vector3i position = chunk.getPosition();
-        getChunkMap(chunk.getWorld()).ifPresent(chunkMap -> {
-            if(chunkMap.remove(position) != null)
-                logger.info("Chunk unloaded: "+chunk.getWorld().getName()+position);
+        UUID worldId = chunk.getWorld().getUniqueId();
+        ChunkMap<CompletableFuture<Optional<ClaimedChunk>>> pending = pendingChunks.get(worldId);
+        if(pending != null && pending.remove(position.getX(), position.getZ()) != null)
+        {
+            WorldFallbackContext context = worldContexts.get(worldId);
+            if(context != null)
+                context.unpublish(position.getX(), position.getZ());
+        }
+
+        getChunkMap(worldId).ifPresent(chunkMap -> {
+            ClaimedChunk claimedChunk = chunkMap.remove(position);
+            if(claimedChunk != null)
+            {
+                claimedChunk.getWorldContext().unpublish(position.getX(), position.getZ());
+                diagnostics.count(Outcome.CLAIM_UNLOADED);
+                if(diagnostics.shouldTrace())
+                    diagnostics.trace("Chunk unloaded: "+chunk.getWorld().getName()+position);
+                if(WriteBehindFlusher.needsSave(claimedChunk))
+                    flusher.markDirty(claimedChunk);
+            }
         } );
     }
 
+    public DataStorage getDataStorage()
+    {
+        return dataStorage;
+    }
+
+    /**
+     * The flusher that persists the modified chunks, must be used only from the server thread
+     */
+    public WriteBehindFlusher getFlusher()
+    {
+        return flusher;
+    }
+
+    /**
+     * The registry that provides a single instance for each player referenced by the claims
+     */
+    public PlayerNameRegistry getPlayerNames()
+    {
+        return playerNames;
+    }
+
+    /**
+     * The cache of the permission decisions taken for the online players
+     */
+    public DecisionCache getDecisionCache()
+    {
+        return decisionCache;
+    }
+
+    public ConfigReloader getConfigReloader()
+    {
+        return configReloader;
+    }
+
+    /**
+     * The server admin status of the online players, permission plugins may refresh a player when it changes
+     */
+    public AdminCache getAdminCache()
+    {
+        return adminCache;
+    }
+
+    public Diagnostics getDiagnostics()
+    {
+        return diagnostics;
+    }
+
     public Optional<WorldFallbackContext> getWorldContext(UUID worldId)
     {
         return Optional.ofNullable(worldContexts.get(worldId));
@@ -0,0 +1,18 @@
+package br.com.gamemods.mychunks;
+
+/**
+ * Defines how protected actions are handled when they happen on a chunk whose claim data is still being loaded
+ * by the storage engine.
+ */
+public enum PendingChunkPolicy
+{
+    /**
+     * The action is denied immediately, the player may try again when the data finishes loading
+     */
+    DENY,
+
+    /**
+     * The server thread waits for the data for a limited time, the action is denied if the time runs out
+     */
+    WAIT
+}
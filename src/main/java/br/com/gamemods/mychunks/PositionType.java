@@ -76,6 +76,24 @@ public enum PositionType
         {
             return toMinRegion(position);
         }
+
+        @Override
+        public int toMinBlock(int coordinate)
+        {
+            return coordinate;
+        }
+
+        @Override
+        public int toMinChunk(int coordinate)
+        {
+            return coordinate>>4;
+        }
+
+        @Override
+        public int toMinRegion(int coordinate)
+        {
+            return coordinate>>9;
+        }
     },
 
     /**
@@ -141,6 +159,24 @@ public enum PositionType
         {
             return toMinRegion(position);
         }
+
+        @Override
+        public int toMinBlock(int coordinate)
+        {
+            return coordinate<<4;
+        }
+
+        @Override
+        public int toMinChunk(int coordinate)
+        {
+            return coordinate;
+        }
+
+        @Override
+        public int toMinRegion(int coordinate)
+        {
+            return coordinate>>5;
+        }
     },
 
     /**
@@ -206,6 +242,24 @@ public enum PositionType
         {
             return toMinRegion(position);
         }
+
+        @Override
+        public int toMinBlock(int coordinate)
+        {
+            return coordinate<<4;
+        }
+
+        @Override
+        public int toMinChunk(int coordinate)
+        {
+            return coordinate;
+        }
+
+        @Override
+        public int toMinRegion(int coordinate)
+        {
+            return coordinate>>5;
+        }
     },
 
     /**
@@ -271,6 +325,24 @@ public enum PositionType
         {
             return position;
         }
+
+        @Override
+        public int toMinBlock(int coordinate)
+        {
+            return coordinate<<9;
+        }
+
+        @Override
+        public int toMinChunk(int coordinate)
+        {
+            return coordinate<<5;
+        }
+
+        @Override
+        public int toMinRegion(int coordinate)
+        {
+            return coordinate;
+        }
     }
     ;
 
@@ -368,6 +440,67 @@ public enum PositionType
      */
     public abstract Vector3i toMaxRegion(Vector3i position);
 
+    /**
+     * Calculate the minimum block coordinate of a single horizontal axis without allocating vectors
+     * @param coordinate The X or Z coordinate based on this type
+     * @return The minimum block X or Z coordinate
+     */
+    public abstract int toMinBlock(int coordinate);
+
+    /**
+     * Calculate the minimum chunk coordinate of a single horizontal axis without allocating vectors
+     * @param coordinate The X or Z coordinate based on this type
+     * @return The minimum chunk X or Z coordinate
+     */
+    public abstract int toMinChunk(int coordinate);
+
+    /**
+     * Calculate the minimum region coordinate of a single horizontal axis without allocating vectors
+     * @param coordinate The X or Z coordinate based on this type
+     * @return The minimum region X or Z coordinate
+     */
+    public abstract int toMinRegion(int coordinate);
+
+    /**
+     * Calculate the minimum chunk that can be contained on a specific coordinate and pack it with {@link #pack(int, int)}
+     * @param x The X coordinate based on this type
+     * @param z The Z coordinate based on this type
+     * @return The packed chunk X and Z coordinates
+     */
+    public long toMinChunkKey(int x, int z)
+    {
+        return pack(toMinChunk(x), toMinChunk(z));
+    }
+
+    /**
+     * Same as {@link #toMinChunkKey(int, int)} but the coordinates are already packed
+     * @param packed The X and Z coordinates based on this type, packed with {@link #pack(int, int)}
+     */
+    public long toMinChunkKey(long packed)
+    {
+        return pack(toMinChunk(unpackX(packed)), toMinChunk(unpackZ(packed)));
+    }
+
+    /**
+     * Calculate the minimum region that can be contained on a specific coordinate and pack it with {@link #pack(int, int)}
+     * @param x The X coordinate based on this type
+     * @param z The Z coordinate based on this type
+     * @return The packed region X and Z coordinates
+     */
+    public long toMinRegionKey(int x, int z)
+    {
+        return pack(toMinRegion(x), toMinRegion(z));
+    }
+
+    /**
+     * Same as {@link #toMinRegionKey(int, int)} but the coordinates are already packed
+     * @param packed The X and Z coordinates based on this type, packed with {@link #pack(int, int)}
+     */
+    public long toMinRegionKey(long packed)
+    {
+        return pack(toMinRegion(unpackX(packed)), toMinRegion(unpackZ(packed)));
+    }
+
     /**
      * Creates a 2 coordinate vector that represents X and Z coordinates in a world.
      * @param position The XYZ coordinates
@@ -388,4 +521,42 @@ public enum PositionType
     {
         return new Vector3i(position.getX(), height, position.getY());
     }
+
+    /**
+     * Packs the X and Z coordinates in a single primitive value, the height is discarded.
+     * <p>The value can be used as key for primitive collections without allocating objects</p>
+     * @param x The X coordinate
+     * @param z The Z coordinate
+     * @return The X coordinate on the 32 high bits and the Z coordinate on the 32 low bits
+     * @see #unpackX(long)
+     * @see #unpackZ(long)
+     */
+    public static long pack(int x, int z)
+    {
+        return ((long) x << 32) | (z & 0xFFFFFFFFL);
+    }
+
+    /**
+     * Extracts the X coordinate from a value created by {@link #pack(int, int)}
+     */
+    public static int unpackX(long packed)
+    {
+        return (int) (packed >> 32);
+    }
+
+    /**
+     * Extracts the Z coordinate from a value created by {@link #pack(int, int)}
+     */
+    public static int unpackZ(long packed)
+    {
+        return (int) packed;
+    }
+
+    /**
+     * Creates a vector with the coordinates packed by {@link #pack(int, int)}, the height will be {@code 0}
+     */
+    public static Vector3i unpack(long packed)
+    {
+        return new Vector3i(unpackX(packed), 0, unpackZ(packed));
+    }
 }
@@ -18,7 +18,7 @@ public class Util
 {
     public static final Collection<Vector3i> CARDINAL_DIRECTIONS = Collections.unmodifiableCollection(Arrays.asList(
             new Vector3i(-1,0,0),new Vector3i(1,0,0),
-            new Vector3i(0,0,-1),new Vector3i(0,0,-1)
+            new Vector3i(0,0,-1),new Vector3i(0,0,1)
     ));
 
     public static <E extends Enum<E>> EnumSet<E> enumSet(Class<E> enumClass, @Nullable Collection<E> collection)
@@ -41,7 +41,17 @@ public class Util
      */
     public static Vector2i chunkToRegion(Vector3i chunkPosition)
     {
-        return PositionType.discardHeight(PositionType.CHUNK.toMinRegion(chunkPosition));
+        return new Vector2i(chunkPosition.getX()>>5, chunkPosition.getZ()>>5);
+    }
+
+    /**
+     * Obtain the region position that stores a chunk position without allocating vectors
+     * @return The region X and Z coordinates packed with {@link PositionType#pack(int, int)}
+     * @see PositionType#toMinRegionKey(int, int)
+     */
+    public static long chunkToRegionKey(int chunkX, int chunkZ)
+    {
+        return PositionType.CHUNK.toMinRegionKey(chunkX, chunkZ);
     }
 
     /**
@@ -0,0 +1,173 @@
+package br.com.gamemods.mychunks;
+
+import br.com.gamemods.mychunks.data.api.DataStorage;
+import br.com.gamemods.mychunks.data.api.DataStorageException;
+import br.com.gamemods.mychunks.data.api.WriteBatch;
+import br.com.gamemods.mychunks.data.state.ClaimedChunk;
+import br.com.gamemods.mychunks.data.state.Member;
+import br.com.gamemods.mychunks.data.state.Modifiable;
+import com.flowpowered.math.vector.Vector3i;
+import org.slf4j.Logger;
+import org.spongepowered.api.util.annotation.NonnullByDefault;
+
+import javax.annotation.ParametersAreNonnullByDefault;
+import java.util.*;
+import java.util.concurrent.Executor;
+
+/**
+ * <p>Tracks the chunks that needs to be saved and persists them in batches, so a burst of changes to the same chunk
+ * or to chunks of the same region costs a single write per region file.</p>
+ * <p>All methods must be called from the server thread, the batches are written by the I/O executor in the same order
+ * that they were flushed. Batches that fails are logged and the chunks are tracked again to be retried on the next flush.</p>
+ */
+@ParametersAreNonnullByDefault
+@NonnullByDefault
+public class WriteBehindFlusher
+{
+    private final DataStorage dataStorage;
+    private final Executor ioExecutor;
+    private final Executor serverThread;
+    private final Logger logger;
+
+    // Keyed by the chunk position, a chunk is tracked only once regardless of how many times it was modified
+    private final Map<UUID, ChunkMap<ClaimedChunk>> dirtyChunks = new HashMap<>(1);
+
+    /**
+     * @param dataStorage The storage that will persist the chunks
+     * @param ioExecutor The executor that writes the batches, it must run the tasks in the submission order
+     * @param serverThread The executor that runs tasks on the server thread
+     * @param logger The logger that will report the failures
+     */
+    public WriteBehindFlusher(DataStorage dataStorage, Executor ioExecutor, Executor serverThread, Logger logger)
+    {
+        this.dataStorage = dataStorage;
+        this.ioExecutor = ioExecutor;
+        this.serverThread = serverThread;
+        this.logger = logger;
+    }
+
+    /**
+     * Checks if the chunk or any state that is persisted with it has been modified since it was saved
+     */
+    public static boolean needsSave(ClaimedChunk chunk)
+    {
+        if(chunk.isModified() || chunk.getOwner().map(Modifiable::isModified).orElse(false))
+            return true;
+
+        for(Set<Member> memberSet: chunk.getMembers().values())
+            for(Member member: memberSet)
+                if(member.getRank().isModified() || member.getPlayerId().isModified())
+                    return true;
+
+        return false;
+    }
+
+    /**
+     * Schedules the chunk to be saved on the next flush
+     */
+    public void markDirty(ClaimedChunk chunk)
+    {
+        ChunkMap<ClaimedChunk> chunkMap = dirtyChunks.get(chunk.getWorldId());
+        if(chunkMap == null)
+            dirtyChunks.put(chunk.getWorldId(), chunkMap = new ChunkMap<>());
+
+        Vector3i position = chunk.getPosition();
+        chunkMap.put(position.getX(), position.getZ(), chunk);
+    }
+
+    /**
+     * Tracks all chunks from the collection that have unsaved modifications
+     * @return How many chunks were modified
+     */
+    public int collectModified(Collection<ClaimedChunk> chunks)
+    {
+        int modified = 0;
+        for(ClaimedChunk chunk: chunks)
+            if(needsSave(chunk))
+            {
+                markDirty(chunk);
+                modified++;
+            }
+        return modified;
+    }
+
+    /**
+     * A chunk that is waiting to be saved. It must be reused when the chunk is loaded again before the flush because
+     * the storage does not have the latest state yet.
+     * @param worldId The world ID
+     * @param chunkKey The chunk position packed with {@link PositionType#pack(int, int)}
+     */
+    public Optional<ClaimedChunk> getDirty(UUID worldId, long chunkKey)
+    {
+        ChunkMap<ClaimedChunk> chunkMap = dirtyChunks.get(worldId);
+        return chunkMap == null? Optional.empty() : Optional.ofNullable(chunkMap.get(chunkKey));
+    }
+
+    /**
+     * The amount of chunks that are waiting to be saved
+     */
+    public int getDirtyCount()
+    {
+        int count = 0;
+        for(ChunkMap<ClaimedChunk> chunkMap: dirtyChunks.values())
+            count += chunkMap.size();
+        return count;
+    }
+
+    /**
+     * Saves all tracked chunks from a world
+     */
+    public void flush(UUID worldId)
+    {
+        ChunkMap<ClaimedChunk> chunkMap = dirtyChunks.remove(worldId);
+        if(chunkMap != null && !chunkMap.isEmpty())
+            submit(new ArrayList<>(chunkMap.values()));
+    }
+
+    /**
+     * Saves all tracked chunks from all worlds in a single batch
+     */
+    public void flushAll()
+    {
+        if(dirtyChunks.isEmpty())
+            return;
+
+        List<ClaimedChunk> chunks = new ArrayList<>();
+        for(ChunkMap<ClaimedChunk> chunkMap: dirtyChunks.values())
+            chunks.addAll(chunkMap.values());
+        dirtyChunks.clear();
+
+        if(!chunks.isEmpty())
+            submit(chunks);
+    }
+
+    private void submit(List<ClaimedChunk> chunks)
+    {
+        WriteBatch batch;
+        try
+        {
+            batch = dataStorage.prepareSave(chunks);
+        }
+        catch (DataStorageException e)
+        {
+            logger.error("Failed to prepare "+chunks.size()+" chunks to be saved, they will be retried on the next flush", e);
+            chunks.forEach(this::markDirty);
+            return;
+        }
+
+        ioExecutor.execute(() -> {
+            try
+            {
+                batch.write();
+            }
+            catch (DataStorageException e)
+            {
+                logger.error("Failed to save "+batch.getChunks().size()+" chunks, they will be retried on the next flush", e);
+                serverThread.execute(() -> batch.getChunks().forEach(chunk -> {
+                    chunk.setModified(true);
+                    markDirty(chunk);
+                }));
+            }
+        });
+    }
+}
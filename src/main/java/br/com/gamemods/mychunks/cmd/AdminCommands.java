@@ -0,0 +1,104 @@
+package br.com.gamemods.mychunks.cmd;
+
+import br.com.gamemods.mychunks.Diagnostics;
+import br.com.gamemods.mychunks.MyChunks;
+import br.com.gamemods.mychunks.data.api.DataStorage;
+import br.com.gamemods.mychunks.data.binary.BinaryDataStorage;
+import com.google.common.cache.CacheStats;
+import org.spongepowered.api.command.CommandException;
+import org.spongepowered.api.command.CommandResult;
+import org.spongepowered.api.command.CommandSource;
+import org.spongepowered.api.command.args.CommandContext;
+import org.spongepowered.api.text.Text;
+import org.spongepowered.api.text.format.TextColors;
+
+import java.nio.file.Path;
+import java.util.Map;
+
+/**
+ * Commands that are available only for the server administrators
+ */
+public class AdminCommands
+{
+    private final MyChunks plugin;
+
+    public AdminCommands(MyChunks plugin)
+    {
+        this.plugin = plugin;
+    }
+
+    public CommandResult diagnostics(CommandSource src, CommandContext args) throws CommandException
+    {
+        Diagnostics diagnostics = plugin.getDiagnostics();
+        String action = args.<String>getOne("action").orElse("").toLowerCase();
+        switch (action)
+        {
+            case "":
+                break;
+            case "on":
+                diagnostics.setEnabled(true);
+                break;
+            case "off":
+                diagnostics.setEnabled(false);
+                diagnostics.setTracing(false);
+                break;
+            case "trace-on":
+                diagnostics.setTracing(true);
+                break;
+            case "trace-off":
+                diagnostics.setTracing(false);
+                break;
+            case "reset":
+                diagnostics.reset();
+                break;
+            default:
+                throw new CommandException(Text.of("Unknown action: "+action+". Use on, off, trace-on, trace-off or reset"));
+        }
+
+        src.sendMessage(Text.builder("Diagnostics counters: "+(diagnostics.isEnabled()? "enabled" : "disabled")+
+                ", trace: "+(diagnostics.isTracing()? "enabled" : "disabled")).color(TextColors.GOLD).build());
+        for(Map.Entry<Diagnostics.Outcome, Long> entry: diagnostics.snapshot().entrySet())
+            src.sendMessage(Text.of(entry.getKey().name().toLowerCase()+": "+entry.getValue()));
+
+        return CommandResult.success();
+    }
+
+    public CommandResult cache(CommandSource src, CommandContext args) throws CommandException
+    {
+        DataStorage dataStorage = plugin.getDataStorage();
+        Map<String, CacheStats> stats = dataStorage.getCacheStats();
+        if(stats.isEmpty())
+            throw new CommandException(Text.of("The storage engine does not have caches"));
+
+        src.sendMessage(Text.builder("Storage cache statistics").color(TextColors.GOLD).build());
+        for(Map.Entry<String, CacheStats> entry: stats.entrySet())
+        {
+            CacheStats cache = entry.getValue();
+            src.sendMessage(Text.of(String.format("%s: hit rate %.1f%%, hits: %d, misses: %d, average load: %.2fms, " +
+                            "load failures: %d, evictions: %d",
+                    entry.getKey(), cache.hitRate() * 100, cache.hitCount(), cache.missCount(),
+                    cache.averageLoadPenalty() / 1_000_000, cache.loadExceptionCount(), cache.evictionCount())));
+        }
+
+        if(dataStorage instanceof BinaryDataStorage)
+            src.sendMessage(Text.of("Cached regions: "+((BinaryDataStorage) dataStorage).getCachedRegions()));
+
+        return CommandResult.success();
+    }
+
+    public CommandResult reload(CommandSource src, CommandContext args) throws CommandException
+    {
+        src.sendMessage(Text.builder("Reloading the permission config files that were changed").color(TextColors.GOLD).build());
+        plugin.getConfigReloader().reload().whenComplete((files, error) -> {
+            if(error != null)
+                src.sendMessage(Text.builder("Failed to reload the config files: "+error.getMessage()).color(TextColors.RED).build());
+            else if(files.isEmpty())
+                src.sendMessage(Text.of("No config file was changed"));
+            else
+                for(Path file: files)
+                    src.sendMessage(Text.of("Reloaded: "+file.getFileName()));
+        });
+
+        return CommandResult.success();
+    }
+}
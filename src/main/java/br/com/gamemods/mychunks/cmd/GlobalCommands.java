@@ -2,7 +2,6 @@ package br.com.gamemods.mychunks.cmd;
 
 import br.com.gamemods.mychunks.MyChunks;
 import br.com.gamemods.mychunks.data.state.ClaimedChunk;
-import br.com.gamemods.mychunks.data.state.PlayerName;
 import br.com.gamemods.mychunks.data.state.WorldFallbackContext;
 import com.flowpowered.math.vector.Vector3i;
 import org.spongepowered.api.command.CommandException;
@@ -47,7 +46,7 @@ public class GlobalCommands
         Vector3i chunkPosition = blockToChunk(location.getPosition().toInt());
 
         Optional<WorldFallbackContext> opt = plugin.getWorldContext(worldId);
-        if(opt.isPresent())
+        if(!opt.isPresent())
         {
             String reason = "Failed to load the world context for the world "+location.getExtent().getName();
             player.sendMessage(Text.builder(reason).color(TextColors.RED).build());
@@ -55,10 +54,17 @@ public class GlobalCommands
         }
 
         WorldFallbackContext worldContext = opt.get();
+        if(plugin.isChunkPending(worldId, chunkPosition))
+        {
+            player.sendMessage(Text.builder("The chunk data is still loading, try again").color(TextColors.RED).build());
+            return CommandResult.empty();
+        }
 
         ClaimedChunk claimedChunk = new ClaimedChunk(worldContext, chunkPosition);
-        claimedChunk.setOwner(new PlayerName(player.getUniqueId(), player.getName()));
+        claimedChunk.setOwner(plugin.getPlayerNames().update(player.getUniqueId(), player.getName()));
         plugin.getChunkMap(worldId).get().put(chunkPosition, claimedChunk);
+        worldContext.publish(claimedChunk);
+        plugin.getFlusher().markDirty(claimedChunk);
         player.sendMessage(Text.of("The chunk "+chunkPosition+" is now protected"));
         return CommandResult.success();
     }
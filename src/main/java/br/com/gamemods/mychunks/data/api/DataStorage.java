@@ -1,17 +1,129 @@
 package br.com.gamemods.mychunks.data.api;
 
 import br.com.gamemods.mychunks.data.state.ClaimedChunk;
+import br.com.gamemods.mychunks.data.state.WorldFallbackContext;
 import com.flowpowered.math.vector.Vector3i;
+import com.google.common.cache.CacheStats;
 import org.spongepowered.api.util.annotation.NonnullByDefault;
 
 import javax.annotation.ParametersAreNonnullByDefault;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.function.Consumer;
 
 @ParametersAreNonnullByDefault
 @NonnullByDefault
 public interface DataStorage
 {
-    Optional<ClaimedChunk> loadChunk(UUID worldId, Vector3i position) throws DataStorageException;
-    void saveChunk(ClaimedChunk chunk);
+    /**
+     * Loads the data of a claimed chunk
+     * @param worldContext The world where the chunk resides
+     * @param position The chunk position
+     * @return The chunk data with the modified flag cleared or empty if the chunk is not claimed
+     */
+    Optional<ClaimedChunk> loadChunk(WorldFallbackContext worldContext, Vector3i position) throws DataStorageException;
+
+    /**
+     * Checks if a chunk may have claim data without doing any I/O operation. It's used to skip the
+     * {@link #loadChunk(WorldFallbackContext, Vector3i)} call for the chunks that are surely not claimed.
+     * <p>The default implementation always returns {@code true}</p>
+     * @return {@code false} only if the chunk is not claimed for sure
+     */
+    default boolean mayBeClaimed(UUID worldId, int chunkX, int chunkZ)
+    {
+        return true;
+    }
+
+    /**
+     * Loads the data of a claimed chunk without blocking the caller.
+     * <p>The default implementation calls {@link #loadChunk(WorldFallbackContext, Vector3i)} on the given executor,
+     * so the implementation must be safe to be called from other threads</p>
+     * @param worldContext The world where the chunk resides
+     * @param position The chunk position
+     * @param executor The executor that will do the I/O operations
+     * @return A future that completes with the same result as {@link #loadChunk(WorldFallbackContext, Vector3i)} or
+     * completes exceptionally with a {@link DataStorageException}
+     */
+    default CompletableFuture<Optional<ClaimedChunk>> loadChunkAsync(WorldFallbackContext worldContext, Vector3i position,
+                                                                     Executor executor)
+    {
+        CompletableFuture<Optional<ClaimedChunk>> future = new CompletableFuture<>();
+        executor.execute(() -> {
+            try
+            {
+                future.complete(loadChunk(worldContext, position));
+            }
+            catch (Throwable e)
+            {
+                future.completeExceptionally(e);
+            }
+        });
+        return future;
+    }
+
+    /**
+     * Persists the chunk data immediately and clears the modified flag
+     */
+    default void saveChunk(ClaimedChunk chunk) throws DataStorageException
+    {
+        prepareSave(Collections.singletonList(chunk)).write();
+    }
+
+    /**
+     * Captures the current state of some chunks to be persisted later and clears their modified flags.
+     * <p>Must be called from the thread that modifies the chunks, the returned batch may be written from an other
+     * thread. The implementation should group the chunks to write them with as few operations as possible</p>
+     * @param chunks The chunks to be saved, they may belong to different worlds
+     * @return The captured state
+     * @throws DataStorageException If the state could not be captured, the modified flags are not changed in this case
+     */
+    WriteBatch prepareSave(Collection<ClaimedChunk> chunks) throws DataStorageException;
+
+    /**
+     * Removes the persisted data of a chunk that is no longer claimed
+     */
+    void deleteChunk(UUID worldId, Vector3i position) throws DataStorageException;
+
+    /**
+     * The statistics of the caches used by the storage, keyed by a short cache name
+     * <p>The default implementation returns an empty map</p>
+     */
+    default Map<String, CacheStats> getCacheStats()
+    {
+        return Collections.emptyMap();
+    }
+
+    /**
+     * Notifies the storage that the owner of a chunk changed, the change is indexed immediately but the chunk data
+     * is persisted only when it's saved. Can be registered with {@link WorldFallbackContext#addOwnerListener(Consumer)}.
+     */
+    default void ownerChanged(ClaimedChunk chunk)
+    {}
+
+    /**
+     * The amount of chunks owned by a player on all worlds, including the chunks that are not loaded
+     * @param ownerId The player ID or the {@link br.com.gamemods.mychunks.data.state.PlayerName#ADMINS} ID
+     * @throws DataStorageException If the storage does not index the owners
+     */
+    default int countOwnedChunks(UUID ownerId) throws DataStorageException
+    {
+        throw new DataStorageException("The storage "+getClass().getSimpleName()+" does not index the chunk owners");
+    }
+
+    /**
+     * The chunks owned by a player on all worlds, including the chunks that are not loaded
+     * @param ownerId The player ID or the {@link br.com.gamemods.mychunks.data.state.PlayerName#ADMINS} ID
+     * @return The chunk positions grouped by world ID
+     * @throws DataStorageException If the storage does not index the owners
+     */
+    default Map<UUID, Set<Vector3i>> getOwnedChunks(UUID ownerId) throws DataStorageException
+    {
+        throw new DataStorageException("The storage "+getClass().getSimpleName()+" does not index the chunk owners");
+    }
 }
@@ -0,0 +1,27 @@
+package br.com.gamemods.mychunks.data.api;
+
+import br.com.gamemods.mychunks.data.state.ClaimedChunk;
+import org.spongepowered.api.util.annotation.NonnullByDefault;
+
+import javax.annotation.ParametersAreNonnullByDefault;
+import java.util.Collection;
+
+/**
+ * The state of some chunks captured by {@link DataStorage#prepareSave(Collection)} that is ready to be persisted.
+ * <p>The batch does not reference the mutable state of the chunks, so it can be written from any thread while the
+ * chunks are still being modified</p>
+ */
+@ParametersAreNonnullByDefault
+@NonnullByDefault
+public interface WriteBatch
+{
+    /**
+     * The chunks whose state was captured by this batch
+     */
+    Collection<ClaimedChunk> getChunks();
+
+    /**
+     * Persists the captured state. Batches must be written in the same order that they were prepared.
+     */
+    void write() throws DataStorageException;
+}
@@ -1,74 +1,348 @@
 package br.com.gamemods.mychunks.data.binary;
 
+import br.com.gamemods.mychunks.ChunkMap;
 import br.com.gamemods.mychunks.data.api.DataStorage;
 import br.com.gamemods.mychunks.data.api.DataStorageException;
+import br.com.gamemods.mychunks.data.api.WriteBatch;
 import br.com.gamemods.mychunks.data.state.ClaimedChunk;
-import com.flowpowered.math.vector.Vector2i;
+import br.com.gamemods.mychunks.data.state.Member;
+import br.com.gamemods.mychunks.data.state.PlayerNameRegistry;
+import br.com.gamemods.mychunks.data.state.WorldFallbackContext;
 import com.flowpowered.math.vector.Vector3i;
 import com.google.common.cache.CacheBuilder;
 import com.google.common.cache.CacheLoader;
+import com.google.common.cache.CacheStats;
 import com.google.common.cache.LoadingCache;
+import com.google.common.cache.RemovalNotification;
 import org.spongepowered.api.util.annotation.NonnullByDefault;
 
+import javax.annotation.Nullable;
 import javax.annotation.ParametersAreNonnullByDefault;
 import java.io.File;
 import java.io.IOException;
-import java.util.HashMap;
-import java.util.Map;
-import java.util.Optional;
-import java.util.UUID;
+import java.nio.ByteBuffer;
+import java.util.*;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
 
-import static br.com.gamemods.mychunks.Util.chunkToRegion;
+import static br.com.gamemods.mychunks.PositionType.*;
 
 /**
  * Data storage implementation that stores the data as binary files, on the disk.
- * <p>The data is saved in multiple files organized by directories</p>
+ * <p>The data is saved in multiple files organized by directories, each world have its own directory with one
+ * {@link RegionFile} for each region of 32x32 chunks that have claims, named as {@code r.<regionX>.<regionZ>.myc}</p>
+ * <p>The player names are stored once for all worlds on a {@link PlayerNameTable} named {@code players.myn} and the
+ * chunks of each owner are indexed on an {@link OwnerIndex} named {@code owners.myo}.</p>
  */
 @NonnullByDefault
 @ParametersAreNonnullByDefault
 public class BinaryDataStorage implements DataStorage
 {
     private final File storageDir;
+    private final boolean memoryMapped;
+    private final PlayerNameRegistry playerNames;
+    private final PlayerNameTable nameTable;
+    private final OwnerIndex ownerIndex;
+
+    private final CacheSettings cacheSettings;
 
     // We cache the data to prevent issues with slow IO operations when the same chunk is loaded and unloaded too many times
     // and when multiple chunks are loaded from the same region too quickly
-    private LoadingCache<UUID, WorldData> worldCache = CacheBuilder.newBuilder()
-            .expireAfterAccess(15, TimeUnit.MINUTES)
-            .build(new CacheLoader<UUID, WorldData>()
-            {
-                @Override
-                public WorldData load(UUID key) throws Exception
-                {
-                    return new WorldData(key);
-                }
-            });
+    private final LoadingCache<UUID, WorldData> worldCache;
+
+    // The region cache statistics of the worlds that were evicted from the world cache
+    private CacheStats evictedRegionStats = new CacheStats(0, 0, 0, 0, 0, 0);
 
     public BinaryDataStorage(File storageDir) throws IOException
+    {
+        this(storageDir, false);
+    }
+
+    /**
+     * @param storageDir The directory where the world directories will be created
+     * @param memoryMapped If the region files should be read through memory mappings, which avoids copying the records
+     *                     when the same regions are read frequently
+     * @throws IOException If the directory could not be created
+     */
+    public BinaryDataStorage(File storageDir, boolean memoryMapped) throws IOException
+    {
+        this(storageDir, memoryMapped, new PlayerNameRegistry());
+    }
+
+    /**
+     * @param storageDir The directory where the world directories will be created
+     * @param memoryMapped If the region files should be read through memory mappings
+     * @param playerNames The registry that provides the player instances of the loaded chunks
+     * @throws IOException If the directory could not be created or the player name table or the owner index could not
+     * be read. The owner index is built from the region files if it does not exist.
+     */
+    public BinaryDataStorage(File storageDir, boolean memoryMapped, PlayerNameRegistry playerNames) throws IOException
+    {
+        this(storageDir, memoryMapped, playerNames, CacheSettings.DEFAULT);
+    }
+
+    /**
+     * @param storageDir The directory where the world directories will be created
+     * @param memoryMapped If the region files should be read through memory mappings
+     * @param playerNames The registry that provides the player instances of the loaded chunks
+     * @param cacheSettings How long and how many regions are kept in memory
+     * @throws IOException If the directory could not be created or the player name table or the owner index could not
+     * be read. The owner index is built from the region files if it does not exist.
+     */
+    public BinaryDataStorage(File storageDir, boolean memoryMapped, PlayerNameRegistry playerNames,
+                             CacheSettings cacheSettings) throws IOException
     {
         this.storageDir = storageDir;
+        this.memoryMapped = memoryMapped;
+        this.playerNames = playerNames;
+        this.cacheSettings = cacheSettings;
+        worldCache = CacheBuilder.newBuilder()
+                .expireAfterAccess(cacheSettings.getWorldExpireMinutes(), TimeUnit.MINUTES)
+                .recordStats()
+                .removalListener((RemovalNotification<UUID, WorldData> notification) -> {
+                    WorldData world = notification.getValue();
+                    if(world == null)
+                        return;
+                    synchronized(this)
+                    {
+                        evictedRegionStats = evictedRegionStats.plus(world.regionCache.stats());
+                    }
+                    world.regionCache.invalidateAll();
+                })
+                .build(new CacheLoader<UUID, WorldData>()
+                {
+                    @Override
+                    public WorldData load(UUID key) throws Exception
+                    {
+                        return new WorldData(key);
+                    }
+                });
         if(!storageDir.isDirectory() && !storageDir.mkdirs())
             throw new IOException("Failed to create the directory "+storageDir);
+        nameTable = new PlayerNameTable(new File(storageDir, "players.myn"));
+        ownerIndex = new OwnerIndex(new File(storageDir, "owners.myo"));
+        if(!ownerIndex.isPersisted())
+            ownerIndex.rebuild(storageDir);
+    }
+
+    @Override
+    public Optional<ClaimedChunk> loadChunk(WorldFallbackContext worldContext, Vector3i position) throws DataStorageException
+    {
+        // Does not create a region cache for the wilderness
+        if(!mayBeClaimed(worldContext.getWorldId(), position.getX(), position.getZ()))
+            return Optional.empty();
+
+        try
+        {
+            return worldCache.get(worldContext.getWorldId()).region(position).getChunk(worldContext, position);
+        }
+        catch (ExecutionException | IOException e)
+        {
+            throw new DataStorageException("Failed to load the chunk "+worldContext.getWorldId()+position, e);
+        }
+    }
+
+    /**
+     * Serializes the chunks on the caller thread and groups the records by region file, so the returned batch
+     * rewrites each region file only once.
+     */
+    @Override
+    public WriteBatch prepareSave(Collection<ClaimedChunk> chunks) throws DataStorageException
+    {
+        Map<UUID, Map<Long, RegionBatch>> worlds = new HashMap<>(2);
+        boolean namesChanged = false;
+        for(ClaimedChunk chunk: chunks)
+        {
+            if(chunk.getOwner().isPresent())
+                namesChanged |= nameTable.record(chunk.getOwner().get());
+            for(Set<Member> memberSet: chunk.getMembers().values())
+                for(Member member: memberSet)
+                    namesChanged |= nameTable.record(member.getPlayerId());
+
+            Vector3i position = chunk.getPosition();
+            int x = position.getX(), z = position.getZ();
+            byte[] record;
+            try
+            {
+                record = ChunkSerializer.serialize(chunk);
+            }
+            catch (IOException e)
+            {
+                throw new DataStorageException("Failed to serialize the chunk "+chunk.getWorldId()+position, e);
+            }
+
+            Map<Long, RegionBatch> regions = worlds.get(chunk.getWorldId());
+            if(regions == null)
+                worlds.put(chunk.getWorldId(), regions = new HashMap<>(2));
+
+            long regionKey = CHUNK.toMinRegionKey(x, z);
+            RegionBatch region = regions.get(regionKey);
+            if(region == null)
+                regions.put(regionKey, region = new RegionBatch());
+
+            region.records.put(RegionFile.index(x, z), record);
+            region.chunks.add(chunk);
+        }
+
+        // Also catches the chunks that were claimed by the admins, they don't notify ownerChanged()
+        for(ClaimedChunk chunk: chunks)
+            ownerIndex.set(chunk);
+
+        @Nullable
+        byte[] names;
+        try
+        {
+            names = namesChanged? nameTable.serialize() : null;
+        }
+        catch (IOException e)
+        {
+            throw new DataStorageException("Failed to serialize the player name table", e);
+        }
+
+        // Everything was captured, the modified flags are cleared only now to keep them intact when a chunk fails
+        for(ClaimedChunk chunk: chunks)
+        {
+            chunk.setModified(false);
+            chunk.getOwner().ifPresent(owner-> owner.setModified(false));
+            for(Set<Member> memberSet: chunk.getMembers().values())
+                for(Member member: memberSet)
+                {
+                    member.getPlayerId().setModified(false);
+                    member.getRank().setModified(false);
+                }
+        }
+
+        List<ClaimedChunk> captured = Collections.unmodifiableList(new ArrayList<>(chunks));
+        return new WriteBatch()
+        {
+            @Override
+            public Collection<ClaimedChunk> getChunks()
+            {
+                return captured;
+            }
+
+            @Override
+            public void write() throws DataStorageException
+            {
+                // The names are written first so the records never reference a player that is not on the table
+                if(names != null)
+                {
+                    try
+                    {
+                        nameTable.write(names);
+                    }
+                    catch (IOException e)
+                    {
+                        throw new DataStorageException("Failed to save the player name table", e);
+                    }
+                }
+
+                try
+                {
+                    // Also persists the owner changes of chunks that were not saved yet, the index may be ahead
+                    ownerIndex.flush();
+                }
+                catch (IOException e)
+                {
+                    throw new DataStorageException("Failed to save the owner index", e);
+                }
+
+                for(Map.Entry<UUID, Map<Long, RegionBatch>> world: worlds.entrySet())
+                    for(Map.Entry<Long, RegionBatch> region: world.getValue().entrySet())
+                    {
+                        try
+                        {
+                            // The region is resolved only now because the cached instance may have expired
+                            worldCache.get(world.getKey()).region(region.getKey()).write(region.getValue());
+                        }
+                        catch (ExecutionException | IOException e)
+                        {
+                            throw new DataStorageException("Failed to save the region "+world.getKey()+
+                                    unpack(region.getKey())+" containing "+region.getValue().chunks.size()+" chunks", e);
+                        }
+                    }
+            }
+        };
     }
 
     @Override
-    public Optional<ClaimedChunk> loadChunk(UUID worldId, Vector3i position) throws DataStorageException
+    public void deleteChunk(UUID worldId, Vector3i position) throws DataStorageException
     {
         try
         {
-            return worldCache.get(worldId).getChunk(position);
+            worldCache.get(worldId).region(position).deleteChunk(position);
+            ownerIndex.set(worldId, position.getX(), position.getZ(), null);
+            ownerIndex.flush();
         }
-        catch (ExecutionException e)
+        catch (ExecutionException | IOException e)
         {
-            throw new DataStorageException(e);
+            throw new DataStorageException("Failed to delete the chunk "+worldId+position, e);
         }
     }
 
+    /**
+     * Answered from the owner index which is kept in memory and has all chunks that are stored, so the result is exact
+     */
+    @Override
+    public boolean mayBeClaimed(UUID worldId, int chunkX, int chunkZ)
+    {
+        return ownerIndex.contains(worldId, chunkX, chunkZ);
+    }
+
+    /**
+     * The statistics of the world cache and of the region caches of all worlds combined, including the worlds that
+     * were already evicted. The region loads include the time to read the region headers.
+     */
+    @Override
+    public Map<String, CacheStats> getCacheStats()
+    {
+        CacheStats regions;
+        synchronized(this)
+        {
+            regions = evictedRegionStats;
+        }
+        for(WorldData world: worldCache.asMap().values())
+            regions = regions.plus(world.regionCache.stats());
+
+        Map<String, CacheStats> stats = new LinkedHashMap<>(2);
+        stats.put("worlds", worldCache.stats());
+        stats.put("regions", regions);
+        return stats;
+    }
+
+    /**
+     * The amount of regions that are currently cached on all worlds
+     */
+    public long getCachedRegions()
+    {
+        long count = 0;
+        for(WorldData world: worldCache.asMap().values())
+            count += world.regionCache.size();
+        return count;
+    }
+
     @Override
-    public void saveChunk(ClaimedChunk chunk)
+    public void ownerChanged(ClaimedChunk chunk)
     {
-        //TODO Implement data persistence
+        ownerIndex.set(chunk);
+    }
+
+    /**
+     * Answered from the owner index which is kept in memory, no region is read
+     */
+    @Override
+    public int countOwnedChunks(UUID ownerId)
+    {
+        return ownerIndex.count(ownerId);
+    }
+
+    /**
+     * Answered from the owner index which is kept in memory, no region is read
+     */
+    @Override
+    public Map<UUID, Set<Vector3i>> getOwnedChunks(UUID ownerId)
+    {
+        return ownerIndex.getChunks(ownerId);
     }
 
     /**
@@ -77,39 +351,144 @@ public class BinaryDataStorage implements DataStorage
     private class WorldData
     {
         private final UUID worldId;
-        private final LoadingCache<Vector2i, RegionData> regionCache = CacheBuilder.newBuilder()
-                .expireAfterAccess(5, TimeUnit.MINUTES)
-                .build(new CacheLoader<Vector2i, RegionData>()
-                {
-                    @Override
-                    public RegionData load(Vector2i key) throws Exception
-                    {
-                        return new RegionData(key);
-                    }
-                });
+        private final File worldDir;
+        // Keyed by the region position packed with PositionType.pack(), weighted by the chunks stored on the region when
+        // it's loaded. Releases the memory mapping on removal, a mapped file can't be replaced by the compaction on some
+        // systems
+        private final RegionCache<RegionData> regionCache = new RegionCache<>(
+                cacheSettings.getRegionExpireMinutes(), TimeUnit.MINUTES, cacheSettings.getMaxCachedChunks(),
+                region -> region.file.count() + 1, RegionData::close);
+        // Created once, a constructor reference of an inner class would allocate on every lookup
+        private final RegionCache.Loader<RegionData> regionLoader = RegionData::new;
 
         private WorldData(UUID worldId)
         {
             this.worldId = worldId;
+            this.worldDir = new File(storageDir, worldId.toString());
+        }
+
+        private RegionData region(Vector3i chunkPosition) throws IOException
+        {
+            return region(CHUNK.toMinRegionKey(chunkPosition.getX(), chunkPosition.getZ()));
         }
 
-        private Optional<ClaimedChunk> getChunk(Vector3i position) throws ExecutionException
+        private RegionData region(long regionKey) throws IOException
         {
-            return Optional.ofNullable(regionCache.get(chunkToRegion(position)).claimedChunkMap.get(position));
+            return regionCache.get(regionKey, regionLoader);
         }
 
         /**
-         * A cache of all chunks in a region file
+         * A cache of all chunks in a region file. Only the header is read when the region is loaded,
+         * the chunk records are read when they are requested.
          */
         private class RegionData
         {
-            private final Vector2i position;
-            private final Map<Vector3i, ClaimedChunk> claimedChunkMap = new HashMap<>(0);
+            private final long regionKey;
+            private final RegionFile file;
+            private final ChunkMap<ClaimedChunk> claimedChunkMap = new ChunkMap<>(0);
 
-            private RegionData(Vector2i position)
+            private RegionData(long regionKey) throws IOException
             {
-                this.position = position;
+                this.regionKey = regionKey;
+                this.file = new RegionFile(new File(worldDir, "r."+unpackX(regionKey)+"."+unpackZ(regionKey)+".myc"), memoryMapped);
             }
+
+            private synchronized Optional<ClaimedChunk> getChunk(WorldFallbackContext worldContext, Vector3i position)
+                    throws IOException
+            {
+                int x = position.getX(), z = position.getZ();
+                ClaimedChunk chunk = claimedChunkMap.get(x, z);
+
+                // The world context is replaced when the world is loaded again
+                if(chunk != null && chunk.getWorldContext() == worldContext)
+                    return Optional.of(chunk);
+
+                ByteBuffer data = file.read(RegionFile.index(x, z));
+                if(data == null)
+                    return Optional.empty();
+
+                chunk = ChunkSerializer.deserialize(worldContext, x, z, data, playerNames, nameTable);
+                claimedChunkMap.put(x, z, chunk);
+                return Optional.of(chunk);
+            }
+
+            private synchronized void write(RegionBatch batch) throws IOException
+            {
+                file.write(batch.records);
+                for(ClaimedChunk chunk: batch.chunks)
+                {
+                    Vector3i position = chunk.getPosition();
+                    claimedChunkMap.put(position.getX(), position.getZ(), chunk);
+                }
+            }
+
+            private synchronized void deleteChunk(Vector3i position) throws IOException
+            {
+                int x = position.getX(), z = position.getZ();
+                file.write(Collections.singletonMap(RegionFile.index(x, z), null));
+                claimedChunkMap.remove(x, z);
+            }
+
+            private synchronized void close()
+            {
+                file.close();
+            }
+        }
+    }
+
+    /**
+     * Controls how long and how many regions are kept in memory by a {@link BinaryDataStorage}
+     */
+    public static final class CacheSettings
+    {
+        public static final CacheSettings DEFAULT = new CacheSettings(15, 5, 65536);
+
+        private final long worldExpireMinutes;
+        private final long regionExpireMinutes;
+        private final long maxCachedChunks;
+
+        /**
+         * @param worldExpireMinutes How long a world stays cached after its last access, all its regions are released
+         *                           when it expires
+         * @param regionExpireMinutes How long a region stays cached after its last access
+         * @param maxCachedChunks The maximum amount of chunk records on the cached regions of each world, the least
+         *                        used regions are released when it's reached. Each region counts as its stored chunks
+         *                        plus one.
+         * @throws IllegalArgumentException If a value is not positive
+         */
+        public CacheSettings(long worldExpireMinutes, long regionExpireMinutes, long maxCachedChunks)
+                throws IllegalArgumentException
+        {
+            if(worldExpireMinutes <= 0 || regionExpireMinutes <= 0 || maxCachedChunks <= 0)
+                throw new IllegalArgumentException("The cache settings must be positive: "+worldExpireMinutes+", "+
+                        regionExpireMinutes+", "+maxCachedChunks);
+            this.worldExpireMinutes = worldExpireMinutes;
+            this.regionExpireMinutes = regionExpireMinutes;
+            this.maxCachedChunks = maxCachedChunks;
         }
+
+        public long getWorldExpireMinutes()
+        {
+            return worldExpireMinutes;
+        }
+
+        public long getRegionExpireMinutes()
+        {
+            return regionExpireMinutes;
+        }
+
+        public long getMaxCachedChunks()
+        {
+            return maxCachedChunks;
+        }
+    }
+
+    /**
+     * The serialized records of the chunks that belongs to the same region file
+     */
+    private static class RegionBatch
+    {
+        private final Map<Integer, byte[]> records = new HashMap<>();
+        private final List<ClaimedChunk> chunks = new ArrayList<>();
     }
 }
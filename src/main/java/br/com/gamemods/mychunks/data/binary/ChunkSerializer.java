@@ -0,0 +1,243 @@
+package br.com.gamemods.mychunks.data.binary;
+
+import br.com.gamemods.mychunks.data.state.*;
+import com.flowpowered.math.vector.Vector3i;
+import org.spongepowered.api.util.Tristate;
+import org.spongepowered.api.util.annotation.NonnullByDefault;
+
+import javax.annotation.Nullable;
+import javax.annotation.ParametersAreNonnullByDefault;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * <p>Converts a {@link ClaimedChunk} to the binary record stored on the {@link RegionFile} and vice-versa.</p>
+ * <p>Permissions are stored by name so the {@link Permission} enum can be reordered or extended without breaking the
+ * saved data, unknown permissions are ignored when the record is read.</p>
+ * <p>The zone of the chunk is not stored on the chunk record. Players are stored only by ID, their names are stored
+ * once on the {@link PlayerNameTable}. Records created before the table existed have the names inline and are
+ * still readable.</p>
+ */
+@NonnullByDefault
+@ParametersAreNonnullByDefault
+final class ChunkSerializer
+{
+    private static final int FLAG_OWNER = 1;
+    // The players are stored without names, the names are on the PlayerNameTable
+    private static final int FLAG_PLAYER_IDS = 2;
+    // The ranks have a list of denied permissions after the granted permissions
+    private static final int FLAG_RANK_DENIALS = 4;
+
+    private ChunkSerializer()
+    {}
+
+    static byte[] serialize(ClaimedChunk chunk) throws IOException
+    {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(128);
+        DataOutputStream out = new DataOutputStream(bytes);
+
+        Vector3i position = chunk.getPosition();
+        out.writeInt(position.getX());
+        out.writeInt(position.getZ());
+
+        Optional<PlayerName> owner = chunk.getOwner();
+        out.writeByte((owner.isPresent()? FLAG_OWNER : 0) | FLAG_PLAYER_IDS | FLAG_RANK_DENIALS);
+        if(owner.isPresent())
+            writeUniqueId(out, owner.get().getUniqueId());
+
+        List<Permission> publicPermissions = new ArrayList<>(Permission.values().length);
+        for(Permission permission: Permission.values())
+            if(chunk.getPublicPermission(permission).isPresent())
+                publicPermissions.add(permission);
+
+        out.writeByte(publicPermissions.size());
+        for(Permission permission: publicPermissions)
+        {
+            writeString(out, permission.name());
+            out.writeBoolean(chunk.getPublicPermission(permission).get());
+        }
+
+        Collection<Set<Member>> members = chunk.getMembers().values();
+        int memberCount = 0;
+        for(Set<Member> memberSet: members)
+            memberCount += memberSet.size();
+
+        out.writeInt(memberCount);
+        for(Set<Member> memberSet: members)
+            for(Member member: memberSet)
+            {
+                writeUniqueId(out, member.getPlayerId().getUniqueId());
+                Rank rank = member.getRank();
+                writeUniqueId(out, rank.getUniqueId());
+                writeString(out, rank.getName());
+
+                long mask = rank.getPermissionMask();
+                writePermissions(out, Permission.fromMask(mask));
+                writePermissions(out, Permission.fromMask(mask >>> 32));
+            }
+
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Reads a chunk record
+     * @param worldContext The world where the chunk resides
+     * @param chunkX The expected chunk X coordinate
+     * @param chunkZ The expected chunk Z coordinate
+     * @param buffer The record data
+     * @param registry The registry that provides the player instances
+     * @param nameTable The names of the players that are stored only by ID
+     * @return The chunk with all modified flags cleared
+     * @throws IOException If the record is corrupted or belongs to an other chunk
+     */
+    static ClaimedChunk deserialize(WorldFallbackContext worldContext, int chunkX, int chunkZ, ByteBuffer buffer,
+                                    PlayerNameRegistry registry, PlayerNameTable nameTable) throws IOException
+    {
+        try
+        {
+            int x = buffer.getInt(), z = buffer.getInt();
+            if(x != chunkX || z != chunkZ)
+                throw new IOException("Expected the chunk record "+chunkX+","+chunkZ+" but got "+x+","+z);
+
+            ClaimedChunk chunk = new ClaimedChunk(worldContext, new Vector3i(x, 0, z));
+
+            int flags = buffer.get();
+            boolean idsOnly = (flags & FLAG_PLAYER_IDS) != 0;
+            if((flags & FLAG_OWNER) != 0)
+                chunk.setOwner(readPlayer(buffer, idsOnly, registry, nameTable));
+
+            int publicPermissions = buffer.get() & 0xFF;
+            for(int i = 0; i < publicPermissions; i++)
+            {
+                Permission permission = readPermission(buffer);
+                boolean value = buffer.get() != 0;
+                if(permission != null)
+                    chunk.setPublicPermission(permission, Tristate.fromBoolean(value));
+            }
+
+            int members = buffer.getInt();
+            Map<UUID, Rank> ranks = new HashMap<>(2);
+            for(int i = 0; i < members; i++)
+            {
+                PlayerName player = readPlayer(buffer, idsOnly, registry, nameTable);
+                UUID rankId = readUniqueId(buffer);
+                String rankName = readString(buffer);
+
+                EnumSet<Permission> granted = readPermissions(buffer);
+                EnumSet<Permission> denied = (flags & FLAG_RANK_DENIALS) != 0? readPermissions(buffer) : EnumSet.noneOf(Permission.class);
+
+                Rank rank = ranks.get(rankId);
+                if(rank == null)
+                    ranks.put(rankId, rank = new Rank(rankId, rankName, granted, denied));
+                chunk.addMember(new Member(player, rank));
+            }
+
+            for(Rank rank: ranks.values())
+                rank.setModified(false);
+            chunk.setModified(false);
+            return chunk;
+        }
+        catch (BufferUnderflowException | IllegalArgumentException e)
+        {
+            throw new IOException("The chunk record "+chunkX+","+chunkZ+" is corrupted", e);
+        }
+    }
+
+    /**
+     * Reads only the owner of a chunk record, without creating the chunk. The buffer position is not changed.
+     * @return The owner ID or the {@link PlayerName#ADMINS} ID if the chunk belongs to the server admins
+     * @throws IOException If the record is truncated
+     */
+    static UUID readOwnerId(ByteBuffer buffer) throws IOException
+    {
+        try
+        {
+            ByteBuffer record = buffer.duplicate();
+            record.position(record.position() + 8);
+            if((record.get() & FLAG_OWNER) == 0)
+                return PlayerName.ADMINS.getUniqueId();
+            return readUniqueId(record);
+        }
+        catch (BufferUnderflowException | IllegalArgumentException e)
+        {
+            throw new IOException("The chunk record is truncated", e);
+        }
+    }
+
+    private static void writeUniqueId(DataOutputStream out, UUID uniqueId) throws IOException
+    {
+        out.writeLong(uniqueId.getMostSignificantBits());
+        out.writeLong(uniqueId.getLeastSignificantBits());
+    }
+
+    private static UUID readUniqueId(ByteBuffer buffer)
+    {
+        return new UUID(buffer.getLong(), buffer.getLong());
+    }
+
+    private static PlayerName readPlayer(ByteBuffer buffer, boolean idOnly, PlayerNameRegistry registry,
+                                         PlayerNameTable nameTable)
+    {
+        UUID uniqueId = readUniqueId(buffer);
+        String name = idOnly? nameTable.getName(uniqueId) : readString(buffer);
+
+        // The table is written before the records, a missing name means that the table was lost
+        if(name == null)
+            name = uniqueId.toString();
+        return registry.get(uniqueId, name);
+    }
+
+    private static void writeString(DataOutputStream out, String str) throws IOException
+    {
+        byte[] bytes = str.getBytes(StandardCharsets.UTF_8);
+        out.writeShort(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(ByteBuffer buffer)
+    {
+        byte[] bytes = new byte[buffer.getShort() & 0xFFFF];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void writePermissions(DataOutputStream out, EnumSet<Permission> permissions) throws IOException
+    {
+        out.writeByte(permissions.size());
+        for(Permission permission: permissions)
+            writeString(out, permission.name());
+    }
+
+    private static EnumSet<Permission> readPermissions(ByteBuffer buffer)
+    {
+        EnumSet<Permission> permissions = EnumSet.noneOf(Permission.class);
+        int count = buffer.get() & 0xFF;
+        for(int i = 0; i < count; i++)
+        {
+            Permission permission = readPermission(buffer);
+            if(permission != null)
+                permissions.add(permission);
+        }
+        return permissions;
+    }
+
+    @Nullable
+    private static Permission readPermission(ByteBuffer buffer)
+    {
+        String name = readString(buffer);
+        try
+        {
+            return Permission.valueOf(name);
+        }
+        catch (IllegalArgumentException e)
+        {
+            return null;
+        }
+    }
+}
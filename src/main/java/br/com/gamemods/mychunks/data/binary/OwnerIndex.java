@@ -0,0 +1,347 @@
+package br.com.gamemods.mychunks.data.binary;
+
+import br.com.gamemods.mychunks.ChunkMap;
+import br.com.gamemods.mychunks.data.state.ClaimedChunk;
+import br.com.gamemods.mychunks.data.state.PlayerName;
+import com.flowpowered.math.vector.Vector3i;
+import org.spongepowered.api.util.annotation.NonnullByDefault;
+
+import javax.annotation.Nullable;
+import javax.annotation.ParametersAreNonnullByDefault;
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+import java.util.regex.Pattern;
+
+import static br.com.gamemods.mychunks.PositionType.*;
+
+/**
+ * <p>Maps each owner to the chunks that it owns on all worlds, so the claims of a player can be counted and listed
+ * without reading the region files. The chunks claimed by the server admins are indexed under
+ * {@link PlayerName#ADMINS}.</p>
+ * <p>The whole index is kept in memory and the file is an append-only log of changes, replayed when the index is
+ * loaded. The format is:</p>
+ * <pre>
+ * int magic, int version
+ * n x (byte operation, long worldMostSigBits, long worldLeastSigBits, long chunkKey, long ownerMostSigBits, long ownerLeastSigBits)
+ * </pre>
+ * <p>A truncated entry at the end of the log is ignored. The log is rewritten with only the current state when it gets
+ * too large.</p>
+ */
+@NonnullByDefault
+@ParametersAreNonnullByDefault
+final class OwnerIndex
+{
+    static final int MAGIC = 0x4D59434F; // MYCO
+    static final int VERSION = 1;
+    private static final int HEADER_SIZE = 8;
+    private static final int ENTRY_SIZE = 41;
+    private static final byte OP_REMOVE = 0;
+    private static final byte OP_SET = 1;
+    private static final Pattern REGION_NAME = Pattern.compile("^r\\.(-?\\d+)\\.(-?\\d+)\\.myc$");
+
+    private final File file;
+    private final boolean persisted;
+    // Owner -> world -> chunk keys packed with PositionType.pack(), the values are always true
+    private final Map<UUID, Map<UUID, ChunkMap<Boolean>>> byOwner = new HashMap<>();
+    // World -> chunk -> owner
+    private final Map<UUID, ChunkMap<UUID>> byChunk = new HashMap<>();
+    // Changes that were not persisted by flush() yet
+    private ByteArrayOutputStream pending = new ByteArrayOutputStream();
+    private int size;
+    private int logEntries;
+    private boolean dirtyLog;
+
+    /**
+     * Reads the index, the file does not need to exist
+     * @throws IOException If the file exists but could not be read or is not an owner index
+     */
+    OwnerIndex(File file) throws IOException
+    {
+        this.file = file;
+        persisted = file.isFile();
+        if(!persisted)
+            return;
+
+        ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(file.toPath()));
+        if(buffer.remaining() < HEADER_SIZE || buffer.getInt() != MAGIC)
+            throw new IOException("The file "+file+" is not an owner index");
+        int version = buffer.getInt();
+        if(version != VERSION)
+            throw new IOException("Unsupported owner index version "+version+" on "+file);
+
+        while(buffer.remaining() >= ENTRY_SIZE)
+        {
+            byte operation = buffer.get();
+            UUID worldId = new UUID(buffer.getLong(), buffer.getLong());
+            long chunkKey = buffer.getLong();
+            UUID ownerId = new UUID(buffer.getLong(), buffer.getLong());
+            apply(worldId, chunkKey, operation == OP_SET? ownerId : null);
+            logEntries++;
+        }
+    }
+
+    /**
+     * If the index was read from an existing file, when it's {@code false} the index must be {@link #rebuild(File) rebuilt}
+     */
+    boolean isPersisted()
+    {
+        return persisted;
+    }
+
+    /**
+     * Indexes the current owner of a chunk
+     * @return {@code true} if the index changed
+     */
+    boolean set(ClaimedChunk chunk)
+    {
+        Vector3i position = chunk.getPosition();
+        UUID ownerId = chunk.getOwner().orElse(PlayerName.ADMINS).getUniqueId();
+        return set(chunk.getWorldId(), position.getX(), position.getZ(), ownerId);
+    }
+
+    /**
+     * Changes the owner of a chunk, the change is persisted by the next {@link #flush()}
+     * @param ownerId The new owner or {@code null} if the chunk is no longer claimed
+     * @return {@code true} if the index changed
+     */
+    synchronized boolean set(UUID worldId, int chunkX, int chunkZ, @Nullable UUID ownerId)
+    {
+        long chunkKey = pack(chunkX, chunkZ);
+        if(!apply(worldId, chunkKey, ownerId))
+            return false;
+
+        ByteBuffer entry = ByteBuffer.allocate(ENTRY_SIZE);
+        writeEntry(entry, worldId, chunkKey, ownerId);
+        pending.write(entry.array(), 0, ENTRY_SIZE);
+        return true;
+    }
+
+    private boolean apply(UUID worldId, long chunkKey, @Nullable UUID ownerId)
+    {
+        ChunkMap<UUID> owners = byChunk.get(worldId);
+        if(owners == null)
+        {
+            if(ownerId == null)
+                return false;
+            byChunk.put(worldId, owners = new ChunkMap<>());
+        }
+
+        UUID previous = ownerId == null? owners.remove(chunkKey) : owners.put(chunkKey, ownerId);
+        if(Objects.equals(previous, ownerId))
+            return false;
+
+        if(previous != null)
+        {
+            Map<UUID, ChunkMap<Boolean>> worlds = byOwner.get(previous);
+            ChunkMap<Boolean> chunks = worlds.get(worldId);
+            chunks.remove(chunkKey);
+            if(chunks.isEmpty() && worlds.remove(worldId) != null && worlds.isEmpty())
+                byOwner.remove(previous);
+            size--;
+        }
+
+        if(ownerId != null)
+        {
+            Map<UUID, ChunkMap<Boolean>> worlds = byOwner.get(ownerId);
+            if(worlds == null)
+                byOwner.put(ownerId, worlds = new HashMap<>(2));
+            ChunkMap<Boolean> chunks = worlds.get(worldId);
+            if(chunks == null)
+                worlds.put(worldId, chunks = new ChunkMap<>());
+            chunks.put(chunkKey, Boolean.TRUE);
+            size++;
+        }
+        return true;
+    }
+
+    private static void writeEntry(ByteBuffer out, UUID worldId, long chunkKey, @Nullable UUID ownerId)
+    {
+        out.put(ownerId == null? OP_REMOVE : OP_SET);
+        out.putLong(worldId.getMostSignificantBits());
+        out.putLong(worldId.getLeastSignificantBits());
+        out.putLong(chunkKey);
+        out.putLong(ownerId == null? 0 : ownerId.getMostSignificantBits());
+        out.putLong(ownerId == null? 0 : ownerId.getLeastSignificantBits());
+    }
+
+    /**
+     * Checks if a chunk has an owner on the index, the index contains all chunks that are stored on the region files
+     * and the chunks that had the owner changed after being loaded
+     */
+    synchronized boolean contains(UUID worldId, int chunkX, int chunkZ)
+    {
+        ChunkMap<UUID> owners = byChunk.get(worldId);
+        return owners != null && owners.containsKey(chunkX, chunkZ);
+    }
+
+    /**
+     * The amount of chunks owned by a player on all worlds
+     */
+    synchronized int count(UUID ownerId)
+    {
+        Map<UUID, ChunkMap<Boolean>> worlds = byOwner.get(ownerId);
+        if(worlds == null)
+            return 0;
+
+        int count = 0;
+        for(ChunkMap<Boolean> chunks: worlds.values())
+            count += chunks.size();
+        return count;
+    }
+
+    /**
+     * The chunks owned by a player grouped by world
+     */
+    synchronized Map<UUID, Set<Vector3i>> getChunks(UUID ownerId)
+    {
+        Map<UUID, ChunkMap<Boolean>> worlds = byOwner.getOrDefault(ownerId, Collections.emptyMap());
+        Map<UUID, Set<Vector3i>> result = new HashMap<>(worlds.size());
+        for(Map.Entry<UUID, ChunkMap<Boolean>> entry: worlds.entrySet())
+        {
+            Set<Vector3i> positions = new HashSet<>(entry.getValue().size());
+            entry.getValue().forEachEntry((chunkKey, owned) -> positions.add(unpack(chunkKey)));
+            result.put(entry.getKey(), positions);
+        }
+        return result;
+    }
+
+    /**
+     * Persists the changes that were made since the last flush, appending them to the log or replacing the log if it
+     * has too many obsolete entries. The changes are kept for the next flush if the file could not be written.
+     */
+    void flush() throws IOException
+    {
+        byte[] entries;
+        boolean compact;
+        synchronized(this)
+        {
+            if(pending.size() == 0)
+                return;
+
+            entries = pending.toByteArray();
+            pending = new ByteArrayOutputStream();
+            logEntries += entries.length / ENTRY_SIZE;
+            compact = dirtyLog || logEntries > size * 2 + 1024;
+        }
+
+        try
+        {
+            if(compact)
+                compact();
+            else
+                append(entries);
+        }
+        catch (IOException e)
+        {
+            synchronized(this)
+            {
+                // A partial append would misalign the next entries, so the log is replaced on the next flush
+                dirtyLog = true;
+                ByteArrayOutputStream restored = new ByteArrayOutputStream(entries.length + pending.size());
+                restored.write(entries, 0, entries.length);
+                pending.writeTo(restored);
+                pending = restored;
+            }
+            throw e;
+        }
+    }
+
+    private void append(byte[] entries) throws IOException
+    {
+        synchronized(file)
+        {
+            boolean created = !file.isFile();
+            try(DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file, true))))
+            {
+                if(created)
+                {
+                    out.writeInt(MAGIC);
+                    out.writeInt(VERSION);
+                }
+                out.write(entries);
+            }
+        }
+    }
+
+    /**
+     * Replaces the log with the current state of the index
+     */
+    void compact() throws IOException
+    {
+        byte[] data;
+        synchronized(this)
+        {
+            ByteBuffer out = ByteBuffer.allocate(HEADER_SIZE + size * ENTRY_SIZE);
+            out.putInt(MAGIC);
+            out.putInt(VERSION);
+            for(Map.Entry<UUID, ChunkMap<UUID>> world: byChunk.entrySet())
+            {
+                UUID worldId = world.getKey();
+                world.getValue().forEachEntry((chunkKey, ownerId) -> writeEntry(out, worldId, chunkKey, ownerId));
+            }
+            data = out.array();
+            logEntries = size;
+        }
+
+        synchronized(file)
+        {
+            File temp = new File(file.getPath()+".tmp");
+            Files.write(temp.toPath(), data);
+            Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+
+        synchronized(this)
+        {
+            dirtyLog = false;
+        }
+    }
+
+    /**
+     * Builds the index from all region files found on the storage directory and writes a new log. Used only once, when
+     * the storage was created by a version that did not have the index.
+     * @param storageDir The directory that contains the world directories
+     */
+    void rebuild(File storageDir) throws IOException
+    {
+        File[] worldDirs = storageDir.listFiles(File::isDirectory);
+        for(File worldDir: worldDirs == null? new File[0] : worldDirs)
+        {
+            UUID worldId;
+            try
+            {
+                worldId = UUID.fromString(worldDir.getName());
+            }
+            catch (IllegalArgumentException e)
+            {
+                continue;
+            }
+
+            File[] regionFiles = worldDir.listFiles((dir, name) -> REGION_NAME.matcher(name).matches());
+            for(File regionFile: regionFiles == null? new File[0] : regionFiles)
+            {
+                RegionFile region = new RegionFile(regionFile, false);
+                for(int index = 0; index < RegionFile.CHUNKS; index++)
+                {
+                    ByteBuffer record = region.read(index);
+                    if(record == null)
+                        continue;
+
+                    int x = record.getInt(record.position()), z = record.getInt(record.position() + 4);
+                    synchronized(this)
+                    {
+                        apply(worldId, pack(x, z), ChunkSerializer.readOwnerId(record));
+                    }
+                }
+            }
+        }
+
+        synchronized(this)
+        {
+            pending = new ByteArrayOutputStream();
+        }
+        compact();
+    }
+}
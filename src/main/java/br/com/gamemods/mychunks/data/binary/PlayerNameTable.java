@@ -0,0 +1,124 @@
+package br.com.gamemods.mychunks.data.binary;
+
+import br.com.gamemods.mychunks.data.state.PlayerName;
+import org.spongepowered.api.util.annotation.NonnullByDefault;
+
+import javax.annotation.Nullable;
+import javax.annotation.ParametersAreNonnullByDefault;
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * <p>The names of all players referenced by the chunk records, stored once in a single file instead of being repeated on
+ * every record. The format is:</p>
+ * <pre>
+ * int magic, int version, int count
+ * count x (long mostSigBits, long leastSigBits, short length, byte[length] utf8Name)
+ * </pre>
+ * <p>The whole table is kept in memory, it's small even with thousands of players. Changes are collected on the server
+ * thread and the file is replaced atomically by the I/O thread.</p>
+ */
+@NonnullByDefault
+@ParametersAreNonnullByDefault
+final class PlayerNameTable
+{
+    static final int MAGIC = 0x4D59434E; // MYCN
+    static final int VERSION = 1;
+
+    private final File file;
+    private final Map<UUID, String> names = new ConcurrentHashMap<>();
+
+    /**
+     * Reads the table, the file does not need to exist
+     * @throws IOException If the file exists but could not be read or is not a valid name table
+     */
+    PlayerNameTable(File file) throws IOException
+    {
+        this.file = file;
+        if(!file.isFile())
+            return;
+
+        try(DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file))))
+        {
+            if(in.readInt() != MAGIC)
+                throw new IOException("The file "+file+" is not a player name table");
+            int version = in.readInt();
+            if(version != VERSION)
+                throw new IOException("Unsupported player name table version "+version+" on "+file);
+
+            int count = in.readInt();
+            for(int i = 0; i < count; i++)
+            {
+                UUID uniqueId = new UUID(in.readLong(), in.readLong());
+                byte[] name = new byte[in.readShort() & 0xFFFF];
+                in.readFully(name);
+                names.put(uniqueId, new String(name, StandardCharsets.UTF_8));
+            }
+        }
+        catch (EOFException e)
+        {
+            throw new IOException("The player name table "+file+" is truncated", e);
+        }
+    }
+
+    /**
+     * The stored name of a player
+     */
+    @Nullable
+    String getName(UUID uniqueId)
+    {
+        return names.get(uniqueId);
+    }
+
+    /**
+     * Stores the current name of a player on the table, the file is not written
+     * @return {@code true} if the player was added or renamed
+     */
+    boolean record(PlayerName player)
+    {
+        if(player.isGroup())
+            return false;
+
+        String name = player.getName();
+        return !name.equals(names.put(player.getUniqueId(), name));
+    }
+
+    /**
+     * Captures the current table in the file format
+     */
+    byte[] serialize() throws IOException
+    {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(12 + names.size() * 32);
+        DataOutputStream out = new DataOutputStream(bytes);
+        Map<UUID, String> snapshot = new HashMap<>(names);
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeInt(snapshot.size());
+        for(Map.Entry<UUID, String> entry: snapshot.entrySet())
+        {
+            out.writeLong(entry.getKey().getMostSignificantBits());
+            out.writeLong(entry.getKey().getLeastSignificantBits());
+            byte[] name = entry.getValue().getBytes(StandardCharsets.UTF_8);
+            out.writeShort(name.length);
+            out.write(name);
+        }
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Replaces the file with data created by {@link #serialize()}
+     */
+    synchronized void write(byte[] data) throws IOException
+    {
+        File temp = new File(file.getPath()+".tmp");
+        Files.write(temp.toPath(), data);
+        Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+}
@@ -0,0 +1,246 @@
+package br.com.gamemods.mychunks.data.binary;
+
+import br.com.gamemods.mychunks.ChunkMap;
+import com.google.common.cache.CacheStats;
+import org.spongepowered.api.util.annotation.NonnullByDefault;
+
+import javax.annotation.Nullable;
+import javax.annotation.ParametersAreNonnullByDefault;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.ToIntFunction;
+
+/**
+ * <p>Caches the regions of a world by their packed region key, expiring them after some time without access and
+ * evicting the least recently used regions when the total weight passes the limit.</p>
+ * <p>Unlike a Guava cache keyed by {@link Long} the keys are never boxed, so a lookup of a cached region does not
+ * allocate anything. The entries are also linked in access order, so the expired and the least recently used regions
+ * are always at the head of the list and every operation is constant time, like the Guava caches the weight of each
+ * region is calculated once when it's loaded. The statistics are kept in the same format as the Guava caches.</p>
+ * <p>The lookups are synchronized and the loader is called while holding the lock. The removal listener is called
+ * after the lock is released, by the thread that caused the removal.</p>
+ * @param <V> The region type
+ */
+@NonnullByDefault
+@ParametersAreNonnullByDefault
+final class RegionCache<V>
+{
+    private final ChunkMap<Entry<V>> entries = new ChunkMap<>();
+    private final long expireNanos;
+    private final long maxWeight;
+    private final ToIntFunction<? super V> weigher;
+    private final Consumer<? super V> removalListener;
+
+    // The access order list, the head was accessed first
+    @Nullable
+    private Entry<V> head;
+    @Nullable
+    private Entry<V> tail;
+    private long totalWeight;
+
+    private long hits;
+    private long misses;
+    private long loads;
+    private long loadFailures;
+    private long loadNanos;
+    private long evictions;
+
+    /**
+     * A cached region, linked to the entries accessed before and after it
+     */
+    private static final class Entry<V>
+    {
+        private final long key;
+        private final V value;
+        private final int weight;
+        private long lastAccess;
+        @Nullable
+        private Entry<V> previous;
+        @Nullable
+        private Entry<V> next;
+
+        private Entry(long key, V value, int weight, long lastAccess)
+        {
+            this.key = key;
+            this.value = value;
+            this.weight = weight;
+            this.lastAccess = lastAccess;
+        }
+    }
+
+    /**
+     * Loads a region that is not cached
+     */
+    @FunctionalInterface
+    interface Loader<V>
+    {
+        V load(long regionKey) throws IOException;
+    }
+
+    /**
+     * @param expireAfterAccess The time that a region is kept without being accessed
+     * @param unit The unit of the expiration time
+     * @param maxWeight The maximum sum of the weights of the cached regions
+     * @param weigher Calculates the weight of a region when it's loaded
+     * @param removalListener Called when a region is expired, evicted or invalidated
+     */
+    RegionCache(long expireAfterAccess, TimeUnit unit, long maxWeight, ToIntFunction<? super V> weigher,
+                Consumer<? super V> removalListener)
+    {
+        this.expireNanos = unit.toNanos(expireAfterAccess);
+        this.maxWeight = maxWeight;
+        this.weigher = weigher;
+        this.removalListener = removalListener;
+    }
+
+    /**
+     * Gets a cached region or loads it
+     * @param regionKey The region position packed with {@link br.com.gamemods.mychunks.PositionType#pack(int, int)}
+     * @throws IOException If the loader failed, nothing is cached in this case
+     */
+    V get(long regionKey, Loader<? extends V> loader) throws IOException
+    {
+        @Nullable
+        List<V> removed = null;
+        try
+        {
+            synchronized(this)
+            {
+                long now = System.nanoTime();
+                removed = removeExpired(now, removed);
+
+                Entry<V> entry = entries.get(regionKey);
+                if(entry != null)
+                {
+                    hits++;
+                    entry.lastAccess = now;
+                    moveToTail(entry);
+                    return entry.value;
+                }
+
+                misses++;
+                V value;
+                try
+                {
+                    value = loader.load(regionKey);
+                }
+                catch (IOException | RuntimeException e)
+                {
+                    loadFailures++;
+                    loadNanos += System.nanoTime() - now;
+                    throw e;
+                }
+                loads++;
+                loadNanos += System.nanoTime() - now;
+
+                entry = new Entry<>(regionKey, value, weigher.applyAsInt(value), now);
+                entries.put(regionKey, entry);
+                linkLast(entry);
+                totalWeight += entry.weight;
+
+                // The region that was just loaded is kept even if it's heavier than the limit alone
+                while(totalWeight > maxWeight && head != entry)
+                    removed = evict(head, removed);
+                return value;
+            }
+        }
+        finally
+        {
+            if(removed != null)
+                removed.forEach(removalListener);
+        }
+    }
+
+    /**
+     * Evicts the regions that were not accessed during the expiration time, they are all at the head of the list
+     */
+    @Nullable
+    private List<V> removeExpired(long now, @Nullable List<V> removed)
+    {
+        while(head != null && now - head.lastAccess >= expireNanos)
+            removed = evict(head, removed);
+        return removed;
+    }
+
+    /**
+     * Removes an entry and adds its value to the list of values that must be passed to the removal listener
+     * @return The list with the value, created if it was {@code null}
+     */
+    private List<V> evict(Entry<V> entry, @Nullable List<V> removed)
+    {
+        entries.remove(entry.key);
+        unlink(entry);
+        totalWeight -= entry.weight;
+        evictions++;
+        if(removed == null)
+            removed = new ArrayList<>(2);
+        removed.add(entry.value);
+        return removed;
+    }
+
+    private void linkLast(Entry<V> entry)
+    {
+        entry.previous = tail;
+        entry.next = null;
+        if(tail == null)
+            head = entry;
+        else
+            tail.next = entry;
+        tail = entry;
+    }
+
+    private void unlink(Entry<V> entry)
+    {
+        if(entry.previous == null)
+            head = entry.next;
+        else
+            entry.previous.next = entry.next;
+
+        if(entry.next == null)
+            tail = entry.previous;
+        else
+            entry.next.previous = entry.previous;
+
+        entry.previous = entry.next = null;
+    }
+
+    private void moveToTail(Entry<V> entry)
+    {
+        if(entry != tail)
+        {
+            unlink(entry);
+            linkLast(entry);
+        }
+    }
+
+    /**
+     * Removes all regions, calling the removal listener for each one. The removals are not counted as evictions.
+     */
+    void invalidateAll()
+    {
+        List<V> removed;
+        synchronized(this)
+        {
+            removed = new ArrayList<>(entries.size());
+            for(Entry<V> entry = head; entry != null; entry = entry.next)
+                removed.add(entry.value);
+            entries.clear();
+            head = tail = null;
+            totalWeight = 0;
+        }
+        removed.forEach(removalListener);
+    }
+
+    synchronized int size()
+    {
+        return entries.size();
+    }
+
+    synchronized CacheStats stats()
+    {
+        return new CacheStats(hits, misses, loads, loadFailures, loadNanos, evictions);
+    }
+}
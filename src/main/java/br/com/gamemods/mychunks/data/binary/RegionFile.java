@@ -0,0 +1,382 @@
+package br.com.gamemods.mychunks.data.binary;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.spongepowered.api.util.annotation.NonnullByDefault;
+
+import javax.annotation.Nullable;
+import javax.annotation.ParametersAreNonnullByDefault;
+import java.io.*;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+
+/**
+ * <p>A file that stores the records of all claimed chunks inside a region of 32x32 chunks.</p>
+ * <p>The file starts with a fixed size header containing a table with the offset and the length of every chunk record,
+ * so a single chunk can be read or rewritten without parsing the other chunks. The format is:</p>
+ * <pre>
+ * int magic, int version
+ * 1024 x (int offset, int length)   -- indexed by {@link #index(int, int)}, a zero length means that the chunk is not claimed
+ * records...                         -- each record uses multiples of {@value #RECORD_ALIGNMENT} bytes
+ * </pre>
+ * <p>Records are never rewritten in place. A write appends the new records to the end of the file, forces them to the
+ * disk and only then rewrites the header to point to them, so a crash or a full disk in the middle of a write leaves
+ * the previous records readable. The header entries never cross a disk sector, so even a torn header write leaves each
+ * chunk pointing to either its old or its new record. New files and compacted files are written to a temporary file and moved over the
+ * region file. The file is compacted when the unused space becomes bigger than the used space, a failed compaction is
+ * logged and tried again on the next write without failing the write.</p>
+ * <p>The header is kept in memory, the file is only opened while it's being read or written.</p>
+ * <p>In memory mapped mode the whole file is mapped with {@link FileChannel#map(FileChannel.MapMode, long, long)} and
+ * the records are returned as views of the mapping, so reads are served by the page cache without copies.
+ * As records are only appended, the mapping stays valid after a write and the file is mapped again only when a record
+ * beyond the mapped size is read. The replaced mappings are unmapped explicitly, a mapped file can't be moved or
+ * replaced on some systems. If the JVM does not allow unmapping and the compacted file can't replace the mapped file,
+ * the region reads without memory mapping until a later compaction succeeds, after the garbage collector releases the
+ * old mapping.</p>
+ */
+@NonnullByDefault
+@ParametersAreNonnullByDefault
+final class RegionFile
+{
+    static final int MAGIC = 0x4D594352; // MYCR
+    static final int VERSION = 1;
+    static final int CHUNKS = 32 * 32;
+    static final int HEADER_SIZE = 8 + CHUNKS * 8;
+    static final int RECORD_ALIGNMENT = 64;
+    private static final int COMPACT_THRESHOLD = 64 * 1024;
+    private static final Logger logger = LoggerFactory.getLogger(RegionFile.class);
+
+    private final File file;
+    // The configured mode and the current mode, which is disabled while a failed compaction waits for the old mapping
+    private final boolean mapFile;
+    private boolean memoryMapped;
+    @Nullable
+    private MappedByteBuffer mapping;
+    private final int[] offsets = new int[CHUNKS];
+    private final int[] lengths = new int[CHUNKS];
+    private int count;
+
+    /**
+     * Reads the header of a region file, the file does not need to exist.
+     * @throws IOException If the file exists but could not be read or is not a valid region file
+     */
+    RegionFile(File file) throws IOException
+    {
+        this(file, false);
+    }
+
+    /**
+     * Reads the header of a region file, the file does not need to exist.
+     * @param memoryMapped If the records should be read from a memory mapping of the file
+     * @throws IOException If the file exists but could not be read or is not a valid region file
+     */
+    RegionFile(File file, boolean memoryMapped) throws IOException
+    {
+        this.file = file;
+        this.mapFile = this.memoryMapped = memoryMapped;
+        if(!file.isFile())
+            return;
+
+        if(memoryMapped)
+        {
+            try
+            {
+                readHeader(mapping(HEADER_SIZE).duplicate());
+            }
+            catch (BufferUnderflowException e)
+            {
+                throw new IOException("The region file "+file+" is truncated", e);
+            }
+            return;
+        }
+
+        try(DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), HEADER_SIZE)))
+        {
+            byte[] header = new byte[HEADER_SIZE];
+            in.readFully(header);
+            readHeader(ByteBuffer.wrap(header));
+        }
+        catch (EOFException e)
+        {
+            throw new IOException("The region file "+file+" is truncated", e);
+        }
+    }
+
+    private void readHeader(ByteBuffer buffer) throws IOException
+    {
+        if(buffer.getInt() != MAGIC)
+            throw new IOException("The file "+file+" is not a region file");
+        int version = buffer.getInt();
+        if(version != VERSION)
+            throw new IOException("The region file "+file+" has an unsupported version: "+version);
+
+        for(int i = 0; i < CHUNKS; i++)
+        {
+            offsets[i] = buffer.getInt();
+            lengths[i] = buffer.getInt();
+            if(lengths[i] > 0)
+                count++;
+        }
+    }
+
+    /**
+     * The mapping of the file, mapped again if the current mapping does not reach the given position
+     */
+    private MappedByteBuffer mapping(int end) throws IOException
+    {
+        MappedByteBuffer mapping = this.mapping;
+        if(mapping == null || mapping.capacity() < end)
+        {
+            releaseMapping();
+            try(FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ))
+            {
+                this.mapping = mapping = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            }
+        }
+        return mapping;
+    }
+
+    /**
+     * Discards the current mapping, unmapping it immediately when the JVM allows
+     * @return {@code false} if the file may still be mapped until the mapping is garbage collected
+     */
+    private boolean releaseMapping()
+    {
+        MappedByteBuffer mapping = this.mapping;
+        this.mapping = null;
+        return mapping == null || Unmapper.unmap(mapping);
+    }
+
+    /**
+     * Releases the mapping of the file, the buffers returned by {@link #read(int)} must not be used anymore.
+     * The file is mapped again if it's read after this call.
+     */
+    synchronized void close()
+    {
+        releaseMapping();
+    }
+
+    /**
+     * The position of a chunk on the header table
+     * @param chunkX The chunk X coordinate in the world
+     * @param chunkZ The chunk Z coordinate in the world
+     */
+    static int index(int chunkX, int chunkZ)
+    {
+        return (chunkX & 31) | (chunkZ & 31) << 5;
+    }
+
+    private static int aligned(int length)
+    {
+        return (length + RECORD_ALIGNMENT - 1) / RECORD_ALIGNMENT * RECORD_ALIGNMENT;
+    }
+
+    File getFile()
+    {
+        return file;
+    }
+
+    /**
+     * The amount of chunk records stored on this region
+     */
+    synchronized int count()
+    {
+        return count;
+    }
+
+    synchronized boolean contains(int index)
+    {
+        return lengths[index] > 0;
+    }
+
+    /**
+     * Reads a single chunk record
+     * @param index The position returned by {@link #index(int, int)}
+     * @return The record data or {@code null} if the chunk is not stored. In memory mapped mode the buffer is a view
+     * of the file and must be consumed before the next call to {@link #read(int)}, {@link #write(Map)} or {@link #close()}
+     */
+    @Nullable
+    synchronized ByteBuffer read(int index) throws IOException
+    {
+        int length = lengths[index];
+        if(length == 0)
+            return null;
+
+        if(memoryMapped)
+        {
+            ByteBuffer view = mapping(offsets[index] + length).duplicate();
+            view.position(offsets[index]);
+            view.limit(offsets[index] + length);
+            return view.slice();
+        }
+
+        byte[] data = new byte[length];
+        try(RandomAccessFile raf = new RandomAccessFile(file, "r"))
+        {
+            raf.seek(offsets[index]);
+            raf.readFully(data);
+        }
+        return ByteBuffer.wrap(data);
+    }
+
+    /**
+     * Writes and removes multiple records opening the file only once
+     * @param records The records indexed by {@link #index(int, int)}, {@code null} values remove the record
+     */
+    synchronized void write(Map<Integer, byte[]> records) throws IOException
+    {
+        if(records.isEmpty())
+            return;
+
+        if(!file.isFile())
+            create();
+
+        // The header in memory is changed only after the new header is written
+        int[] newOffsets = offsets.clone();
+        int[] newLengths = lengths.clone();
+        try(RandomAccessFile raf = new RandomAccessFile(file, "rw"))
+        {
+            long end = Math.max(raf.length(), HEADER_SIZE);
+            for(Map.Entry<Integer, byte[]> entry: records.entrySet())
+            {
+                int index = entry.getKey();
+                byte[] data = entry.getValue();
+                if(data == null || data.length == 0)
+                {
+                    newOffsets[index] = 0;
+                    newLengths[index] = 0;
+                    continue;
+                }
+
+                raf.seek(end);
+                raf.write(data);
+                newOffsets[index] = (int) end;
+                newLengths[index] = data.length;
+                end += aligned(data.length);
+            }
+
+            if(raf.length() < end)
+                raf.setLength(end);
+
+            // The records must be on the disk before the header points to them
+            raf.getChannel().force(false);
+            raf.seek(0);
+            raf.write(header(newOffsets, newLengths));
+            raf.getChannel().force(false);
+        }
+
+        count = 0;
+        for(int i = 0; i < CHUNKS; i++)
+        {
+            offsets[i] = newOffsets[i];
+            lengths[i] = newLengths[i];
+            if(lengths[i] > 0)
+                count++;
+        }
+
+        compactIfNeeded();
+    }
+
+    /**
+     * Creates the file with an empty header, the file appears only after the header is complete
+     */
+    private void create() throws IOException
+    {
+        File dir = file.getParentFile();
+        if(dir != null && !dir.isDirectory() && !dir.mkdirs())
+            throw new IOException("Failed to create the directory "+dir);
+
+        File temp = new File(file.getParentFile(), file.getName()+".tmp");
+        try(RandomAccessFile out = new RandomAccessFile(temp, "rw"))
+        {
+            out.setLength(0);
+            out.write(header(new int[CHUNKS], new int[CHUNKS]));
+            out.getChannel().force(false);
+        }
+        Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static byte[] header(int[] offsets, int[] lengths)
+    {
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE);
+        buffer.putInt(MAGIC).putInt(VERSION);
+        for(int i = 0; i < CHUNKS; i++)
+            buffer.putInt(offsets[i]).putInt(lengths[i]);
+        return buffer.array();
+    }
+
+    /**
+     * Compacts the file if the unused space is too big. The records that were just written are already safe, so a
+     * failure is only logged and the compaction is tried again on the next write.
+     */
+    private void compactIfNeeded()
+    {
+        long used = 0;
+        for(int length: lengths)
+            used += aligned(length);
+
+        long unused = file.length() - HEADER_SIZE - used;
+        if(unused < COMPACT_THRESHOLD || unused < used)
+            return;
+
+        try
+        {
+            compact();
+        }
+        catch (IOException e)
+        {
+            logger.warn("Failed to compact the region file "+file+", it will be tried again on the next write", e);
+        }
+    }
+
+    private void compact() throws IOException
+    {
+        File temp = new File(file.getParentFile(), file.getName()+".tmp");
+        int[] newOffsets = new int[CHUNKS];
+        try(RandomAccessFile in = new RandomAccessFile(file, "r");
+            RandomAccessFile out = new RandomAccessFile(temp, "rw"))
+        {
+            out.setLength(0);
+            int offset = HEADER_SIZE;
+            for(int i = 0; i < CHUNKS; i++)
+            {
+                if(lengths[i] == 0)
+                    continue;
+
+                byte[] data = new byte[lengths[i]];
+                in.seek(offsets[i]);
+                in.readFully(data);
+                out.seek(offset);
+                out.write(data);
+                newOffsets[i] = offset;
+                offset += aligned(data.length);
+            }
+            out.setLength(offset);
+            out.seek(0);
+            out.write(header(newOffsets, lengths));
+            out.getChannel().force(false);
+        }
+
+        boolean unmapped = releaseMapping();
+        try
+        {
+            Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+        catch (IOException e)
+        {
+            // The old mapping may still lock the file, it's not mapped again until a compaction succeeds
+            if(!unmapped)
+                memoryMapped = false;
+            Files.deleteIfExists(temp.toPath());
+            throw e;
+        }
+        System.arraycopy(newOffsets, 0, offsets, 0, CHUNKS);
+        memoryMapped = mapFile;
+    }
+}
@@ -0,0 +1,77 @@
+package br.com.gamemods.mychunks.data.binary;
+
+import org.spongepowered.api.util.annotation.NonnullByDefault;
+
+import javax.annotation.Nullable;
+import javax.annotation.ParametersAreNonnullByDefault;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+
+/**
+ * <p>Unmaps memory mapped files without waiting for the garbage collector. The JDK has no public API for this, so the
+ * internal cleaner is used: {@code sun.misc.Unsafe.invokeCleaner} on Java 9 and newer or the {@code cleaner()} of the
+ * direct buffer on Java 8.</p>
+ * <p>The buffer and all its views must not be used after it's unmapped, any access would crash the JVM.</p>
+ */
+@NonnullByDefault
+@ParametersAreNonnullByDefault
+final class Unmapper
+{
+    @Nullable
+    private static final Object unsafe;
+    @Nullable
+    private static final Method invokeCleaner;
+
+    static
+    {
+        Object theUnsafe = null;
+        Method method = null;
+        try
+        {
+            Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            method = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+            Field field = unsafeClass.getDeclaredField("theUnsafe");
+            field.setAccessible(true);
+            theUnsafe = field.get(null);
+        }
+        catch (ReflectiveOperationException | RuntimeException e)
+        {
+            // Java 8, the cleaner of the buffer is used
+            method = null;
+        }
+        unsafe = theUnsafe;
+        invokeCleaner = method;
+    }
+
+    private Unmapper()
+    {}
+
+    /**
+     * Unmaps the buffer immediately
+     * @return {@code false} if the JVM does not allow it, the buffer stays mapped until it's garbage collected
+     */
+    static boolean unmap(MappedByteBuffer buffer)
+    {
+        try
+        {
+            if(invokeCleaner != null)
+            {
+                invokeCleaner.invoke(unsafe, buffer);
+                return true;
+            }
+
+            Method cleanerMethod = buffer.getClass().getMethod("cleaner");
+            cleanerMethod.setAccessible(true);
+            Object cleaner = cleanerMethod.invoke(buffer);
+            if(cleaner != null)
+                cleaner.getClass().getMethod("clean").invoke(cleaner);
+            return true;
+        }
+        catch (ReflectiveOperationException | RuntimeException e)
+        {
+            return false;
+        }
+    }
+}
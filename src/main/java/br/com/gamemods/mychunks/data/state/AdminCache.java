@@ -0,0 +1,85 @@
+package br.com.gamemods.mychunks.data.state;
+
+import org.spongepowered.api.entity.living.player.Player;
+import org.spongepowered.api.util.annotation.NonnullByDefault;
+
+import javax.annotation.ParametersAreNonnullByDefault;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * <p>Remembers which online players have the {@value #PERMISSION} permission, so the permission checks don't resolve
+ * the player subject on the permission service every time.</p>
+ * <p>The status is resolved the first time that it's needed and must be refreshed when the permissions of the player
+ * may have changed, like when the player joins the server or periodically with {@link #refreshAll(Collection)}.
+ * The plugin owns the instance, available from {@code MyChunks.getAdminCache()}, and passes it to the checks that
+ * receive a {@link Player}. The cache is thread-safe.</p>
+ */
+@ParametersAreNonnullByDefault
+@NonnullByDefault
+public class AdminCache
+{
+    /**
+     * The permission that allows a player to bypass the protections of the chunks claimed by the server admins
+     */
+    public static final String PERMISSION = "mychunks.server-admin";
+
+    private final Map<UUID, Boolean> players = new ConcurrentHashMap<>();
+
+    /**
+     * The cached status of the player, resolved only if the player is not cached yet
+     */
+    public boolean isAdmin(Player player)
+    {
+        Boolean admin = players.get(player.getUniqueId());
+        return admin != null? admin : refresh(player);
+    }
+
+    /**
+     * Resolves the status of the player again
+     * @return The current status
+     */
+    public boolean refresh(Player player)
+    {
+        boolean admin = player.hasPermission(PERMISSION);
+        players.put(player.getUniqueId(), admin);
+        return admin;
+    }
+
+    /**
+     * Resolves the status of the cached players again and forgets the players that are not online anymore, the players
+     * that are not cached yet are resolved when they are checked
+     * @return The amount of players whose status changed
+     */
+    public int refreshAll(Collection<? extends Player> online)
+    {
+        Set<UUID> onlineIds = new HashSet<>(online.size());
+        int changed = 0;
+        for(Player player: online)
+        {
+            onlineIds.add(player.getUniqueId());
+            Boolean previous = players.get(player.getUniqueId());
+            if(previous != null && previous != refresh(player))
+                changed++;
+        }
+        players.keySet().retainAll(onlineIds);
+        return changed;
+    }
+
+    /**
+     * Forgets the status of a player that left the server
+     */
+    public void remove(UUID playerUniqueId)
+    {
+        players.remove(playerUniqueId);
+    }
+
+    public void clear()
+    {
+        players.clear();
+    }
+}
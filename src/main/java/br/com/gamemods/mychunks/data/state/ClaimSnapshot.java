@@ -0,0 +1,163 @@
+package br.com.gamemods.mychunks.data.state;
+
+import org.spongepowered.api.util.annotation.NonnullByDefault;
+
+import javax.annotation.Nullable;
+import javax.annotation.ParametersAreNonnullByDefault;
+import java.util.*;
+
+/**
+ * <p>An immutable and compact copy of the permissions of a {@link ClaimedChunk}, with the zone permissions already
+ * merged and the permissions that are not defined anywhere resolved by the {@link WorldFallbackContext#getFallbackMask()
+ * world fallback}. It can be read from any thread without locks.</p>
+ * <p>The permissions of every player that is relevant to the chunk are compiled to a single resolved mask, so a check
+ * is a single map lookup. Snapshots are obtained from {@link ClaimedChunk#getSnapshot()} or
+ * {@link WorldFallbackContext#getClaimSnapshot(int, int)} and are rebuilt automatically when the chunk, its zone, its
+ * world, any rank or the permission defaults change.</p>
+ */
+@ParametersAreNonnullByDefault
+@NonnullByDefault
+public final class ClaimSnapshot
+{
+    private final UUID worldId;
+    private final int chunkX, chunkZ;
+    @Nullable
+    private final UUID ownerId;
+    @Nullable
+    private final UUID zoneId;
+    private final boolean adminOwned;
+    private final Map<UUID, Long> playerMasks;
+    private final long defaultMask;
+
+    // The revisions of the chunk, of its zone, of its world, of the ranks and of the defaults when this snapshot was built
+    final int chunkRevision, zoneRevision, worldRevision, rankEpoch, defaultsGeneration;
+
+    private ClaimSnapshot(ClaimedChunk chunk, int chunkRevision, @Nullable Zone zone, int zoneRevision,
+                          int worldRevision, int rankEpoch, int defaultsGeneration)
+    {
+        this.chunkRevision = chunkRevision;
+        this.zoneRevision = zoneRevision;
+        this.worldRevision = worldRevision;
+        this.rankEpoch = rankEpoch;
+        this.defaultsGeneration = defaultsGeneration;
+
+        worldId = chunk.getWorldId();
+        chunkX = chunk.getPosition().getX();
+        chunkZ = chunk.getPosition().getZ();
+        zoneId = zone == null? null : zone.getUniqueId();
+
+        PlayerName owner = chunk.getOwner().orElse(PlayerName.ADMINS);
+        adminOwned = owner.equalsPlayer(PlayerName.ADMINS);
+        ownerId = adminOwned? null : owner.getUniqueId();
+
+        // Same rules as ClaimedChunk.getPermissionMask, the public permissions and the world fallback are merged in the end
+        Map<UUID, Set<Member>> members = chunk.getMembers();
+        boolean integrated = zone != null && members.isEmpty() && chunk.getOwner().equals(zone.getOwner());
+        long publicMask = Permission.merge(chunk.getPublicPermissionMask(), chunk.getWorldContext().getFallbackMask());
+        long zoneFallback = zone == null || integrated? 0 : zone.getPublicPermissionMask();
+        defaultMask = Permission.merge(zoneFallback, publicMask);
+
+        Set<UUID> players = new HashSet<>(members.keySet());
+        if(integrated)
+            players.addAll(zone.getMembers().keySet());
+        if(ownerId != null)
+            players.add(ownerId);
+
+        Map<UUID, Long> masks = new HashMap<>(players.size());
+        for(UUID playerId: players)
+        {
+            long mask = Permission.merge(chunk.getPermissionMask(playerId, false), publicMask);
+            if(mask != defaultMask)
+                masks.put(playerId, mask);
+        }
+        playerMasks = Collections.unmodifiableMap(masks);
+    }
+
+    /**
+     * Builds a snapshot of the current state of a chunk, prefer {@link ClaimedChunk#getSnapshot()} which reuses the
+     * last snapshot when nothing changed
+     */
+    static ClaimSnapshot of(ClaimedChunk chunk)
+    {
+        // The revisions are read before the state, a change made during the build makes the snapshot outdated
+        int rankEpoch = Rank.getEpoch();
+        int defaultsGeneration = Permission.getGeneration();
+        int worldRevision = chunk.getWorldContext().getRevision();
+        int chunkRevision = chunk.getRevision();
+        Zone zone = chunk.getZone();
+        int zoneRevision = zone == null? -1 : zone.getRevision();
+        return new ClaimSnapshot(chunk, chunkRevision, zone, zoneRevision, worldRevision, rankEpoch, defaultsGeneration);
+    }
+
+    /**
+     * Checks if this snapshot still reflects the chunk state
+     */
+    boolean isCurrent(ClaimedChunk chunk)
+    {
+        if(chunkRevision != chunk.getRevision() || rankEpoch != Rank.getEpoch()
+                || worldRevision != chunk.getWorldContext().getRevision() || defaultsGeneration != Permission.getGeneration())
+            return false;
+        Zone zone = chunk.getZone();
+        return zone == null? zoneRevision == -1 : zoneRevision == zone.getRevision();
+    }
+
+    /**
+     * Checks if a player has a permission on the chunk, it gives the same result as
+     * {@link ClaimedChunk#check(Permission, UUID, boolean)} at the moment that the snapshot was built
+     */
+    public boolean check(Permission permission, UUID playerUniqueId, boolean isAdmin)
+    {
+        return (getPermissionMask(playerUniqueId, isAdmin) & permission.mask()) != 0;
+    }
+
+    /**
+     * All permissions of a player on the chunk with the zone, the public permissions and the world fallback already
+     * merged
+     * @return The granted permissions as {@link Permission#mask()} bits combined with the denied permissions as
+     * {@link Permission#denyMask()} bits
+     */
+    public long getPermissionMask(UUID playerUniqueId, boolean isAdmin)
+    {
+        if(isAdmin && adminOwned)
+            return Permission.allMask();
+
+        Long mask = playerMasks.get(playerUniqueId);
+        return mask == null? defaultMask : mask;
+    }
+
+    public UUID getWorldId()
+    {
+        return worldId;
+    }
+
+    public int getChunkX()
+    {
+        return chunkX;
+    }
+
+    public int getChunkZ()
+    {
+        return chunkZ;
+    }
+
+    /**
+     * The player that owns the chunk, empty if the chunk belongs to the server admins
+     */
+    public Optional<UUID> getOwnerId()
+    {
+        return Optional.ofNullable(ownerId);
+    }
+
+    public boolean isAdminOwned()
+    {
+        return adminOwned;
+    }
+
+    /**
+     * The zone that the chunk was part of
+     */
+    public Optional<UUID> getZoneId()
+    {
+        return Optional.ofNullable(zoneId);
+    }
+}
@@ -20,7 +20,9 @@ public class ClaimedChunk extends OwnedContext
     private final Vector3i position;
 
     @Nullable
-    private Zone zone;
+    private volatile Zone zone;
+    @Nullable
+    private volatile ClaimSnapshot snapshot;
 
     /**
      * Construct a chunk that is claimed by the server admins, with no members and no public permission specified
@@ -34,12 +36,9 @@ public class ClaimedChunk extends OwnedContext
     }
 
     @Override
-    public Optional<Boolean> getPermission(Permission permission, UUID playerUniqueId, boolean isAdmin)
+    public long getPermissionMask(UUID playerUniqueId, boolean isAdmin)
     {
-        Optional<Boolean> result = super.getPermission(permission, playerUniqueId, isAdmin);
-        if(result.isPresent())
-            return result;
-
+        long result = super.getPermissionMask(playerUniqueId, isAdmin);
         Zone zone = this.zone;
         if(zone == null)
             return result;
@@ -56,11 +55,56 @@ public class ClaimedChunk extends OwnedContext
          * chunk is fully integrated to the zone or not, if it is we need to check the permission directly on the zone
          */
         if(isIntegratedToTheZone())
-            return zone.getPermission(permission, playerUniqueId, isAdmin);
+            return Permission.merge(result, zone.getPermissionMask(playerUniqueId, isAdmin));
 
         // The public zone public permission is not the same as the chunk public permission
         //TODO Should it be on the getPublicPermission() of this context or not?
-        return zone.getPublicPermission(permission);
+        return Permission.merge(result, zone.getPublicPermissionMask());
+    }
+
+    /**
+     * The permissions that are not defined on this chunk, on its zone or for the player fall back to the world
+     * @see WorldFallbackContext#getFallbackMask()
+     */
+    @Override
+    protected boolean getDefaultPublicPermission(Permission permission)
+    {
+        return (worldContext.getFallbackMask() & permission.mask()) != 0;
+    }
+
+    /**
+     * Changes the owner of this chunk and notifies the owner listeners of the world
+     * @see WorldFallbackContext#addOwnerListener(java.util.function.Consumer)
+     */
+    @Override
+    public void setOwner(@Nullable PlayerName owner) throws UnsupportedOperationException
+    {
+        Optional<PlayerName> previous = getOwner();
+        super.setOwner(owner);
+        if(!previous.equals(getOwner()))
+            worldContext.ownerChanged(this);
+    }
+
+    /**
+     * The revision of the zone combined with the revision of the world
+     */
+    @Override
+    protected long getInheritedRevision()
+    {
+        Zone zone = this.zone;
+        return (long) (zone == null? -1 : zone.getRevision()) << 32 | worldContext.getRevision() & 0xFFFFFFFFL;
+    }
+
+    /**
+     * An immutable snapshot of the current permissions of this chunk that can be used from any thread. The last
+     * snapshot is reused while this chunk and its zone are not changed.
+     */
+    public ClaimSnapshot getSnapshot()
+    {
+        ClaimSnapshot snapshot = this.snapshot;
+        if(snapshot == null || !snapshot.isCurrent(this))
+            this.snapshot = snapshot = ClaimSnapshot.of(this);
+        return snapshot;
     }
 
     public boolean isIntegratedToTheZone()
@@ -104,8 +148,11 @@ public class ClaimedChunk extends OwnedContext
         if(zone != null && zone.getChunkAt(position).orElse(null) != this)
             throw new IllegalArgumentException("The zone "+zone.getName()+" does not contains this chunk "+position);
 
-        modified |= !Objects.equals(this.zone, zone);
-        this.zone = zone;
+        if(!Objects.equals(this.zone, zone))
+        {
+            this.zone = zone;
+            changed();
+        }
     }
 
     public WorldFallbackContext getWorldContext()
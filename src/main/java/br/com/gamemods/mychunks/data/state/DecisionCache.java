@@ -0,0 +1,121 @@
+package br.com.gamemods.mychunks.data.state;
+
+import org.spongepowered.api.util.annotation.NonnullByDefault;
+
+import javax.annotation.Nullable;
+import javax.annotation.ParametersAreNonnullByDefault;
+import java.lang.ref.WeakReference;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * <p>Remembers the results of {@link PublicContext#check(Permission, UUID, boolean)} for each player, so the repeated
+ * checks done while a player builds, mines or walks on the same chunk skip the member and zone resolution.</p>
+ * <p>Each player has a few slots selected by the context identity. A cached decision is used only while the revision
+ * of the context, the revisions inherited from its zone and world, the {@link Rank#getEpoch() rank epoch} and the
+ * {@link Permission#getGeneration() permission defaults generation} are the same as when it was taken.</p>
+ * <p>The cache is thread-safe, the slots hold immutable entries. The entries reference the contexts weakly, so the
+ * chunks that were unloaded or unclaimed are not kept in memory by the players that checked them.</p>
+ */
+@ParametersAreNonnullByDefault
+@NonnullByDefault
+public class DecisionCache
+{
+    private static final int SLOTS = 8;
+
+    /**
+     * The decisions taken on a context, a new entry replaces it when an other permission is decided
+     */
+    private static final class Entry extends WeakReference<PublicContext>
+    {
+        private final int revision;
+        private final long inheritedRevision;
+        private final int rankEpoch;
+        private final int defaultsGeneration;
+        private final boolean admin;
+        // Permission.mask() bits of the permissions that were decided and of those that were allowed
+        private final long decided;
+        private final long allowed;
+
+        private Entry(PublicContext context, int revision, long inheritedRevision, int rankEpoch,
+                      int defaultsGeneration, boolean admin, long decided, long allowed)
+        {
+            super(context);
+            this.revision = revision;
+            this.inheritedRevision = inheritedRevision;
+            this.rankEpoch = rankEpoch;
+            this.defaultsGeneration = defaultsGeneration;
+            this.admin = admin;
+            this.decided = decided;
+            this.allowed = allowed;
+        }
+
+        private boolean isCurrent(PublicContext context, int revision, long inheritedRevision, int rankEpoch,
+                                  int defaultsGeneration, boolean admin)
+        {
+            return get() == context && this.revision == revision && this.inheritedRevision == inheritedRevision
+                    && this.rankEpoch == rankEpoch && this.defaultsGeneration == defaultsGeneration && this.admin == admin;
+        }
+    }
+
+    private final Map<UUID, Entry[]> players = new ConcurrentHashMap<>();
+
+    /**
+     * Same as {@link PublicContext#check(Permission, UUID, boolean)} but reuses the last decision taken for the player
+     * on the context when nothing that affects it changed
+     */
+    public boolean check(PublicContext context, Permission permission, UUID playerUniqueId, boolean isAdmin)
+    {
+        Entry[] slots = players.get(playerUniqueId);
+        if(slots == null)
+        {
+            Entry[] created = new Entry[SLOTS];
+            slots = players.putIfAbsent(playerUniqueId, created);
+            if(slots == null)
+                slots = created;
+        }
+
+        // The generations are read before the decision, a change made during the check makes the entry outdated
+        int rankEpoch = Rank.getEpoch();
+        int defaultsGeneration = Permission.getGeneration();
+        int revision = context.getRevision();
+        long inheritedRevision = context.getInheritedRevision();
+
+        int slot = System.identityHashCode(context) & (SLOTS - 1);
+        @Nullable
+        Entry entry = slots[slot];
+        long mask = permission.mask();
+        boolean current = entry != null &&
+                entry.isCurrent(context, revision, inheritedRevision, rankEpoch, defaultsGeneration, isAdmin);
+        if(current && (entry.decided & mask) != 0)
+            return (entry.allowed & mask) != 0;
+
+        boolean result = context.check(permission, playerUniqueId, isAdmin);
+        long decided = current? entry.decided | mask : mask;
+        long allowed = (current? entry.allowed : 0) | (result? mask : 0);
+        slots[slot] = new Entry(context, revision, inheritedRevision, rankEpoch, defaultsGeneration, isAdmin, decided, allowed);
+        return result;
+    }
+
+    /**
+     * Forgets the decisions of a player that left the server
+     */
+    public void remove(UUID playerUniqueId)
+    {
+        players.remove(playerUniqueId);
+    }
+
+    public void clear()
+    {
+        players.clear();
+    }
+
+    /**
+     * The amount of players that have cached decisions
+     */
+    public int size()
+    {
+        return players.size();
+    }
+}
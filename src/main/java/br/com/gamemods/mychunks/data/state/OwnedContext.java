@@ -7,12 +7,48 @@ import javax.annotation.Nullable;
 import javax.annotation.ParametersAreNonnullByDefault;
 import java.util.*;
 
+/**
+ * <p>A context that has an owner and members with ranks.</p>
+ * <p>Like the public permissions, the members are published as immutable snapshots, readers from any thread see a
+ * consistent view of the members and the permissions compiled from their ranks without locking.</p>
+ */
 @ParametersAreNonnullByDefault
 @NonnullByDefault
 public class OwnedContext extends PublicContext implements Modifiable
 {
-    private Optional<PlayerName> owner = Optional.empty();
-    private Map<UUID, Set<Member>> members = new HashMap<>(0);
+    /**
+     * The members grouped by the player ID and the permissions granted by all ranks of each member, never modified
+     * after being published
+     */
+    private static final class Members
+    {
+        private static final Members EMPTY = new Members(Collections.emptyMap());
+
+        private final Map<UUID, Set<Member>> members;
+        private final Map<UUID, Long> masks;
+        // The rank epoch when the masks were compiled, the masks are outdated when any rank changes
+        private final int rankEpoch;
+
+        /**
+         * @param members The new members as an unmodifiable map, the sets must not be modified after this call
+         */
+        private Members(Map<UUID, Set<Member>> members)
+        {
+            this.rankEpoch = Rank.getEpoch();
+            this.members = members;
+            Map<UUID, Long> masks = new HashMap<>(members.size());
+            members.forEach((playerId, memberSet) -> {
+                long mask = 0;
+                for(Member member: memberSet)
+                    mask |= member.getRank().getPermissionMask();
+                masks.put(playerId, Rank.resolve(mask));
+            });
+            this.masks = masks;
+        }
+    }
+
+    private volatile Optional<PlayerName> owner = Optional.empty();
+    private volatile Members members = Members.EMPTY;
 
     public OwnedContext()
     {}
@@ -29,19 +65,29 @@ public class OwnedContext extends PublicContext implements Modifiable
     }
 
     @Override
-    public Optional<Boolean> getPermission(Permission permission, UUID playerUniqueId, boolean isAdmin)
+    public long getPermissionMask(UUID playerUniqueId, boolean isAdmin)
     {
         PlayerName owner = this.owner.orElse(PlayerName.ADMINS);
         if(owner.getUniqueId().equals(playerUniqueId) || isAdmin && owner.equalsPlayer(PlayerName.ADMINS))
-            return Optional.of(true);
+            return Permission.allMask();
+
+        Members members = this.members;
+        if(members.rankEpoch != Rank.getEpoch())
+            members = recompile(members);
 
-        Set<Member> memberSet= members.get(playerUniqueId);
-        if(memberSet != null)
-            for(Member member: memberSet)
-                if(member != null && member.getRank().getPermission(permission).orElse(false))
-                    return Optional.of(true);
+        Long mask = members.masks.get(playerUniqueId);
+        return mask == null? 0 : mask;
+    }
 
-        return Optional.empty();
+    /**
+     * Compiles the member masks again after a rank change
+     */
+    private synchronized Members recompile(Members outdated)
+    {
+        Members current = members;
+        if(current == outdated)
+            members = current = new Members(current.members);
+        return current;
     }
 
     /**
@@ -56,38 +102,62 @@ public class OwnedContext extends PublicContext implements Modifiable
      * Changes the owner of this context, the change is not persisted immediately
      * @param owner The new owner or {@code null} to refer to the server admins
      */
-    public void setOwner(@Nullable PlayerName owner) throws UnsupportedOperationException
+    public synchronized void setOwner(@Nullable PlayerName owner) throws UnsupportedOperationException
     {
         Optional<PlayerName> newValue = Optional.ofNullable(owner);
 
-        modified |= !this.owner.equals(newValue);
-        this.owner = newValue;
+        if(!this.owner.equals(newValue))
+        {
+            this.owner = newValue;
+            changed();
+        }
     }
 
-    public void addMember(Member member)
+    public synchronized void addMember(Member member)
     {
         UUID playerId = member.getPlayerId().getUniqueId();
-        Set<Member> memberSet = members.get(playerId);
-        if(memberSet == null) members.put(playerId, memberSet = new HashSet<>(1));
-        modified |= memberSet.add(member);
+        Set<Member> current = members.members.getOrDefault(playerId, Collections.emptySet());
+        if(current.contains(member))
+            return;
+
+        Set<Member> memberSet = new HashSet<>(current.size() + 1);
+        memberSet.addAll(current);
+        memberSet.add(member);
+
+        Map<UUID, Set<Member>> updated = new HashMap<>(members.members);
+        updated.put(playerId, Collections.unmodifiableSet(memberSet));
+        members = new Members(Collections.unmodifiableMap(updated));
+        changed();
     }
 
-    public boolean removeMember(Member member)
+    public synchronized boolean removeMember(Member member)
     {
         UUID playerId = member.getPlayerId().getUniqueId();
-        Set<Member> memberSet = members.get(playerId);
-        if(memberSet == null)
+        Set<Member> current = members.members.get(playerId);
+        if(current == null || !current.contains(member))
             return false;
-        boolean modified = memberSet.remove(member);
-        if(memberSet.isEmpty())
-            modified |= members.remove(playerId) != null;
 
-        this.modified |= modified;
-        return modified;
+        Map<UUID, Set<Member>> updated = new HashMap<>(members.members);
+        if(current.size() == 1)
+            updated.remove(playerId);
+        else
+        {
+            Set<Member> memberSet = new HashSet<>(current);
+            memberSet.remove(member);
+            updated.put(playerId, Collections.unmodifiableSet(memberSet));
+        }
+
+        members = new Members(Collections.unmodifiableMap(updated));
+        changed();
+        return true;
     }
 
+    /**
+     * All members of this context grouped by the player ID. The map is an immutable snapshot, use
+     * {@link #addMember(Member)} and {@link #removeMember(Member)} to change it.
+     */
     public Map<UUID, Set<Member>> getMembers()
     {
-        return members;
+        return members.members;
     }
 }
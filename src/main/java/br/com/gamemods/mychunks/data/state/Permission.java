@@ -12,6 +12,7 @@ import javax.annotation.Nullable;
 import javax.annotation.ParametersAreNonnullByDefault;
 import java.util.Collection;
 import java.util.EnumSet;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * The permission flags that are used on protections
@@ -30,15 +31,34 @@ public enum Permission implements Modifiable
 
     private static final EnumSet<Permission> defaultPermissions = EnumSet.allOf(Permission.class);
     private static final EnumSet<Permission> defaultWildPermissions = EnumSet.allOf(Permission.class);
+    private static final long ALL_MASK;
+    private static final AtomicInteger generation = new AtomicInteger();
+
+    /**
+     * The bits used by the granted permissions on a resolved permission mask, the denied permissions uses the bits
+     * above them
+     * @see #mask()
+     * @see #denyMask()
+     */
+    public static final long GRANT_BITS = 0xFFFFFFFFL;
 
     private boolean fallbackValue = false;
     private boolean defaultWildValue = false;
+    // The values declared here, used when the configuration does not define the defaults
+    private final boolean builtInFallbackValue;
+    private final boolean builtInWildValue;
     private Text failureMessage;
     private String description;
     private boolean modified;
+    private final long mask = 1L << ordinal();
 
     static
     {
+        Permission[] values = values();
+        if(values.length > 32)
+            throw new IllegalStateException("The permission masks supports up to 32 permissions");
+        ALL_MASK = (1L << values.length) - 1;
+
         defaultPermissions.removeIf(permission -> !permission.fallbackValue);
         defaultWildPermissions.removeIf(permission -> !permission.defaultWildValue);
     }
@@ -58,6 +78,59 @@ public enum Permission implements Modifiable
         return EnumSet.copyOf(defaultWildPermissions);
     }
 
+    /**
+     * A number that changes every time the default value of any permission changes, used to detect if a decision
+     * that depends on the defaults is outdated
+     */
+    public static int getGeneration()
+    {
+        return generation.get();
+    }
+
+    /**
+     * A mask with the {@link #mask()} bits of all permissions
+     */
+    public static long allMask()
+    {
+        return ALL_MASK;
+    }
+
+    /**
+     * Combines two resolved masks, the permissions defined on the first mask take priority
+     * @param primary A mask with {@link #mask()} and {@link #denyMask()} bits
+     * @param secondary A mask with {@link #mask()} and {@link #denyMask()} bits, used only for the permissions that
+     *                  are not defined on the primary mask
+     */
+    public static long merge(long primary, long secondary)
+    {
+        long defined = (primary | primary >>> 32) & GRANT_BITS;
+        return primary | secondary & ~(defined | defined << 32);
+    }
+
+    /**
+     * Creates a mask with the {@link #mask()} bits of all permissions in the collection
+     */
+    public static long mask(Collection<Permission> permissions)
+    {
+        long mask = 0;
+        for(Permission permission: permissions)
+            mask |= permission.mask;
+        return mask;
+    }
+
+    /**
+     * Creates an {@link EnumSet} with all permissions that have a bit set on the mask
+     * @param mask A mask created with {@link #mask()}, the bits of the denied permissions are ignored
+     */
+    public static EnumSet<Permission> fromMask(long mask)
+    {
+        EnumSet<Permission> set = EnumSet.noneOf(Permission.class);
+        for(Permission permission: values())
+            if((mask & permission.mask) != 0)
+                set.add(permission);
+        return set;
+    }
+
     /**
      * Creates an {@link EnumSet} from a collection of this type.
      * @param collection Can be empty or {@code null}
@@ -89,11 +162,27 @@ public enum Permission implements Modifiable
 
         this.description = description;
         this.failureMessage = builder.build();
-        this.fallbackValue = def;
-        this.defaultWildValue = wild;
+        this.fallbackValue = this.builtInFallbackValue = def;
+        this.defaultWildValue = this.builtInWildValue = wild;
         modified = false;
     }
 
+    /**
+     * The bit that represents this permission as granted on permission masks
+     */
+    public long mask()
+    {
+        return mask;
+    }
+
+    /**
+     * The bit that represents this permission as denied on resolved permission masks
+     */
+    public long denyMask()
+    {
+        return mask << 32;
+    }
+
     /**
      * <p>If this permission must be granted if it's not declared anywhere on the context.</p>
      * This must be used as fallback check and the value returned must not be saved with the context because it
@@ -109,22 +198,28 @@ public enum Permission implements Modifiable
      */
     public void setAllowedByDefault(boolean allowed)
     {
-        modified |= fallbackValue != allowed;
+        boolean changed = fallbackValue != allowed;
+        modified |= changed;
         this.fallbackValue = allowed;
         if(allowed)
             defaultPermissions.add(this);
         else
             defaultPermissions.remove(this);
+        if(changed)
+            generation.incrementAndGet();
     }
 
     public void setAllowedByDefaultOnTheWild(boolean allowed)
     {
-        modified |= allowed != defaultWildValue;
+        boolean changed = allowed != defaultWildValue;
+        modified |= changed;
         this.defaultWildValue = allowed;
         if(allowed)
             defaultWildPermissions.add(this);
         else
             defaultWildPermissions.remove(this);
+        if(changed)
+            generation.incrementAndGet();
     }
 
     public boolean isAllowedByDefaultOnTheWild()
@@ -132,6 +227,22 @@ public enum Permission implements Modifiable
         return defaultWildValue;
     }
 
+    /**
+     * The value of {@link #isAllowedByDefault()} when it's not changed by the configuration
+     */
+    public boolean isBuiltInAllowedByDefault()
+    {
+        return builtInFallbackValue;
+    }
+
+    /**
+     * The value of {@link #isAllowedByDefaultOnTheWild()} when it's not changed by the configuration
+     */
+    public boolean isBuiltInAllowedOnTheWild()
+    {
+        return builtInWildValue;
+    }
+
     /**
      * Sends the failure message to the player.
      * @param player The player that will receive the message
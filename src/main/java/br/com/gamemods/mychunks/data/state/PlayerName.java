@@ -8,7 +8,7 @@ import java.util.UUID;
 
 /**
  * A simple reference to a player. The name can be changed. It's recommended to reuse this instance to reflect
- * the name change immediately in all use cases.
+ * the name change immediately in all use cases, the instances should be obtained from a {@link PlayerNameRegistry}.
  */
 @ParametersAreNonnullByDefault
 @NonnullByDefault
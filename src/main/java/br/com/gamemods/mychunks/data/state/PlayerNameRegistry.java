@@ -0,0 +1,68 @@
+package br.com.gamemods.mychunks.data.state;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import org.spongepowered.api.util.annotation.NonnullByDefault;
+
+import javax.annotation.ParametersAreNonnullByDefault;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * <p>Keeps a single {@link PlayerName} instance for each player, so a name change is visible on every chunk, member and
+ * zone that references the player.</p>
+ * <p>The instances are weakly referenced, players that are not referenced by any loaded claim are evicted
+ * automatically. The registry is thread-safe.</p>
+ */
+@ParametersAreNonnullByDefault
+@NonnullByDefault
+public class PlayerNameRegistry
+{
+    private final Cache<UUID, PlayerName> players = CacheBuilder.newBuilder().weakValues().build();
+
+    /**
+     * Gets the instance of a player, creating it if it's not registered yet. The name of a registered instance is not
+     * changed because it may be more recent than the given name.
+     * @param uniqueId The player ID
+     * @param name The name to be used if the player is not registered, usually a name read from the storage
+     * @throws IllegalArgumentException If the player is not registered and the name is empty
+     */
+    public PlayerName get(UUID uniqueId, String name) throws IllegalArgumentException
+    {
+        if(PlayerName.ADMINS.equalsPlayer(uniqueId))
+            return PlayerName.ADMINS;
+        if(PlayerName.WILDERNESS.equalsPlayer(uniqueId))
+            return PlayerName.WILDERNESS;
+
+        PlayerName player = players.getIfPresent(uniqueId);
+        if(player != null)
+            return player;
+
+        PlayerName created = new PlayerName(uniqueId, name);
+        player = players.asMap().putIfAbsent(uniqueId, created);
+        return player == null? created : player;
+    }
+
+    /**
+     * Gets the instance of a player and updates its name, used when the current name of the player is known,
+     * like when the player joins the server or runs a command
+     * @param uniqueId The player ID
+     * @param currentName The name that the player is using now
+     * @throws IllegalArgumentException If the name is empty
+     */
+    public PlayerName update(UUID uniqueId, String currentName) throws IllegalArgumentException
+    {
+        PlayerName player = get(uniqueId, currentName);
+        if(!player.isGroup() && !player.getName().equals(currentName))
+            player.setName(currentName);
+        return player;
+    }
+
+    /**
+     * The instance of a player, only if it's still registered
+     */
+    public Optional<PlayerName> getIfPresent(UUID uniqueId)
+    {
+        return Optional.ofNullable(players.getIfPresent(uniqueId));
+    }
+}
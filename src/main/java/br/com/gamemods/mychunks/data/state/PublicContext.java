@@ -3,23 +3,48 @@ package br.com.gamemods.mychunks.data.state;
 import org.spongepowered.api.entity.living.player.Player;
 import org.spongepowered.api.util.Tristate;
 
-import java.util.EnumMap;
-import java.util.Optional;
-import java.util.UUID;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
 
+/**
+ * <p>A context that has public permissions, the permissions that applies to everybody.</p>
+ * <p>The state is thread-safe. Changes are serialized and published as immutable snapshots through volatile fields,
+ * so reads from any thread are lock-free and always see a consistent state.</p>
+ */
 public class PublicContext implements Modifiable
 {
-    private EnumMap<Permission, Boolean> publicPermissions;
-    protected boolean modified;
+    /**
+     * The public permissions and their compiled mask, never modified after being published
+     */
+    private static final class PublicPermissions
+    {
+        private static final PublicPermissions EMPTY = new PublicPermissions(new EnumMap<>(Permission.class));
+
+        private final Map<Permission, Boolean> permissions;
+        private final long mask;
+
+        private PublicPermissions(EnumMap<Permission, Boolean> permissions)
+        {
+            this.permissions = Collections.unmodifiableMap(permissions);
+            long mask = 0;
+            for(Map.Entry<Permission, Boolean> entry: permissions.entrySet())
+                mask |= entry.getValue()? entry.getKey().mask() : entry.getKey().denyMask();
+            this.mask = mask;
+        }
+    }
+
+    private volatile PublicPermissions publicPermissions;
+    private final AtomicInteger revision = new AtomicInteger();
+    protected volatile boolean modified;
 
     public PublicContext()
     {
-        publicPermissions = new EnumMap<>(Permission.class);
+        publicPermissions = PublicPermissions.EMPTY;
     }
 
     public PublicContext(EnumMap<Permission, Boolean> publicPermissions)
     {
-        this.publicPermissions = publicPermissions;
+        this.publicPermissions = new PublicPermissions(publicPermissions.clone());
     }
 
     /**
@@ -28,11 +53,12 @@ public class PublicContext implements Modifiable
      * <p>The player will be notified if the permission is denied</p>
      * @param permission The permission to be checked
      * @param player The player that needs this permission
+     * @param adminCache Resolves if the player is a server admin, the one owned by the plugin
      * @return If the player has permission
      */
-    public boolean check(Permission permission, Player player)
+    public boolean check(Permission permission, Player player, AdminCache adminCache)
     {
-        return check(permission, player, true);
+        return check(permission, player, adminCache, true);
     }
 
     /**
@@ -40,12 +66,13 @@ public class PublicContext implements Modifiable
      * <p>It checks the player public permissions, the player rank and anything that is needed on this context.</p>
      * @param permission The permission to be checked
      * @param player The player that needs this permission
+     * @param adminCache Resolves if the player is a server admin, the one owned by the plugin
      * @param notify If the player should be notified if the permission is denied
      * @return If the player has permission
      */
-    public boolean check(Permission permission, Player player, boolean notify)
+    public boolean check(Permission permission, Player player, AdminCache adminCache, boolean notify)
     {
-        if(check(permission, player.getUniqueId(), isAdmin(player)))
+        if(check(permission, player.getUniqueId(), adminCache.isAdmin(player)))
             return true;
 
         if(notify)
@@ -54,11 +81,6 @@ public class PublicContext implements Modifiable
         return false;
     }
 
-    public boolean isAdmin(Player player)
-    {
-        return player.hasPermission("mychunks.server-admin");
-    }
-
     public void notifyFailure(Permission permission, Player player)
     {
         permission.notifyFailure(player, null);
@@ -81,11 +103,19 @@ public class PublicContext implements Modifiable
 
     public boolean check(Permission permission, UUID playerUniqueId, boolean isAdmin)
     {
-        Optional<Boolean> result = getPermission(permission, playerUniqueId, isAdmin);
-        if(result.isPresent())
-            return result.get();
+        long resolved = getPermissionMask(playerUniqueId, isAdmin);
+        if((resolved & permission.mask()) != 0)
+            return true;
+        if((resolved & permission.denyMask()) != 0)
+            return false;
+
+        long publicPermissionMask = publicPermissions.mask;
+        if((publicPermissionMask & permission.mask()) != 0)
+            return true;
+        if((publicPermissionMask & permission.denyMask()) != 0)
+            return false;
 
-        return getPublicPermission(permission).orElse(getDefaultPublicPermission(permission));
+        return getDefaultPublicPermission(permission);
     }
 
     protected boolean getDefaultPublicPermission(Permission permission)
@@ -103,9 +133,34 @@ public class PublicContext implements Modifiable
      */
     public Optional<Boolean> getPermission(Permission permission, UUID playerUniqueId, boolean isAdmin)
     {
+        long resolved = getPermissionMask(playerUniqueId, isAdmin);
+        if((resolved & permission.mask()) != 0)
+            return Optional.of(true);
+        if((resolved & permission.denyMask()) != 0)
+            return Optional.of(false);
         return Optional.empty();
     }
 
+    /**
+     * The custom permissions that the player have on this context, they override the public permissions.
+     * @param playerUniqueId The player that is being checked
+     * @param isAdmin If the player is an administrator
+     * @return The granted permissions as {@link Permission#mask()} bits combined with the denied permissions as
+     * {@link Permission#denyMask()} bits. Permissions without any bit set are not defined.
+     */
+    public long getPermissionMask(UUID playerUniqueId, boolean isAdmin)
+    {
+        return 0;
+    }
+
+    /**
+     * The public permissions compiled to the same format returned by {@link #getPermissionMask(UUID, boolean)}
+     */
+    public long getPublicPermissionMask()
+    {
+        return publicPermissions.mask;
+    }
+
     /**
      * <p>Checks if this context declares an specific permission as public.</p>
      * Public permissions allows anyone to do this action regardless if the subject is a member or not.
@@ -114,20 +169,79 @@ public class PublicContext implements Modifiable
      */
     public Optional<Boolean> getPublicPermission(Permission permission)
     {
-        return Optional.ofNullable(publicPermissions.get(permission));
+        return Optional.ofNullable(publicPermissions.permissions.get(permission));
     }
 
-    public boolean setPublicPermission(Permission permission, Tristate value)
+    /**
+     * All public permissions defined on this context, the map is an immutable snapshot
+     */
+    public Map<Permission, Boolean> getPublicPermissions()
     {
-        if(value == Tristate.UNDEFINED)
-            return publicPermissions.remove(permission) != null;
+        return publicPermissions.permissions;
+    }
+
+    public synchronized boolean setPublicPermission(Permission permission, Tristate value)
+    {
+        Boolean current = publicPermissions.permissions.get(permission);
+        Boolean replacement = value == Tristate.UNDEFINED? null : value.asBoolean();
+        if(Objects.equals(current, replacement))
+            return false;
+
+        EnumMap<Permission, Boolean> permissions = new EnumMap<>(Permission.class);
+        permissions.putAll(publicPermissions.permissions);
+        if(replacement == null)
+            permissions.remove(permission);
+        else
+            permissions.put(permission, replacement);
+
+        publicPermissions = new PublicPermissions(permissions);
+        changed();
+        return true;
+    }
+
+    /**
+     * Replaces all public permissions at once, the permissions that are not on the map become undefined. Readers on
+     * other threads see either the old or the new permissions, never a mix of both.
+     * @return {@code true} if any permission changed
+     */
+    public synchronized boolean setPublicPermissions(Map<Permission, Boolean> permissions)
+    {
+        if(publicPermissions.permissions.equals(permissions))
+            return false;
+
+        EnumMap<Permission, Boolean> replacement = new EnumMap<>(Permission.class);
+        replacement.putAll(permissions);
+        publicPermissions = new PublicPermissions(replacement);
+        changed();
+        return true;
+    }
 
-        boolean bool = value.asBoolean();
-        Boolean replacement = publicPermissions.put(permission, bool);
-        bool = replacement == null || bool != replacement;
+    /**
+     * A number that changes every time the state of this context is changed, unlike {@link #isModified()} it's never
+     * reset. Used to detect if anything computed from this context is outdated.
+     */
+    public int getRevision()
+    {
+        return revision.get();
+    }
+
+    /**
+     * The revisions of the contexts that this context inherits permissions from, like the zone of a chunk. Together
+     * with {@link #getRevision()} it tells if a decision taken on this context is still valid.
+     * @return Any number that changes when an inherited context changes, {@code 0} if nothing is inherited
+     */
+    protected long getInheritedRevision()
+    {
+        return 0;
+    }
 
-        modified |= bool;
-        return bool;
+    /**
+     * Marks this context as modified and changes the revision, must be called after the change is visible
+     */
+    protected void changed()
+    {
+        modified = true;
+        revision.incrementAndGet();
     }
 
     @Override
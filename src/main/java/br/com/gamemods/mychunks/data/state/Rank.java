@@ -2,49 +2,148 @@ package br.com.gamemods.mychunks.data.state;
 
 import br.com.gamemods.mychunks.Util;
 import org.spongepowered.api.util.Identifiable;
+import org.spongepowered.api.util.Tristate;
 import org.spongepowered.api.util.annotation.NonnullByDefault;
 
 import javax.annotation.ParametersAreNonnullByDefault;
 import java.util.EnumSet;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * A rank grants permissions extra permissions on contexts, all ranks must be unique on context bases and
  * the uniqueness must be checked with {@link #normalizedName()}. It also contains an UUID.
+ * <p>A rank can also deny permissions, denied permissions override the public permissions of the context.</p>
  */
 @ParametersAreNonnullByDefault
 @NonnullByDefault
 public class Rank implements Identifiable, Modifiable
 {
+    private static final Optional<Boolean> GRANTED = Optional.of(true);
+    private static final Optional<Boolean> DENIED = Optional.of(false);
+
+    // Changes every time the permissions of any rank changes, the masks compiled from ranks are discarded when it changes
+    private static final AtomicInteger epoch = new AtomicInteger();
+
     private final UUID rankId;
     private String name = "unnamed";
-    private EnumSet<Permission> permissions;
+    private volatile long permissionMask;
     private boolean modified;
 
     public Rank(String name, EnumSet<Permission> permissions)
     {
         rankId = UUID.randomUUID();
         setName(name);
-        this.permissions = permissions;
+        this.permissionMask = Permission.mask(permissions);
+    }
+
+    /**
+     * Construct a rank with granted and denied permissions
+     * @throws IllegalArgumentException If the name is empty or a permission is granted and denied at the same time
+     */
+    public Rank(String name, EnumSet<Permission> granted, EnumSet<Permission> denied) throws IllegalArgumentException
+    {
+        this(UUID.randomUUID(), name, granted, denied);
+    }
+
+    /**
+     * Construct a rank with a specified UUID and denied permissions, this constructor is normally used to load a
+     * persisted rank.
+     * @throws IllegalArgumentException If the name is empty or a permission is granted and denied at the same time
+     */
+    public Rank(UUID rankId, String name, EnumSet<Permission> granted, EnumSet<Permission> denied) throws IllegalArgumentException
+    {
+        this.rankId = rankId;
+        setName(name);
+        long grantMask = Permission.mask(granted), denyMask = Permission.mask(denied);
+        if((grantMask & denyMask) != 0)
+            throw new IllegalArgumentException("Permissions granted and denied at the same time: "+Permission.fromMask(grantMask & denyMask));
+        this.permissionMask = grantMask | denyMask << 32;
+    }
+
+    /**
+     * Construct a rank with a specified UUID, this constructor is normally used to load a persisted rank.
+     * @throws IllegalArgumentException If the name is empty
+     */
+    public Rank(UUID rankId, String name, EnumSet<Permission> permissions) throws IllegalArgumentException
+    {
+        this.rankId = rankId;
+        setName(name);
+        this.permissionMask = Permission.mask(permissions);
     }
 
     public Rank(String name)
     {
         rankId = UUID.randomUUID();
         setName(name);
-        this.permissions = EnumSet.noneOf(Permission.class);
+        this.permissionMask = 0;
     }
 
     /**
      * Checks if this rank grants an specific permission.
      * @param permission The permission to be checked
-     * @return {@code true} if the permission is granted, {@code false} if it's revoked or empty if it's not defined.<br>
-     * Note that this method will never return {@code false} currently but this feature may be implemented in future.
+     * @return {@code true} if the permission is granted, {@code false} if it's denied or empty if it's not defined.
      */
     public Optional<Boolean> getPermission(Permission permission)
     {
-        return permissions.contains(permission)? Optional.of(true) : Optional.empty();
+        long mask = permissionMask;
+        if((mask & permission.mask()) != 0)
+            return GRANTED;
+        if((mask & permission.denyMask()) != 0)
+            return DENIED;
+        return Optional.empty();
+    }
+
+    /**
+     * Grants, denies or removes a permission from this rank
+     * @param permission The permission to be changed
+     * @param value {@link Tristate#UNDEFINED} removes the permission
+     * @return If the rank was changed
+     */
+    public synchronized boolean setPermission(Permission permission, Tristate value)
+    {
+        long mask = permissionMask & ~(permission.mask() | permission.denyMask());
+        if(value != Tristate.UNDEFINED)
+            mask |= value.asBoolean()? permission.mask() : permission.denyMask();
+
+        if(mask == permissionMask)
+            return false;
+
+        permissionMask = mask;
+        modified = true;
+        epoch.incrementAndGet();
+        return true;
+    }
+
+    /**
+     * The permissions granted by this rank as {@link Permission#mask()} bits combined with the permissions denied
+     * by this rank as {@link Permission#denyMask()} bits
+     */
+    public long getPermissionMask()
+    {
+        return permissionMask;
+    }
+
+    /**
+     * Resolves the permissions of all ranks of a player, a permission denied by any rank is denied even if an
+     * other rank grants it
+     * @param ranksMask The {@link #getPermissionMask()} of all ranks combined with OR
+     * @return A mask in the same format as {@link #getPermissionMask()}
+     */
+    public static long resolve(long ranksMask)
+    {
+        long denied = ranksMask & ~Permission.GRANT_BITS;
+        return ranksMask & Permission.GRANT_BITS & ~(denied >>> 32) | denied;
+    }
+
+    /**
+     * A number that changes every time the permissions of any rank are changed, used to detect if a mask compiled
+     * from ranks is outdated
+     */
+    public static int getEpoch()
+    {
+        return epoch.get();
     }
 
     /**
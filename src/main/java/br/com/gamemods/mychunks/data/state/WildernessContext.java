@@ -3,9 +3,33 @@ package br.com.gamemods.mychunks.data.state;
 import org.spongepowered.api.entity.living.player.Player;
 
 import java.util.EnumMap;
+import java.util.UUID;
 
+/**
+ * The permissions of the unclaimed chunks of a world. Nobody has special permissions on the wilderness, so the
+ * effective permissions are the same for all players and are compiled to a single mask.
+ */
 public class WildernessContext extends PublicContext
 {
+    /**
+     * The effective permissions and the state that they were compiled from, never modified after being published
+     */
+    private static final class Effective
+    {
+        private final int revision;
+        private final int defaultsGeneration;
+        private final long mask;
+
+        private Effective(int revision, int defaultsGeneration, long mask)
+        {
+            this.revision = revision;
+            this.defaultsGeneration = defaultsGeneration;
+            this.mask = mask;
+        }
+    }
+
+    private volatile Effective effective = new Effective(-1, -1, 0);
+
     public WildernessContext()
     {
     }
@@ -21,6 +45,48 @@ public class WildernessContext extends PublicContext
         return permission.isAllowedByDefaultOnTheWild();
     }
 
+    /**
+     * The permissions that are allowed on the wilderness with the public permissions of this context and the
+     * {@link Permission#isAllowedByDefaultOnTheWild() wild defaults} already resolved. It's compiled again only after
+     * one of them changes.
+     * @return The {@link Permission#mask()} bits of the allowed permissions
+     */
+    public long getEffectiveMask()
+    {
+        // The generations are read before the state, a change made during the compilation makes the result outdated
+        int defaultsGeneration = Permission.getGeneration();
+        int revision = getRevision();
+        Effective effective = this.effective;
+        if(effective.revision == revision && effective.defaultsGeneration == defaultsGeneration)
+            return effective.mask;
+
+        long publicMask = getPublicPermissionMask();
+        long mask = publicMask & Permission.GRANT_BITS;
+        for(Permission permission: Permission.values())
+            if((publicMask & (permission.mask() | permission.denyMask())) == 0 && permission.isAllowedByDefaultOnTheWild())
+                mask |= permission.mask();
+
+        this.effective = new Effective(revision, defaultsGeneration, mask);
+        return mask;
+    }
+
+    /**
+     * Checks if a permission is allowed on the wilderness, without allocations
+     */
+    public boolean isAllowed(Permission permission)
+    {
+        return (getEffectiveMask() & permission.mask()) != 0;
+    }
+
+    /**
+     * Same result as the inherited check, but answered from {@link #getEffectiveMask()}
+     */
+    @Override
+    public boolean check(Permission permission, UUID playerUniqueId, boolean isAdmin)
+    {
+        return isAllowed(permission);
+    }
+
     @Override
     public void notifyFailure(Permission permission, Player player)
     {
@@ -1,16 +1,50 @@
 package br.com.gamemods.mychunks.data.state;
 
+import com.flowpowered.math.vector.Vector3i;
 import org.spongepowered.api.util.annotation.NonnullByDefault;
 
 import javax.annotation.ParametersAreNonnullByDefault;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+import static br.com.gamemods.mychunks.PositionType.pack;
 
 @NonnullByDefault
 @ParametersAreNonnullByDefault
 public class WorldFallbackContext extends PublicContext
 {
+    /**
+     * The compiled fallback permissions and the state that they were compiled from, never modified after being published
+     */
+    private static final class Fallback
+    {
+        private final int revision;
+        private final int defaultsGeneration;
+        private final long mask;
+
+        private Fallback(int revision, int defaultsGeneration, long mask)
+        {
+            this.revision = revision;
+            this.defaultsGeneration = defaultsGeneration;
+            this.mask = mask;
+        }
+    }
+
     private final UUID worldId;
     private WildernessContext wilderness;
+    private final ZoneIndex zoneIndex = new ZoneIndex();
+    // The claimed chunks that are loaded, published to be read from any thread
+    private final Map<Long, ClaimedChunk> publishedChunks = new ConcurrentHashMap<>();
+    // The loaded chunks whose claim data is still being read from the storage
+    private final Set<Long> pendingChunks = ConcurrentHashMap.newKeySet();
+    private final List<Consumer<ClaimedChunk>> ownerListeners = new CopyOnWriteArrayList<>();
+    private volatile Fallback fallback = new Fallback(-1, -1, 0);
 
     public WorldFallbackContext(UUID worldId)
     {
@@ -23,6 +57,91 @@ public class WorldFallbackContext extends PublicContext
         return wilderness;
     }
 
+    /**
+     * The spatial index of the zones that belongs to this world
+     */
+    public ZoneIndex getZoneIndex()
+    {
+        return zoneIndex;
+    }
+
+    /**
+     * Makes a loaded claimed chunk visible to {@link #getClaimSnapshot(int, int)}, the chunk stops being pending
+     * @throws IllegalArgumentException If the chunk is not from this world
+     */
+    public void publish(ClaimedChunk chunk) throws IllegalArgumentException
+    {
+        if(!chunk.getWorldId().equals(worldId))
+            throw new IllegalArgumentException("The chunk "+chunk.getWorldId()+chunk.getPosition()+" is not part of the world "+worldId);
+        Vector3i position = chunk.getPosition();
+        long chunkKey = pack(position.getX(), position.getZ());
+        // Published before the pending mark is removed, so the readers never see the chunk as wilderness
+        publishedChunks.put(chunkKey, chunk);
+        pendingChunks.remove(chunkKey);
+    }
+
+    /**
+     * Marks a loaded chunk whose claim data is still being read from the storage, it's reported by
+     * {@link #isPending(int, int)} until it's {@link #publish(ClaimedChunk) published} or
+     * {@link #unpublish(int, int) unpublished}
+     */
+    public void markPending(int chunkX, int chunkZ)
+    {
+        pendingChunks.add(pack(chunkX, chunkZ));
+    }
+
+    /**
+     * Removes a chunk that was unloaded or unclaimed from {@link #getClaimSnapshot(int, int)}, also used when a pending
+     * chunk is not claimed or is unloaded before its data is read
+     */
+    public void unpublish(int chunkX, int chunkZ)
+    {
+        long chunkKey = pack(chunkX, chunkZ);
+        publishedChunks.remove(chunkKey);
+        pendingChunks.remove(chunkKey);
+    }
+
+    /**
+     * The permissions of a claimed chunk that is loaded, can be called from any thread without locks
+     * @return Empty if the chunk is not claimed, not loaded or its data is still loading. The {@link #getWilderness()
+     * wilderness} applies to the loaded chunks that are not claimed, but a chunk that is still loading may be claimed,
+     * so readers must check {@link #isPending(int, int)} before granting the wilderness permissions to an empty result.
+     */
+    public Optional<ClaimSnapshot> getClaimSnapshot(int chunkX, int chunkZ)
+    {
+        ClaimedChunk chunk = publishedChunks.get(pack(chunkX, chunkZ));
+        return chunk == null? Optional.empty() : Optional.of(chunk.getSnapshot());
+    }
+
+    /**
+     * Checks if the claim data of a loaded chunk is still being read, can be called from any thread without locks.
+     * The permissions of these chunks are not known yet, they must not be treated as wilderness.
+     */
+    public boolean isPending(int chunkX, int chunkZ)
+    {
+        return !pendingChunks.isEmpty() && pendingChunks.contains(pack(chunkX, chunkZ));
+    }
+
+    /**
+     * Registers a listener that is called after the owner of any chunk of this world changes, on the thread that
+     * changed it. Chunks that are being loaded from the storage are also notified.
+     */
+    public void addOwnerListener(Consumer<ClaimedChunk> listener)
+    {
+        ownerListeners.add(listener);
+    }
+
+    public void removeOwnerListener(Consumer<ClaimedChunk> listener)
+    {
+        ownerListeners.remove(listener);
+    }
+
+    void ownerChanged(ClaimedChunk chunk)
+    {
+        for(Consumer<ClaimedChunk> listener: ownerListeners)
+            listener.accept(chunk);
+    }
+
     public UUID getWorldId()
     {
         return worldId;
@@ -33,4 +152,29 @@ public class WorldFallbackContext extends PublicContext
     {
         return permission.isAllowedByDefault();
     }
+
+    /**
+     * The permissions that apply on the claimed chunks of this world when the chunk, its zone and its members don't
+     * define them: the public permissions of this context with the {@link Permission#isAllowedByDefault() defaults}
+     * resolved. It's compiled again only after one of them changes.
+     * @return A resolved mask that defines every permission, with {@link Permission#mask()} bits for the allowed
+     * permissions and {@link Permission#denyMask()} bits for the denied ones
+     */
+    public long getFallbackMask()
+    {
+        // The generations are read before the state, a change made during the compilation makes the result outdated
+        int defaultsGeneration = Permission.getGeneration();
+        int revision = getRevision();
+        Fallback fallback = this.fallback;
+        if(fallback.revision == revision && fallback.defaultsGeneration == defaultsGeneration)
+            return fallback.mask;
+
+        long mask = 0;
+        for(Permission permission: Permission.values())
+            mask |= permission.isAllowedByDefault()? permission.mask() : permission.denyMask();
+        mask = Permission.merge(getPublicPermissionMask(), mask);
+
+        this.fallback = new Fallback(revision, defaultsGeneration, mask);
+        return mask;
+    }
 }
@@ -1,5 +1,7 @@
 package br.com.gamemods.mychunks.data.state;
 
+import br.com.gamemods.mychunks.ChunkConnectivity;
+import br.com.gamemods.mychunks.ChunkMap;
 import br.com.gamemods.mychunks.Util;
 import com.flowpowered.math.vector.Vector3i;
 import org.spongepowered.api.util.Identifiable;
@@ -8,15 +10,18 @@ import org.spongepowered.api.util.annotation.NonnullByDefault;
 import javax.annotation.Nullable;
 import javax.annotation.ParametersAreNonnullByDefault;
 import javax.naming.InvalidNameException;
-import java.util.HashMap;
-import java.util.Map;
+import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.concurrent.locks.StampedLock;
+import java.util.stream.Collectors;
 
 /**
  * <p>A group of claimed chunks that shares the same fallback permissions</p>
  * <p>Although the name must be unique on the server the identification must be done based on an UUID, the reason is that
  * the name can be changed at any time and it can be overcomplicated to update all references</p>
+ * <p>The chunks are guarded by a read-write lock so they can be queried from any thread while they are changed.
+ * A copy-on-write map is not used because zones are built one chunk at a time and can have thousands of chunks.</p>
  */
 @ParametersAreNonnullByDefault
 @NonnullByDefault
@@ -24,8 +29,9 @@ public class Zone extends OwnedContext implements Identifiable
 {
     private final UUID zoneId;
     private final WorldFallbackContext worldContext;
-    private String name = "unnamed";
-    private Map<Vector3i, ClaimedChunk> chunkMap = new HashMap<>(1);
+    private volatile String name = "unnamed";
+    private final ChunkMap<ClaimedChunk> chunkMap = new ChunkMap<>(1);
+    private final StampedLock lock = new StampedLock();
 
     /**
      * Construct a zone instance with a specified UUID, this constructor is normally used to load a persisted zone.
@@ -50,47 +56,132 @@ public class Zone extends OwnedContext implements Identifiable
 
     public Optional<ClaimedChunk> getChunkAt(Vector3i position)
     {
-        return Optional.ofNullable(chunkMap.get(position));
+        long stamp = lock.readLock();
+        try
+        {
+            return Optional.ofNullable(chunkMap.get(position));
+        }
+        finally
+        {
+            lock.unlockRead(stamp);
+        }
     }
 
-    public boolean isChunkRequired(final Vector3i position)
+    /**
+     * The amount of chunks in this zone
+     */
+    public int getChunkCount()
     {
-        if(chunkMap.size() <= 2 || !chunkMap.containsKey(position))
-            return false;
+        long stamp = lock.readLock();
+        try
+        {
+            return chunkMap.size();
+        }
+        finally
+        {
+            lock.unlockRead(stamp);
+        }
+    }
 
-        lookup:
-        for(Vector3i direction: Util.CARDINAL_DIRECTIONS)
+    /**
+     * Checks if a chunk position is next to any chunk of this zone, diagonal positions are not considered
+     */
+    public boolean isTouching(int chunkX, int chunkZ)
+    {
+        long stamp = lock.readLock();
+        try
+        {
+            return isTouchingUnlocked(chunkX, chunkZ);
+        }
+        finally
         {
-            Vector3i supported = position.add(direction);
-            if(!chunkMap.containsKey(supported))
-                continue;
+            lock.unlockRead(stamp);
+        }
+    }
 
-            for(Vector3i secondDirection: Util.CARDINAL_DIRECTIONS)
-            {
-                Vector3i alternativeSupport = supported.add(secondDirection);
-                if(alternativeSupport.equals(position))
-                    continue;
+    private boolean isTouchingUnlocked(int chunkX, int chunkZ)
+    {
+        return chunkMap.containsKey(chunkX + 1, chunkZ) || chunkMap.containsKey(chunkX - 1, chunkZ)
+                || chunkMap.containsKey(chunkX, chunkZ + 1) || chunkMap.containsKey(chunkX, chunkZ - 1);
+    }
 
-                if(chunkMap.containsKey(alternativeSupport))
-                    continue lookup;
-            }
+    /**
+     * Checks if any chunk of this zone is inside a rectangle of chunks, the coordinates are inclusive
+     */
+    public boolean hasChunkInside(int minChunkX, int minChunkZ, int maxChunkX, int maxChunkZ)
+    {
+        long stamp = lock.readLock();
+        try
+        {
+            return hasChunkInsideUnlocked(minChunkX, minChunkZ, maxChunkX, maxChunkZ);
+        }
+        finally
+        {
+            lock.unlockRead(stamp);
+        }
+    }
 
-            return true;
+    private boolean hasChunkInsideUnlocked(int minChunkX, int minChunkZ, int maxChunkX, int maxChunkZ)
+    {
+        long area = (long) (maxChunkX - minChunkX + 1) * (maxChunkZ - minChunkZ + 1);
+        if(area > chunkMap.size())
+        {
+            for(ClaimedChunk chunk: chunkMap.values())
+            {
+                Vector3i position = chunk.getPosition();
+                if(position.getX() >= minChunkX && position.getX() <= maxChunkX
+                        && position.getZ() >= minChunkZ && position.getZ() <= maxChunkZ)
+                    return true;
+            }
+            return false;
         }
 
+        for(int x = minChunkX; x <= maxChunkX; x++)
+            for(int z = minChunkZ; z <= maxChunkZ; z++)
+                if(chunkMap.containsKey(x, z))
+                    return true;
         return false;
     }
 
+    /**
+     * Checks if a chunk can't be removed because the other chunks of this zone would be split in disconnected parts
+     * @see ChunkConnectivity
+     */
+    public boolean isChunkRequired(final Vector3i position)
+    {
+        long stamp = lock.readLock();
+        try
+        {
+            return ChunkConnectivity.isSplitByRemoval(chunkMap, position.getX(), position.getZ());
+        }
+        finally
+        {
+            lock.unlockRead(stamp);
+        }
+    }
+
     public void removeChunkAt(Vector3i position) throws IllegalArgumentException
     {
-        if(isChunkRequired(position))
-            throw new IllegalArgumentException("The chunk "+position+" is required by an other chunk");
+        ClaimedChunk removed;
+        long stamp = lock.writeLock();
+        try
+        {
+            if(ChunkConnectivity.isSplitByRemoval(chunkMap, position.getX(), position.getZ()))
+                throw new IllegalArgumentException("The chunk "+position+" is required by an other chunk");
 
-        ClaimedChunk removed = chunkMap.remove(position);
+            removed = chunkMap.remove(position);
+        }
+        finally
+        {
+            lock.unlockWrite(stamp);
+        }
+
+        // The lock is not reentrant and is never held while other objects are locked
         if(removed != null)
         {
+            worldContext.getZoneIndex().remove(this, position.getX(), position.getZ());
             removed.setZone(null);
-            modified = true;
+            changed();
         }
     }
 
@@ -110,33 +201,31 @@ public class Zone extends OwnedContext implements Identifiable
         if(zone != null)
             zone.removeChunkAt(addedPosition);
 
-        check:
-        if(!chunkMap.isEmpty())
+        long stamp = lock.writeLock();
+        try
         {
-            chunkIteration:
-            for(Vector3i position: chunkMap.keySet())
-            {
-                int[] ints = addedPosition.sub(position).toArray();
-                boolean one = false;
-                for(int i: ints)
-                    if(i == 1 || i == -1)
-                    {
-                        // Diagonal
-                        if(one) continue chunkIteration;
-                            // Cross
-                        else one = true;
-                    }
-
-                if(one)
-                    break check;
-            }
+            if(!chunkMap.isEmpty() && !isTouchingUnlocked(addedPosition.getX(), addedPosition.getZ()))
+                throw new IllegalArgumentException("The chunk "+addedPosition+" is not touching any chunk of the zone "+name);
 
-            throw new IllegalArgumentException("The chunk "+addedPosition+" is not touching any of these chunks: "+chunkMap.keySet());
+            chunkMap.put(addedPosition, chunk);
+        }
+        finally
+        {
+            lock.unlockWrite(stamp);
         }
 
-        chunkMap.put(addedPosition, chunk);
+        worldContext.getZoneIndex().add(this, addedPosition.getX(), addedPosition.getZ());
         chunk.setZone(this);
-        modified = true;
+        changed();
+    }
+
+    /**
+     * The revision of the world
+     */
+    @Override
+    protected long getInheritedRevision()
+    {
+        return worldContext.getRevision();
     }
 
     public UUID getWorldId()
@@ -160,7 +249,7 @@ public class Zone extends OwnedContext implements Identifiable
      * @return The name that was actually set.
      * @throws IllegalArgumentException If the name is empty or contains only empty characters
      */
-    public String setValidName(String name) throws IllegalArgumentException
+    public synchronized String setValidName(String name) throws IllegalArgumentException
     {
         String valid = name.trim();
         if(valid.isEmpty())
@@ -174,7 +263,7 @@ public class Zone extends OwnedContext implements Identifiable
         return valid;
     }
 
-    public void setName(String name) throws InvalidNameException
+    public synchronized void setName(String name) throws InvalidNameException
     {
         if(!name.trim().equals(name)) throw new InvalidNameException("Name has trailing or leading whitespace");
         String normalized = Util.normalizeIdentifier(name);
@@ -192,7 +281,18 @@ public class Zone extends OwnedContext implements Identifiable
     @Override
     public void setOwner(@Nullable PlayerName owner) throws UnsupportedOperationException
     {
-        chunkMap.values().stream().filter(ClaimedChunk::isIntegratedToTheZone).forEach(chunk -> chunk.setOwner(owner));
+        List<ClaimedChunk> integrated;
+        long stamp = lock.readLock();
+        try
+        {
+            integrated = chunkMap.values().stream().filter(ClaimedChunk::isIntegratedToTheZone).collect(Collectors.toList());
+        }
+        finally
+        {
+            lock.unlockRead(stamp);
+        }
+
+        integrated.forEach(chunk -> chunk.setOwner(owner));
         super.setOwner(owner);
     }
 }
@@ -0,0 +1,136 @@
+package br.com.gamemods.mychunks.data.state;
+
+import br.com.gamemods.mychunks.ChunkMap;
+import br.com.gamemods.mychunks.Util;
+import org.spongepowered.api.util.annotation.NonnullByDefault;
+
+import javax.annotation.ParametersAreNonnullByDefault;
+import java.util.*;
+
+import static br.com.gamemods.mychunks.PositionType.*;
+
+/**
+ * <p>A spatial index of the zones of a world keyed by region, it answers which zones have chunks inside an area
+ * without scanning every zone of the world.</p>
+ * <p>Each region keeps how many chunks each zone has inside it, a query visits only the regions that intersects the
+ * area. Regions that are fully covered by the area are answered directly from the index, the regions on the edges
+ * of the area checks the chunks of the candidate zones that are inside the area.</p>
+ * <p>The index is updated by {@link Zone} when chunks are added or removed, all methods are synchronized so it can be
+ * queried from any thread.</p>
+ */
+@ParametersAreNonnullByDefault
+@NonnullByDefault
+public class ZoneIndex
+{
+    private final ChunkMap<Map<Zone, Integer>> regions = new ChunkMap<>();
+
+    synchronized void add(Zone zone, int chunkX, int chunkZ)
+    {
+        long regionKey = Util.chunkToRegionKey(chunkX, chunkZ);
+        Map<Zone, Integer> zones = regions.get(regionKey);
+        if(zones == null)
+            regions.put(regionKey, zones = new HashMap<>(2));
+        zones.merge(zone, 1, Integer::sum);
+    }
+
+    synchronized void remove(Zone zone, int chunkX, int chunkZ)
+    {
+        long regionKey = Util.chunkToRegionKey(chunkX, chunkZ);
+        Map<Zone, Integer> zones = regions.get(regionKey);
+        if(zones == null)
+            return;
+
+        Integer count = zones.get(zone);
+        if(count == null)
+            return;
+
+        if(count > 1)
+            zones.put(zone, count - 1);
+        else
+        {
+            zones.remove(zone);
+            if(zones.isEmpty())
+                regions.remove(regionKey);
+        }
+    }
+
+    /**
+     * A snapshot of the zones that have at least one chunk inside a region
+     */
+    public synchronized Set<Zone> getZonesInRegion(int regionX, int regionZ)
+    {
+        Map<Zone, Integer> zones = regions.get(regionX, regionZ);
+        return zones == null? Collections.emptySet() : Collections.unmodifiableSet(new HashSet<>(zones.keySet()));
+    }
+
+    /**
+     * The zones that have at least one chunk inside a rectangle of chunks
+     * @param minChunkX The smallest chunk X coordinate of the area, inclusive
+     * @param minChunkZ The smallest chunk Z coordinate of the area, inclusive
+     * @param maxChunkX The biggest chunk X coordinate of the area, inclusive
+     * @param maxChunkZ The biggest chunk Z coordinate of the area, inclusive
+     * @return A new set that can be modified by the caller
+     * @throws IllegalArgumentException If a min coordinate is bigger than the max coordinate
+     */
+    public synchronized Set<Zone> getZonesIntersecting(int minChunkX, int minChunkZ, int maxChunkX, int maxChunkZ)
+            throws IllegalArgumentException
+    {
+        if(minChunkX > maxChunkX || minChunkZ > maxChunkZ)
+            throw new IllegalArgumentException("Invalid area: "+minChunkX+","+minChunkZ+" to "+maxChunkX+","+maxChunkZ);
+
+        Set<Zone> result = new HashSet<>();
+        if(regions.isEmpty())
+            return result;
+
+        int minRegionX = minChunkX >> 5, minRegionZ = minChunkZ >> 5;
+        int maxRegionX = maxChunkX >> 5, maxRegionZ = maxChunkZ >> 5;
+        long regionCount = (long) (maxRegionX - minRegionX + 1) * (maxRegionZ - minRegionZ + 1);
+
+        // Huge areas with few indexed regions are cheaper to answer by visiting the index instead of the area
+        if(regionCount > regions.size())
+        {
+            regions.forEachEntry((regionKey, zones) -> {
+                int regionX = unpackX(regionKey), regionZ = unpackZ(regionKey);
+                if(regionX >= minRegionX && regionX <= maxRegionX && regionZ >= minRegionZ && regionZ <= maxRegionZ)
+                    collect(result, zones, regionX, regionZ, minChunkX, minChunkZ, maxChunkX, maxChunkZ);
+            });
+        }
+        else
+        {
+            for(int regionX = minRegionX; regionX <= maxRegionX; regionX++)
+                for(int regionZ = minRegionZ; regionZ <= maxRegionZ; regionZ++)
+                {
+                    Map<Zone, Integer> zones = regions.get(pack(regionX, regionZ));
+                    if(zones != null)
+                        collect(result, zones, regionX, regionZ, minChunkX, minChunkZ, maxChunkX, maxChunkZ);
+                }
+        }
+
+        return result;
+    }
+
+    private static void collect(Set<Zone> result, Map<Zone, Integer> zones, int regionX, int regionZ,
+                                int minChunkX, int minChunkZ, int maxChunkX, int maxChunkZ)
+    {
+        int fromX = Math.max(minChunkX, regionX << 5), toX = Math.min(maxChunkX, (regionX << 5) + 31);
+        int fromZ = Math.max(minChunkZ, regionZ << 5), toZ = Math.min(maxChunkZ, (regionZ << 5) + 31);
+        boolean fullyCovered = toX - fromX == 31 && toZ - fromZ == 31;
+
+        for(Zone zone: zones.keySet())
+        {
+            if(result.contains(zone))
+                continue;
+
+            if(fullyCovered || zone.hasChunkInside(fromX, fromZ, toX, toZ))
+                result.add(zone);
+        }
+    }
+
+    /**
+     * Checks if the index has any zone
+     */
+    public synchronized boolean isEmpty()
+    {
+        return regions.isEmpty();
+    }
+}
@@ -0,0 +1,65 @@
+package br.com.gamemods.mychunks.test;
+
+import br.com.gamemods.mychunks.BulkChangeEvaluator;
+import org.junit.Test;
+
+import java.util.BitSet;
+import java.util.HashSet;
+import java.util.Set;
+
+import static br.com.gamemods.mychunks.PositionType.pack;
+import static org.junit.Assert.*;
+
+public class BulkChangeEvaluatorTest
+{
+    private final BulkChangeEvaluator evaluator = new BulkChangeEvaluator();
+    private final BitSet denied = new BitSet();
+
+    @Test
+    public void testEachChunkOnce() throws Exception
+    {
+        long allowedChunk = pack(0, 0), deniedChunk = pack(-1, 5);
+        long[] keys = evaluator.keyBuffer(1000);
+        for(int i = 0; i < 1000; i++)
+            keys[i] = i % 3 == 0? deniedChunk : allowedChunk;
+
+        Set<Long> tested = new HashSet<>();
+        int result = evaluator.evaluate(keys, 1000, key -> {
+            assertTrue("The chunk was evaluated twice", tested.add(key));
+            return key == allowedChunk;
+        }, denied, false);
+
+        assertEquals(334, result);
+        assertEquals(334, denied.cardinality());
+        assertEquals(2, evaluator.getEvaluatedChunks());
+        assertEquals(deniedChunk, evaluator.getFirstDeniedChunk());
+        for(int i = 0; i < 1000; i++)
+            assertEquals(i % 3 == 0, denied.get(i));
+    }
+
+    @Test
+    public void testStopOnDenial() throws Exception
+    {
+        long[] keys = evaluator.keyBuffer(4);
+        keys[0] = pack(0, 0);
+        keys[1] = pack(1, 0);
+        keys[2] = pack(2, 0);
+        keys[3] = pack(1, 0);
+
+        assertEquals(1, evaluator.evaluate(keys, 4, key -> key != pack(1, 0), denied, true));
+        assertEquals(pack(1, 0), evaluator.getFirstDeniedChunk());
+        assertEquals(2, evaluator.getEvaluatedChunks());
+        assertTrue(denied.get(1));
+        assertEquals(1, denied.cardinality());
+    }
+
+    @Test
+    public void testDecisionsAreNotReused() throws Exception
+    {
+        long[] keys = evaluator.keyBuffer(1);
+        keys[0] = pack(3, 3);
+        assertEquals(1, evaluator.evaluate(keys, 1, key -> false, denied, false));
+        assertEquals(0, evaluator.evaluate(keys, 1, key -> true, denied, false));
+        assertTrue(denied.isEmpty());
+    }
+}
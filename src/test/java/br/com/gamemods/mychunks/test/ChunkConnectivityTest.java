@@ -0,0 +1,133 @@
+package br.com.gamemods.mychunks.test;
+
+import br.com.gamemods.mychunks.ChunkMap;
+import org.junit.Test;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static br.com.gamemods.mychunks.ChunkConnectivity.isSplitByRemoval;
+import static br.com.gamemods.mychunks.PositionType.*;
+import static org.junit.Assert.*;
+
+public class ChunkConnectivityTest
+{
+    private static ChunkMap<Boolean> shape(String... rows)
+    {
+        ChunkMap<Boolean> chunks = new ChunkMap<>();
+        for(int z = 0; z < rows.length; z++)
+            for(int x = 0; x < rows[z].length(); x++)
+                if(rows[z].charAt(x) == '#')
+                    chunks.put(x, z, true);
+        return chunks;
+    }
+
+    @Test
+    public void testLine() throws Exception
+    {
+        ChunkMap<Boolean> line = shape("#####");
+        assertFalse(isSplitByRemoval(line, 0, 0));
+        assertTrue(isSplitByRemoval(line, 1, 0));
+        assertTrue(isSplitByRemoval(line, 2, 0));
+        assertFalse(isSplitByRemoval(line, 4, 0));
+        assertFalse("Not part of the group", isSplitByRemoval(line, 2, 1));
+    }
+
+    @Test
+    public void testLoop() throws Exception
+    {
+        ChunkMap<Boolean> loop = shape(
+                "#####",
+                "#...#",
+                "#...#",
+                "#####"
+        );
+        for(int x = 0; x < 5; x++)
+            assertFalse(isSplitByRemoval(loop, x, 0));
+        assertFalse(isSplitByRemoval(loop, 0, 2));
+    }
+
+    @Test
+    public void testLocalRing() throws Exception
+    {
+        ChunkMap<Boolean> square = shape(
+                "###",
+                "###",
+                "###"
+        );
+        assertFalse(isSplitByRemoval(square, 1, 1));
+
+        ChunkMap<Boolean> cross = shape(
+                ".#.",
+                "###",
+                ".#."
+        );
+        assertTrue(isSplitByRemoval(cross, 1, 1));
+    }
+
+    @Test
+    public void testHourglass() throws Exception
+    {
+        ChunkMap<Boolean> hourglass = shape(
+                "#####",
+                "..#..",
+                "#####"
+        );
+        assertTrue(isSplitByRemoval(hourglass, 2, 1));
+        assertTrue(isSplitByRemoval(hourglass, 2, 0));
+        assertFalse(isSplitByRemoval(hourglass, 0, 0));
+    }
+
+    @Test
+    public void testRandomShapes() throws Exception
+    {
+        Random random = new Random(5);
+        for(int round = 0; round < 200; round++)
+        {
+            ChunkMap<Boolean> chunks = new ChunkMap<>();
+            List<Long> keys = new ArrayList<>();
+            chunks.put(0L, true);
+            keys.add(0L);
+            int size = 2 + random.nextInt(60);
+            while(chunks.size() < size)
+            {
+                long base = keys.get(random.nextInt(keys.size()));
+                int x = unpackX(base) + random.nextInt(3) - 1, z = unpackZ(base);
+                if(x == unpackX(base))
+                    z += random.nextInt(3) - 1;
+                if(chunks.put(x, z, true) == null)
+                    keys.add(pack(x, z));
+            }
+
+            for(long key: keys)
+                assertEquals("Round "+round+" chunk "+unpack(key),
+                        !isConnectedWithout(chunks, key), isSplitByRemoval(chunks, unpackX(key), unpackZ(key)));
+        }
+    }
+
+    private static boolean isConnectedWithout(ChunkMap<Boolean> chunks, long removed)
+    {
+        ChunkMap<Boolean> visited = new ChunkMap<>();
+        ArrayDeque<Long> queue = new ArrayDeque<>();
+        chunks.forEachEntry((key, value) -> {
+            if(key != removed && queue.isEmpty())
+            {
+                queue.add(key);
+                visited.put(key, true);
+            }
+        });
+
+        while(!queue.isEmpty())
+        {
+            long key = queue.poll();
+            int x = unpackX(key), z = unpackZ(key);
+            for(long next: new long[]{pack(x + 1, z), pack(x - 1, z), pack(x, z + 1), pack(x, z - 1)})
+                if(next != removed && chunks.containsKey(next) && visited.put(next, true) == null)
+                    queue.add(next);
+        }
+
+        return visited.size() == chunks.size() - 1;
+    }
+}
@@ -0,0 +1,119 @@
+package br.com.gamemods.mychunks.test;
+
+import br.com.gamemods.mychunks.ChunkMap;
+import com.flowpowered.math.vector.Vector3i;
+import org.junit.Test;
+
+import java.util.*;
+
+import static br.com.gamemods.mychunks.PositionType.*;
+import static org.junit.Assert.*;
+
+public class ChunkMapTest
+{
+    @Test
+    public void testPack() throws Exception
+    {
+        int[] values = {0, 1, -1, 374, -568, Integer.MAX_VALUE, Integer.MIN_VALUE};
+        for(int x: values)
+            for(int z: values)
+            {
+                long packed = pack(x, z);
+                assertEquals(x, unpackX(packed));
+                assertEquals(z, unpackZ(packed));
+                assertEquals(new Vector3i(x, 0, z), unpack(packed));
+            }
+    }
+
+    @Test
+    public void testPrimitiveAccess() throws Exception
+    {
+        ChunkMap<String> map = new ChunkMap<>();
+        assertNull(map.put(380, -568, "a"));
+        assertEquals("a", map.put(380, -568, "b"));
+        assertEquals("b", map.get(380, -568));
+        assertEquals("b", map.get(pack(380, -568)));
+        assertNull(map.get(-568, 380));
+        assertEquals(1, map.size());
+
+        assertEquals("b", map.remove(380, -568));
+        assertNull(map.remove(380, -568));
+        assertTrue(map.isEmpty());
+    }
+
+    @Test
+    public void testMapView() throws Exception
+    {
+        ChunkMap<String> map = new ChunkMap<>();
+        Vector3i position = new Vector3i(5, 0, 9);
+        map.put(position, "chunk");
+        assertEquals("chunk", map.get(position));
+        assertEquals("chunk", map.get(5, 9));
+        assertNull(map.get(new Vector3i(5, 1, 9)));
+        assertEquals(Collections.singletonMap(position, "chunk"), map);
+        assertEquals(Collections.singleton(position), map.keySet());
+
+        try
+        {
+            map.put(new Vector3i(5, 3, 9), "section");
+            throw new AssertionError("Accepted a position with height");
+        }
+        catch (IllegalArgumentException ignored)
+        {}
+
+        assertEquals("chunk", map.remove(position));
+        assertTrue(map.isEmpty());
+    }
+
+    @Test
+    public void testAgainstHashMap() throws Exception
+    {
+        Random random = new Random(42);
+        ChunkMap<Integer> map = new ChunkMap<>();
+        Map<Vector3i, Integer> expected = new HashMap<>();
+
+        for(int i = 0; i < 50000; i++)
+        {
+            Vector3i key = new Vector3i(random.nextInt(200) - 100, 0, random.nextInt(200) - 100);
+            if(random.nextInt(3) == 0)
+                assertEquals(expected.remove(key), map.remove(key));
+            else
+                assertEquals(expected.put(key, i), map.put(key, i));
+        }
+
+        assertEquals(expected.size(), map.size());
+        assertEquals(expected, map);
+        assertEquals(expected, new HashMap<>(map));
+    }
+
+    @Test
+    public void testIteratorRemoval() throws Exception
+    {
+        Random random = new Random(7);
+        ChunkMap<Integer> map = new ChunkMap<>();
+        Map<Vector3i, Integer> expected = new HashMap<>();
+        for(int i = 0; i < 5000; i++)
+        {
+            Vector3i key = new Vector3i(random.nextInt(100), 0, random.nextInt(100));
+            map.put(key, i);
+            expected.put(key, i);
+        }
+
+        Set<Vector3i> original = new HashSet<>(expected.keySet());
+        Set<Vector3i> visited = new HashSet<>();
+        Iterator<Map.Entry<Vector3i, Integer>> iterator = map.entrySet().iterator();
+        while(iterator.hasNext())
+        {
+            Map.Entry<Vector3i, Integer> entry = iterator.next();
+            assertTrue("Visited twice: "+entry.getKey(), visited.add(entry.getKey()));
+            if(entry.getValue() % 2 == 0)
+            {
+                iterator.remove();
+                expected.remove(entry.getKey());
+            }
+        }
+
+        assertEquals(original, visited);
+        assertEquals(expected, map);
+    }
+}
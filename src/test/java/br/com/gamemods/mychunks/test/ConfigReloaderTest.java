@@ -0,0 +1,155 @@
+package br.com.gamemods.mychunks.test;
+
+import br.com.gamemods.mychunks.ConfigReloader;
+import br.com.gamemods.mychunks.data.state.Permission;
+import br.com.gamemods.mychunks.data.state.WorldFallbackContext;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.slf4j.LoggerFactory;
+import org.spongepowered.api.util.Tristate;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.*;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static br.com.gamemods.mychunks.data.state.Permission.ENTER;
+import static br.com.gamemods.mychunks.data.state.Permission.MODIFY;
+import static org.junit.Assert.*;
+
+public class ConfigReloaderTest
+{
+    private static final Executor DIRECT = Runnable::run;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final AtomicLong time = new AtomicLong(1_000_000);
+    private Path configDir;
+    private WorldFallbackContext worldContext;
+    private Map<UUID, WorldFallbackContext> loadedWorlds;
+    private ConfigReloader reloader;
+
+    @Before
+    public void setUp() throws Exception
+    {
+        configDir = folder.getRoot().toPath();
+        worldContext = new WorldFallbackContext(UUID.randomUUID());
+        loadedWorlds = new HashMap<>();
+        loadedWorlds.put(worldContext.getWorldId(), worldContext);
+        reloader = new ConfigReloader(configDir, DIRECT, DIRECT,
+                worldId -> Optional.ofNullable(loadedWorlds.get(worldId)), LoggerFactory.getLogger(getClass()));
+    }
+
+    @After
+    public void tearDown() throws Exception
+    {
+        reloader.close();
+        for(Permission permission: Permission.values())
+        {
+            permission.setAllowedByDefault(permission.isBuiltInAllowedByDefault());
+            permission.setAllowedByDefaultOnTheWild(permission.isBuiltInAllowedOnTheWild());
+        }
+    }
+
+    private void write(Path file, String content) throws Exception
+    {
+        Files.createDirectories(file.getParent());
+        Files.write(file, content.getBytes(StandardCharsets.UTF_8));
+        // The file system may not notice two writes done on the same millisecond
+        Files.setLastModifiedTime(file, FileTime.fromMillis(time.addAndGet(1000)));
+    }
+
+    @Test
+    public void testReloadDefaults() throws Exception
+    {
+        Path file = configDir.resolve(ConfigReloader.DEFAULT_PERMISSIONS_FILE);
+        write(file, "fallback { modify = true }\ndefault-world-permissions { enter = false }\n");
+        reloader.defaultsLoaded();
+        assertEquals(Collections.emptyList(), reloader.reload().get());
+
+        write(file, "fallback { modify = true }\ndefault-world-permissions { enter = false }\n");
+        int generation = Permission.getGeneration();
+        assertEquals(Collections.singletonList(file), reloader.reload().get());
+        assertTrue(MODIFY.isAllowedByDefault());
+        assertFalse(ENTER.isAllowedByDefaultOnTheWild());
+        assertNotEquals(generation, Permission.getGeneration());
+
+        // Removed values go back to the built-in defaults
+        write(file, "fallback {}\n");
+        assertEquals(1, reloader.reload().get().size());
+        assertEquals(MODIFY.isBuiltInAllowedByDefault(), MODIFY.isAllowedByDefault());
+        assertEquals(ENTER.isBuiltInAllowedOnTheWild(), ENTER.isAllowedByDefaultOnTheWild());
+
+        generation = Permission.getGeneration();
+        assertEquals(Collections.emptyList(), reloader.reload().get());
+        assertEquals(generation, Permission.getGeneration());
+    }
+
+    @Test
+    public void testReloadWorld() throws Exception
+    {
+        Path file = reloader.getWorldFile("My World");
+        assertEquals("My_World.conf", file.getFileName().toString());
+        write(file, "fallback-permissions { modify = true }\n");
+        worldContext.setPublicPermission(MODIFY, Tristate.TRUE);
+        reloader.register(file, worldContext.getWorldId());
+
+        write(file, "fallback-permissions { enter = false }\nwild-permissions { modify = false, enter = \"x\" }\n");
+        int revision = worldContext.getRevision();
+        List<Path> reloaded = reloader.reload().get();
+        assertEquals(Collections.singletonList(file.toAbsolutePath().normalize()), reloaded);
+        assertEquals(Optional.empty(), worldContext.getPublicPermission(MODIFY));
+        assertEquals(Optional.of(false), worldContext.getPublicPermission(ENTER));
+        assertEquals(Optional.of(false), worldContext.getWilderness().getPublicPermission(MODIFY));
+        assertEquals(Optional.empty(), worldContext.getWilderness().getPublicPermission(ENTER));
+        assertNotEquals(revision, worldContext.getRevision());
+        assertFalse(worldContext.isModified());
+
+        // Unregistered and unknown files are ignored
+        reloader.unregister(worldContext.getWorldId());
+        write(file, "fallback-permissions {}\n");
+        Path unknown = configDir.resolve("unknown.conf");
+        write(unknown, "fallback { modify = true }\n");
+        assertEquals(Collections.emptyList(), reloader.reload(Arrays.asList(file, unknown)).get());
+        assertEquals(Optional.of(false), worldContext.getPublicPermission(ENTER));
+    }
+
+    @Test
+    public void testInvalidFileKeepsValues() throws Exception
+    {
+        Path file = reloader.getWorldFile("world");
+        write(file, "fallback-permissions { modify = true }\n");
+        worldContext.setPublicPermission(MODIFY, Tristate.TRUE);
+        reloader.register(file, worldContext.getWorldId());
+
+        write(file, "fallback-permissions { modify = \n");
+        assertEquals(Collections.emptyList(), reloader.reload().get());
+        assertEquals(Optional.of(true), worldContext.getPublicPermission(MODIFY));
+    }
+
+    @Test
+    public void testSkippedChangeIsReadAgain() throws Exception
+    {
+        Path file = reloader.getWorldFile("world");
+        write(file, "fallback-permissions {}\n");
+        reloader.register(file, worldContext.getWorldId());
+
+        // The world context is not available when the change is applied
+        loadedWorlds.clear();
+        write(file, "fallback-permissions { modify = true }\n");
+        assertEquals(Collections.emptyList(), reloader.reload().get());
+        assertEquals(Optional.empty(), worldContext.getPublicPermission(MODIFY));
+
+        loadedWorlds.put(worldContext.getWorldId(), worldContext);
+        assertEquals(1, reloader.reload().get().size());
+        assertEquals(Optional.of(true), worldContext.getPublicPermission(MODIFY));
+        assertEquals(Collections.emptyList(), reloader.reload().get());
+    }
+}
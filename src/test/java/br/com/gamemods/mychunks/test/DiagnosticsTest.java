@@ -0,0 +1,47 @@
+package br.com.gamemods.mychunks.test;
+
+import br.com.gamemods.mychunks.Diagnostics;
+import br.com.gamemods.mychunks.Diagnostics.Outcome;
+import org.junit.Test;
+import org.slf4j.LoggerFactory;
+
+import static org.junit.Assert.*;
+
+public class DiagnosticsTest
+{
+    private final Diagnostics diagnostics = new Diagnostics(LoggerFactory.getLogger(DiagnosticsTest.class));
+
+    @Test
+    public void testCounters() throws Exception
+    {
+        diagnostics.count(Outcome.CHANGE_ALLOWED);
+        assertEquals("Nothing is counted while disabled", 0, diagnostics.get(Outcome.CHANGE_ALLOWED));
+
+        diagnostics.setEnabled(true);
+        diagnostics.count(Outcome.CHANGE_ALLOWED);
+        diagnostics.count(Outcome.CHANGE_ALLOWED);
+        diagnostics.count(Outcome.CLAIM_LOADED);
+        assertEquals(2, diagnostics.get(Outcome.CHANGE_ALLOWED));
+        assertEquals(1L, (long) diagnostics.snapshot().get(Outcome.CLAIM_LOADED));
+        assertEquals(0L, (long) diagnostics.snapshot().get(Outcome.CHANGE_CANCELLED));
+
+        diagnostics.reset();
+        assertEquals(0, diagnostics.get(Outcome.CHANGE_ALLOWED));
+    }
+
+    @Test
+    public void testTraceRateLimit() throws Exception
+    {
+        assertFalse(diagnostics.shouldTrace());
+
+        diagnostics.setTracing(true);
+        diagnostics.setTraceLimit(5);
+        int traced = 0;
+        for(int i = 0; i < 100; i++)
+            if(diagnostics.shouldTrace())
+                traced++;
+
+        // The loop may cross a window boundary on a slow machine
+        assertTrue(traced >= 5 && traced <= 10);
+    }
+}
@@ -0,0 +1,136 @@
+package br.com.gamemods.mychunks.test;
+
+import br.com.gamemods.mychunks.EnterGuard;
+import br.com.gamemods.mychunks.data.state.*;
+import com.flowpowered.math.vector.Vector3i;
+import org.junit.Before;
+import org.junit.Test;
+import org.spongepowered.api.util.Tristate;
+
+import java.util.EnumSet;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import static br.com.gamemods.mychunks.PositionType.pack;
+import static org.junit.Assert.*;
+
+public class EnterGuardTest
+{
+    private WorldFallbackContext worldContext;
+    private ClaimedChunk chunk;
+    private EnterGuard guard;
+    private UUID player;
+    private AtomicInteger adminChecks;
+    private BooleanSupplier isAdmin;
+
+    @Before
+    public void setUp() throws Exception
+    {
+        worldContext = new WorldFallbackContext(UUID.randomUUID());
+        chunk = new ClaimedChunk(worldContext, new Vector3i(2, 0, -3));
+        chunk.setOwner(new PlayerName(UUID.randomUUID(), "Owner"));
+        chunk.setPublicPermission(Permission.ENTER, Tristate.FALSE);
+        worldContext.publish(chunk);
+
+        guard = new EnterGuard();
+        player = UUID.randomUUID();
+        adminChecks = new AtomicInteger();
+        isAdmin = () -> {
+            adminChecks.incrementAndGet();
+            return false;
+        };
+    }
+
+    @Test
+    public void testCrossing() throws Exception
+    {
+        assertFalse(EnterGuard.isCrossing(0, 0, 15, 15));
+        assertFalse(EnterGuard.isCrossing(-1, -16, -16, -1));
+        assertTrue(EnterGuard.isCrossing(15, 0, 16, 0));
+        assertTrue(EnterGuard.isCrossing(0, 0, -1, 0));
+        assertTrue(EnterGuard.isCrossing(0, -16, 0, -17));
+    }
+
+    @Test
+    public void testCachedDecision() throws Exception
+    {
+        long claimed = pack(2, -3);
+        assertFalse(guard.canEnter(player, worldContext, claimed, isAdmin));
+        assertTrue(guard.shouldNotify(player));
+        assertFalse(guard.canEnter(player, worldContext, claimed, isAdmin));
+        assertFalse("Notified only once", guard.shouldNotify(player));
+        assertEquals("The repeated attempt was cached", 1, adminChecks.get());
+
+        assertTrue("Wilderness", guard.canEnter(player, worldContext, pack(3, -3), isAdmin));
+        assertFalse(guard.shouldNotify(player));
+        assertEquals("Admins have no bypass on the wilderness", 1, adminChecks.get());
+
+        chunk.addMember(new Member(new PlayerName(player, "Player"), new Rank("guest", EnumSet.of(Permission.ENTER))));
+        assertTrue("The chunk changed", guard.canEnter(player, worldContext, claimed, isAdmin));
+        assertEquals(2, adminChecks.get());
+    }
+
+    @Test
+    public void testWildernessChange() throws Exception
+    {
+        long wild = pack(100, 100);
+        assertTrue(guard.canEnter(player, worldContext, wild, isAdmin));
+        worldContext.getWilderness().setPublicPermission(Permission.ENTER, Tristate.FALSE);
+        assertFalse(guard.canEnter(player, worldContext, wild, isAdmin));
+
+        worldContext.getWilderness().setPublicPermission(Permission.ENTER, Tristate.UNDEFINED);
+        assertTrue(guard.canEnter(player, worldContext, wild, isAdmin));
+        Permission.ENTER.setAllowedByDefaultOnTheWild(false);
+        try
+        {
+            assertFalse("The wild defaults changed", guard.canEnter(player, worldContext, wild, isAdmin));
+        }
+        finally
+        {
+            Permission.ENTER.setAllowedByDefaultOnTheWild(true);
+        }
+
+        WorldFallbackContext otherWorld = new WorldFallbackContext(UUID.randomUUID());
+        assertTrue("Same chunk on other world", guard.canEnter(player, otherWorld, wild, isAdmin));
+    }
+
+    @Test
+    public void testDefaultClaim() throws Exception
+    {
+        ClaimedChunk claim = new ClaimedChunk(worldContext, new Vector3i(7, 0, 7));
+        claim.setOwner(new PlayerName(UUID.randomUUID(), "Other Owner"));
+        worldContext.publish(claim);
+        long claimed = pack(7, 7);
+        assertTrue("ENTER is allowed by default", guard.canEnter(player, worldContext, claimed, isAdmin));
+        assertTrue(claim.check(Permission.ENTER, player, false));
+        assertFalse(claim.check(Permission.MODIFY, player, false));
+
+        worldContext.setPublicPermission(Permission.ENTER, Tristate.FALSE);
+        assertFalse("The world fallback changed", guard.canEnter(player, worldContext, claimed, isAdmin));
+        worldContext.setPublicPermission(Permission.ENTER, Tristate.UNDEFINED);
+        assertTrue(guard.canEnter(player, worldContext, claimed, isAdmin));
+
+        Permission.ENTER.setAllowedByDefault(false);
+        try
+        {
+            assertFalse("The defaults changed", guard.canEnter(player, worldContext, claimed, isAdmin));
+            assertFalse(claim.check(Permission.ENTER, player, false));
+        }
+        finally
+        {
+            Permission.ENTER.setAllowedByDefault(true);
+        }
+    }
+
+    @Test
+    public void testSessions() throws Exception
+    {
+        guard.canEnter(player, worldContext, pack(0, 0), isAdmin);
+        guard.canEnter(UUID.randomUUID(), worldContext, pack(0, 0), isAdmin);
+        assertEquals(2, guard.getSessionCount());
+        guard.removeSession(player);
+        assertEquals(1, guard.getSessionCount());
+        assertFalse(guard.shouldNotify(player));
+    }
+}
@@ -1,11 +1,14 @@
 package br.com.gamemods.mychunks.test;
 
+import br.com.gamemods.mychunks.PositionType;
 import com.flowpowered.math.vector.Vector2i;
 import com.flowpowered.math.vector.Vector3i;
 import org.junit.Test;
 
 import static org.junit.Assert.*;
 import static br.com.gamemods.mychunks.PositionType.*;
+import static br.com.gamemods.mychunks.Util.chunkToRegion;
+import static br.com.gamemods.mychunks.Util.chunkToRegionKey;
 
 public class PositionTypeTest
 {
@@ -87,4 +90,33 @@ public class PositionTypeTest
         assertEquals(new Vector2i(5984, 6576), noHeight);
         assertEquals(minChunkSectionBlock, addHeight(noHeight, 48));
     }
+
+    @Test
+    public void testPrimitiveTypes()
+    {
+        int[] coordinates = {5988, 6588, -1, -16, -17, -512, -513, 0, 15, 16, 511, 512, -5988};
+        for(PositionType from: values())
+            for(int x: coordinates)
+                for(int z: coordinates)
+                {
+                    Vector3i position = new Vector3i(x, 0, z);
+                    Vector3i chunk = from.toMinChunk(position);
+                    Vector3i region = from.toMinRegion(position);
+                    Vector3i block = from.toMinBlock(position);
+
+                    assertEquals(block.getX(), from.toMinBlock(x));
+                    assertEquals(chunk.getX(), from.toMinChunk(x));
+                    assertEquals(region.getZ(), from.toMinRegion(z));
+
+                    assertEquals(pack(chunk.getX(), chunk.getZ()), from.toMinChunkKey(x, z));
+                    assertEquals(pack(chunk.getX(), chunk.getZ()), from.toMinChunkKey(pack(x, z)));
+                    assertEquals(pack(region.getX(), region.getZ()), from.toMinRegionKey(x, z));
+                    assertEquals(pack(region.getX(), region.getZ()), from.toMinRegionKey(pack(x, z)));
+                }
+
+        Vector3i chunk = new Vector3i(374, 0, 411);
+        Vector2i region = chunkToRegion(chunk);
+        assertEquals(new Vector2i(11, 12), region);
+        assertEquals(pack(11, 12), chunkToRegionKey(374, 411));
+    }
 }
\ No newline at end of file
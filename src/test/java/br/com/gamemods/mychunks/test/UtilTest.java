@@ -1,11 +1,13 @@
 package br.com.gamemods.mychunks.test;
 
 import br.com.gamemods.mychunks.data.state.Permission;
+import com.flowpowered.math.vector.Vector3i;
 import org.junit.Test;
 
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.EnumSet;
+import java.util.HashSet;
 
 import static br.com.gamemods.mychunks.Util.*;
 import static org.junit.Assert.assertEquals;
@@ -65,4 +67,13 @@ public class UtilTest
         assertEquals("5568ace4a", normalizeEnglishIdentifier("5¢5^68ãçê4 - a"));
         assertEquals("2", normalizeIdentifier("１2➌➃❺"));
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testCardinalDirections() throws Exception
+    {
+        assertEquals(4, new HashSet<>(CARDINAL_DIRECTIONS).size());
+        for(Vector3i direction: CARDINAL_DIRECTIONS)
+            assertEquals(1, direction.abs().dot(Vector3i.ONE));
+        assertEquals(Vector3i.ZERO, CARDINAL_DIRECTIONS.stream().reduce(Vector3i.ZERO, Vector3i::add));
+    }
+}
@@ -0,0 +1,169 @@
+package br.com.gamemods.mychunks.test;
+
+import br.com.gamemods.mychunks.WriteBehindFlusher;
+import br.com.gamemods.mychunks.data.api.DataStorage;
+import br.com.gamemods.mychunks.data.api.DataStorageException;
+import br.com.gamemods.mychunks.data.api.WriteBatch;
+import br.com.gamemods.mychunks.data.binary.BinaryDataStorage;
+import br.com.gamemods.mychunks.data.state.*;
+import com.flowpowered.math.vector.Vector3i;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.util.*;
+import java.util.concurrent.Executor;
+
+import static br.com.gamemods.mychunks.PositionType.pack;
+import static org.junit.Assert.*;
+
+public class WriteBehindFlusherTest
+{
+    private static final Executor DIRECT = Runnable::run;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private File storageDir;
+    private WorldFallbackContext worldContext;
+    private PlayerName owner;
+    private List<WriteBatch> batches;
+    private boolean failWrites;
+
+    @Before
+    public void setUp() throws Exception
+    {
+        storageDir = folder.newFolder("binary");
+        worldContext = new WorldFallbackContext(UUID.randomUUID());
+        owner = new PlayerName(UUID.randomUUID(), "Player Owner");
+        batches = new ArrayList<>();
+        failWrites = false;
+    }
+
+    /**
+     * A flusher that writes synchronously and records the prepared batches
+     */
+    private WriteBehindFlusher flusher() throws Exception
+    {
+        BinaryDataStorage storage = new BinaryDataStorage(storageDir);
+        DataStorage recording = new DataStorage()
+        {
+            @Override
+            public Optional<ClaimedChunk> loadChunk(WorldFallbackContext worldContext, Vector3i position) throws DataStorageException
+            {
+                return storage.loadChunk(worldContext, position);
+            }
+
+            @Override
+            public WriteBatch prepareSave(Collection<ClaimedChunk> chunks) throws DataStorageException
+            {
+                WriteBatch batch = storage.prepareSave(chunks);
+                batches.add(batch);
+                return new WriteBatch()
+                {
+                    @Override
+                    public Collection<ClaimedChunk> getChunks()
+                    {
+                        return batch.getChunks();
+                    }
+
+                    @Override
+                    public void write() throws DataStorageException
+                    {
+                        if(failWrites)
+                            throw new DataStorageException("Simulated failure");
+                        batch.write();
+                    }
+                };
+            }
+
+            @Override
+            public void deleteChunk(UUID worldId, Vector3i position) throws DataStorageException
+            {
+                storage.deleteChunk(worldId, position);
+            }
+        };
+        return new WriteBehindFlusher(recording, DIRECT, DIRECT, LoggerFactory.getLogger(getClass()));
+    }
+
+    private ClaimedChunk claim(int x, int z)
+    {
+        ClaimedChunk chunk = new ClaimedChunk(worldContext, new Vector3i(x, 0, z));
+        chunk.setOwner(owner);
+        return chunk;
+    }
+
+    @Test
+    public void testCoalescing() throws Exception
+    {
+        WriteBehindFlusher flusher = flusher();
+        ClaimedChunk a = claim(1, 1), b = claim(2, 1);
+        for(int i = 0; i < 5; i++)
+        {
+            a.addMember(new Member(new PlayerName(UUID.randomUUID(), "Member "+i), new Rank("builder")));
+            flusher.markDirty(a);
+        }
+        flusher.markDirty(b);
+
+        assertEquals(2, flusher.getDirtyCount());
+        assertSame(a, flusher.getDirty(worldContext.getWorldId(), pack(1, 1)).get());
+
+        flusher.flushAll();
+        assertEquals(1, batches.size());
+        assertEquals(2, batches.get(0).getChunks().size());
+        assertEquals(0, flusher.getDirtyCount());
+        assertFalse(a.isModified());
+
+        ClaimedChunk loaded = new BinaryDataStorage(storageDir).loadChunk(worldContext, a.getPosition()).get();
+        assertEquals(5, loaded.getMembers().size());
+        assertTrue(new BinaryDataStorage(storageDir).loadChunk(worldContext, b.getPosition()).isPresent());
+
+        flusher.flushAll();
+        assertEquals("Nothing to flush", 1, batches.size());
+    }
+
+    @Test
+    public void testCollectModified() throws Exception
+    {
+        WriteBehindFlusher flusher = flusher();
+        ClaimedChunk a = claim(1, 1), b = claim(2, 1);
+        Rank rank = new Rank("builder");
+        a.addMember(new Member(owner, rank));
+        flusher.markDirty(a);
+        flusher.markDirty(b);
+        flusher.flushAll();
+
+        assertEquals(0, flusher.collectModified(Arrays.asList(a, b)));
+
+        rank.setName("helper");
+        assertTrue(WriteBehindFlusher.needsSave(a));
+        assertFalse(WriteBehindFlusher.needsSave(b));
+        assertEquals(1, flusher.collectModified(Arrays.asList(a, b)));
+
+        flusher.flush(worldContext.getWorldId());
+        assertFalse(rank.isModified());
+        assertEquals(Collections.singletonList(a), new ArrayList<>(batches.get(1).getChunks()));
+    }
+
+    @Test
+    public void testRetryOnFailure() throws Exception
+    {
+        WriteBehindFlusher flusher = flusher();
+        ClaimedChunk a = claim(-1, -1);
+        flusher.markDirty(a);
+
+        failWrites = true;
+        flusher.flushAll();
+        assertTrue(a.isModified());
+        assertSame(a, flusher.getDirty(worldContext.getWorldId(), pack(-1, -1)).get());
+        assertFalse(new BinaryDataStorage(storageDir).loadChunk(worldContext, a.getPosition()).isPresent());
+
+        failWrites = false;
+        flusher.flushAll();
+        assertFalse(a.isModified());
+        assertTrue(new BinaryDataStorage(storageDir).loadChunk(worldContext, a.getPosition()).isPresent());
+    }
+}
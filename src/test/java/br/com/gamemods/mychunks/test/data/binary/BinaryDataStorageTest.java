@@ -0,0 +1,370 @@
+package br.com.gamemods.mychunks.test.data.binary;
+
+import br.com.gamemods.mychunks.data.binary.BinaryDataStorage;
+import br.com.gamemods.mychunks.data.state.*;
+import com.flowpowered.math.vector.Vector3i;
+import com.google.common.cache.CacheStats;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.spongepowered.api.util.Tristate;
+
+import java.io.File;
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+public class BinaryDataStorageTest
+{
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private File storageDir;
+    private WorldFallbackContext worldContext;
+    private PlayerName owner, builder;
+    private Rank builderRank;
+
+    @Before
+    public void setUp() throws Exception
+    {
+        storageDir = folder.newFolder("binary");
+        worldContext = new WorldFallbackContext(UUID.randomUUID());
+        owner = new PlayerName(UUID.randomUUID(), "Player Owner");
+        builder = new PlayerName(UUID.randomUUID(), "Player Builder");
+        builderRank = new Rank("builder", EnumSet.of(Permission.MODIFY));
+    }
+
+    /**
+     * A new instance is used to make sure that the data is read from the disk and not from the caches
+     */
+    private Optional<ClaimedChunk> reload(Vector3i position) throws Exception
+    {
+        return new BinaryDataStorage(storageDir).loadChunk(worldContext, position);
+    }
+
+    @Test
+    public void testUnclaimed() throws Exception
+    {
+        BinaryDataStorage storage = new BinaryDataStorage(storageDir);
+        assertFalse(storage.loadChunk(worldContext, new Vector3i(5, 0, 9)).isPresent());
+    }
+
+    @Test
+    public void testMayBeClaimed() throws Exception
+    {
+        UUID worldId = worldContext.getWorldId();
+        BinaryDataStorage storage = new BinaryDataStorage(storageDir);
+        assertFalse(storage.mayBeClaimed(worldId, 5, 9));
+
+        storage.saveChunk(new ClaimedChunk(worldContext, new Vector3i(5, 0, 9)));
+        assertTrue(storage.mayBeClaimed(worldId, 5, 9));
+        assertFalse("Same region", storage.mayBeClaimed(worldId, 6, 9));
+        assertFalse("Other world", storage.mayBeClaimed(UUID.randomUUID(), 5, 9));
+        assertTrue(new BinaryDataStorage(storageDir).mayBeClaimed(worldId, 5, 9));
+
+        storage.deleteChunk(worldId, new Vector3i(5, 0, 9));
+        assertFalse(storage.mayBeClaimed(worldId, 5, 9));
+        assertFalse(new BinaryDataStorage(storageDir).loadChunk(worldContext, new Vector3i(5, 0, 9)).isPresent());
+    }
+
+    @Test
+    public void testSaveAndLoad() throws Exception
+    {
+        Vector3i position = new Vector3i(-380, 0, 568);
+        ClaimedChunk chunk = new ClaimedChunk(worldContext, position);
+        chunk.setOwner(owner);
+        chunk.addMember(new Member(builder, builderRank));
+        chunk.setPublicPermission(Permission.ENTER, Tristate.FALSE);
+
+        BinaryDataStorage storage = new BinaryDataStorage(storageDir);
+        storage.saveChunk(chunk);
+        assertFalse(chunk.isModified());
+        assertSame(chunk, storage.loadChunk(worldContext, position).get());
+
+        ClaimedChunk loaded = reload(position).get();
+        assertNotSame(chunk, loaded);
+        assertFalse(loaded.isModified());
+        assertEquals(position, loaded.getPosition());
+        assertEquals(worldContext, loaded.getWorldContext());
+        assertEquals(owner.getUniqueId(), loaded.getOwner().get().getUniqueId());
+        assertEquals(owner.getName(), loaded.getOwner().get().getName());
+        assertEquals(Optional.of(false), loaded.getPublicPermission(Permission.ENTER));
+        assertEquals(Optional.empty(), loaded.getPublicPermission(Permission.MODIFY));
+        assertTrue(loaded.check(Permission.MODIFY, builder));
+        assertFalse(loaded.check(Permission.ENTER, builder));
+
+        Member member = loaded.getMembers().get(builder.getUniqueId()).iterator().next();
+        assertEquals(builderRank.getUniqueId(), member.getRank().getUniqueId());
+        assertEquals(builderRank.getName(), member.getRank().getName());
+
+        assertFalse("The neighbour chunk is not claimed", reload(position.add(1, 0, 0)).isPresent());
+    }
+
+    @Test
+    public void testAdminChunk() throws Exception
+    {
+        Vector3i position = new Vector3i(0, 0, 0);
+        new BinaryDataStorage(storageDir).saveChunk(new ClaimedChunk(worldContext, position));
+
+        ClaimedChunk loaded = reload(position).get();
+        assertFalse(loaded.getOwner().isPresent());
+        assertTrue(loaded.check(Permission.MODIFY, PlayerName.ADMINS));
+    }
+
+    @Test
+    public void testRewriteAndDelete() throws Exception
+    {
+        BinaryDataStorage storage = new BinaryDataStorage(storageDir);
+        ClaimedChunk[] chunks = new ClaimedChunk[64];
+        for(int i = 0; i < chunks.length; i++)
+        {
+            chunks[i] = new ClaimedChunk(worldContext, new Vector3i(i * 7 - 200, 0, i * 3 - 100));
+            chunks[i].setOwner(owner);
+            storage.saveChunk(chunks[i]);
+        }
+
+        // Grow the records many times to force them to be moved and the file to be compacted
+        for(int round = 0; round < 20; round++)
+            for(ClaimedChunk chunk: chunks)
+            {
+                chunk.addMember(new Member(new PlayerName(UUID.randomUUID(), "Member "+round), builderRank));
+                storage.saveChunk(chunk);
+            }
+
+        storage.deleteChunk(worldContext.getWorldId(), chunks[0].getPosition());
+        assertFalse(storage.loadChunk(worldContext, chunks[0].getPosition()).isPresent());
+        assertFalse(reload(chunks[0].getPosition()).isPresent());
+
+        BinaryDataStorage fresh = new BinaryDataStorage(storageDir);
+        for(int i = 1; i < chunks.length; i++)
+        {
+            ClaimedChunk loaded = fresh.loadChunk(worldContext, chunks[i].getPosition()).get();
+            assertEquals(20, loaded.getMembers().size());
+            assertEquals(owner.getUniqueId(), loaded.getOwner().get().getUniqueId());
+        }
+    }
+
+    @Test
+    public void testMemoryMapped() throws Exception
+    {
+        BinaryDataStorage storage = new BinaryDataStorage(storageDir, true);
+        ClaimedChunk[] chunks = new ClaimedChunk[16];
+        for(int i = 0; i < chunks.length; i++)
+        {
+            chunks[i] = new ClaimedChunk(worldContext, new Vector3i(i, 0, -i));
+            chunks[i].setOwner(owner);
+            storage.saveChunk(chunks[i]);
+        }
+
+        // The records are read after the region file has grown, so the mapping must be refreshed
+        for(int round = 0; round < 5; round++)
+            for(ClaimedChunk chunk: chunks)
+            {
+                chunk.addMember(new Member(new PlayerName(UUID.randomUUID(), "Member "+round), builderRank));
+                storage.saveChunk(chunk);
+                assertEquals(round + 1, new BinaryDataStorage(storageDir, true)
+                        .loadChunk(worldContext, chunk.getPosition()).get().getMembers().size());
+            }
+
+        BinaryDataStorage mapped = new BinaryDataStorage(storageDir, true);
+        for(ClaimedChunk chunk: chunks)
+        {
+            ClaimedChunk loaded = mapped.loadChunk(worldContext, chunk.getPosition()).get();
+            assertEquals(5, loaded.getMembers().size());
+            assertEquals(owner.getName(), loaded.getOwner().get().getName());
+        }
+        assertFalse(mapped.loadChunk(worldContext, new Vector3i(100, 0, 100)).isPresent());
+    }
+
+    @Test
+    public void testMemoryMappedCompaction() throws Exception
+    {
+        BinaryDataStorage storage = new BinaryDataStorage(storageDir, true);
+        ClaimedChunk[] chunks = new ClaimedChunk[8];
+        for(int i = 0; i < chunks.length; i++)
+        {
+            chunks[i] = new ClaimedChunk(worldContext, new Vector3i(i, 0, i));
+            chunks[i].setOwner(owner);
+            for(int member = 0; member < 50; member++)
+                chunks[i].addMember(new Member(new PlayerName(UUID.randomUUID(), "Member "+member), builderRank));
+            storage.saveChunk(chunks[i]);
+        }
+
+        // Maps the region file on an other instance which keeps writing through the mapping
+        BinaryDataStorage mapped = new BinaryDataStorage(storageDir, true);
+        assertEquals(50, mapped.loadChunk(worldContext, chunks[0].getPosition()).get().getMembers().size());
+
+        File regionFile = new File(new File(storageDir, worldContext.getWorldId().toString()), "r.0.0.myc");
+        long largest = 0;
+        for(int round = 0; round < 10; round++)
+            for(ClaimedChunk chunk: chunks)
+            {
+                mapped.saveChunk(chunk);
+                largest = Math.max(largest, regionFile.length());
+            }
+        assertTrue("The region file was not compacted", regionFile.length() < largest);
+
+        for(ClaimedChunk chunk: chunks)
+        {
+            assertEquals(50, mapped.loadChunk(worldContext, chunk.getPosition()).get().getMembers().size());
+            assertEquals(50, new BinaryDataStorage(storageDir, true)
+                    .loadChunk(worldContext, chunk.getPosition()).get().getMembers().size());
+        }
+    }
+
+    @Test
+    public void testFailedCompaction() throws Exception
+    {
+        BinaryDataStorage storage = new BinaryDataStorage(storageDir, true);
+        ClaimedChunk chunk = new ClaimedChunk(worldContext, new Vector3i(3, 0, 3));
+        chunk.setOwner(owner);
+        for(int member = 0; member < 50; member++)
+            chunk.addMember(new Member(new PlayerName(UUID.randomUUID(), "Member "+member), builderRank));
+        storage.saveChunk(chunk);
+
+        // The compaction can't create its temporary file while a directory is in the way
+        File worldDir = new File(storageDir, worldContext.getWorldId().toString());
+        File regionFile = new File(worldDir, "r.0.0.myc");
+        File blocker = new File(worldDir, "r.0.0.myc.tmp");
+        assertTrue(new File(blocker, "blocker").mkdirs());
+
+        long largest = 0;
+        for(int round = 0; round < 50; round++)
+        {
+            storage.saveChunk(chunk);
+            largest = Math.max(largest, regionFile.length());
+        }
+        assertEquals("Nothing was compacted", largest, regionFile.length());
+        assertEquals(50, storage.loadChunk(worldContext, chunk.getPosition()).get().getMembers().size());
+
+        assertTrue(new File(blocker, "blocker").delete() && blocker.delete());
+        storage.saveChunk(chunk);
+        assertTrue("The compaction was tried again", regionFile.length() < largest);
+        assertEquals(50, storage.loadChunk(worldContext, chunk.getPosition()).get().getMembers().size());
+        assertEquals(50, new BinaryDataStorage(storageDir, true)
+                .loadChunk(worldContext, chunk.getPosition()).get().getMembers().size());
+    }
+
+    @Test
+    public void testPlayerNameTable() throws Exception
+    {
+        PlayerNameRegistry registry = new PlayerNameRegistry();
+        PlayerName player = registry.update(owner.getUniqueId(), owner.getName());
+        ClaimedChunk a = new ClaimedChunk(worldContext, new Vector3i(1, 0, 1));
+        ClaimedChunk b = new ClaimedChunk(worldContext, new Vector3i(900, 0, -900));
+        a.setOwner(player);
+        b.setOwner(player);
+        b.addMember(new Member(player, builderRank));
+
+        BinaryDataStorage storage = new BinaryDataStorage(storageDir, false, registry);
+        storage.saveChunk(a);
+        storage.saveChunk(b);
+        assertTrue(new File(storageDir, "players.myn").isFile());
+
+        PlayerNameRegistry freshRegistry = new PlayerNameRegistry();
+        BinaryDataStorage fresh = new BinaryDataStorage(storageDir, false, freshRegistry);
+        PlayerName loadedOwner = fresh.loadChunk(worldContext, a.getPosition()).get().getOwner().get();
+        ClaimedChunk loadedB = fresh.loadChunk(worldContext, b.getPosition()).get();
+        assertEquals(owner.getName(), loadedOwner.getName());
+        assertSame("Deduplicated across chunks", loadedOwner, loadedB.getOwner().get());
+        assertSame("Deduplicated across members", loadedOwner,
+                loadedB.getMembers().get(owner.getUniqueId()).iterator().next().getPlayerId());
+
+        // Renaming the player and saving a single chunk updates the name for all records
+        registry.update(owner.getUniqueId(), "Renamed Owner");
+        storage.saveChunk(a);
+        assertEquals("Renamed Owner", new BinaryDataStorage(storageDir)
+                .loadChunk(worldContext, b.getPosition()).get().getOwner().get().getName());
+    }
+
+    @Test
+    public void testRankDenials() throws Exception
+    {
+        Vector3i position = new Vector3i(12, 0, 34);
+        ClaimedChunk chunk = new ClaimedChunk(worldContext, position);
+        chunk.setOwner(owner);
+        chunk.setPublicPermission(Permission.ENTER, Tristate.TRUE);
+        chunk.addMember(new Member(builder, new Rank("banned", EnumSet.of(Permission.MODIFY), EnumSet.of(Permission.ENTER))));
+        new BinaryDataStorage(storageDir).saveChunk(chunk);
+
+        ClaimedChunk loaded = reload(position).get();
+        Rank rank = loaded.getMembers().get(builder.getUniqueId()).iterator().next().getRank();
+        assertEquals(Optional.of(false), rank.getPermission(Permission.ENTER));
+        assertEquals(Optional.of(true), rank.getPermission(Permission.MODIFY));
+        assertFalse(loaded.check(Permission.ENTER, builder));
+        assertTrue(loaded.check(Permission.MODIFY, builder));
+    }
+
+    @Test
+    public void testOwnerIndex() throws Exception
+    {
+        BinaryDataStorage storage = new BinaryDataStorage(storageDir);
+        worldContext.addOwnerListener(storage::ownerChanged);
+        UUID ownerId = owner.getUniqueId();
+
+        ClaimedChunk[] chunks = new ClaimedChunk[10];
+        for(int i = 0; i < chunks.length; i++)
+        {
+            chunks[i] = new ClaimedChunk(worldContext, new Vector3i(i * 40, 0, -i * 40));
+            chunks[i].setOwner(owner);
+        }
+        assertEquals("Indexed before being saved", 10, storage.countOwnedChunks(ownerId));
+        for(ClaimedChunk chunk: chunks)
+            storage.saveChunk(chunk);
+
+        chunks[0].setOwner(builder);
+        chunks[1].setOwner(null);
+        storage.saveChunk(chunks[0]);
+        storage.saveChunk(chunks[1]);
+        storage.deleteChunk(worldContext.getWorldId(), chunks[2].getPosition());
+        storage.saveChunk(new ClaimedChunk(worldContext, new Vector3i(-5, 0, -5)));
+
+        Set<Vector3i> expected = new HashSet<>();
+        for(int i = 3; i < chunks.length; i++)
+            expected.add(chunks[i].getPosition());
+
+        BinaryDataStorage fresh = new BinaryDataStorage(storageDir);
+        assertEquals(7, fresh.countOwnedChunks(ownerId));
+        assertEquals(Collections.singletonMap(worldContext.getWorldId(), expected), fresh.getOwnedChunks(ownerId));
+        assertEquals(Collections.singleton(chunks[0].getPosition()),
+                fresh.getOwnedChunks(builder.getUniqueId()).get(worldContext.getWorldId()));
+        assertEquals(2, fresh.countOwnedChunks(PlayerName.ADMINS.getUniqueId()));
+        assertEquals(0, fresh.countOwnedChunks(UUID.randomUUID()));
+        assertTrue(fresh.getOwnedChunks(UUID.randomUUID()).isEmpty());
+
+        // Storages created before the index existed have it built from the region files
+        assertTrue(new File(storageDir, "owners.myo").delete());
+        BinaryDataStorage rebuilt = new BinaryDataStorage(storageDir);
+        assertEquals(Collections.singletonMap(worldContext.getWorldId(), expected), rebuilt.getOwnedChunks(ownerId));
+        assertEquals(1, rebuilt.countOwnedChunks(builder.getUniqueId()));
+        assertEquals(2, rebuilt.countOwnedChunks(PlayerName.ADMINS.getUniqueId()));
+    }
+
+    @Test
+    public void testCacheStats() throws Exception
+    {
+        BinaryDataStorage storage = new BinaryDataStorage(storageDir, false, new PlayerNameRegistry(),
+                new BinaryDataStorage.CacheSettings(15, 5, 4));
+        for(int region = 0; region < 10; region++)
+            storage.saveChunk(new ClaimedChunk(worldContext, new Vector3i(region * 32, 0, 0)));
+        for(int region = 0; region < 10; region++)
+            assertTrue(storage.loadChunk(worldContext, new Vector3i(region * 32, 0, 0)).isPresent());
+
+        CacheStats regions = storage.getCacheStats().get("regions");
+        assertTrue(regions.loadCount() >= 10);
+        assertTrue(regions.evictionCount() > 0);
+        assertTrue(storage.getCachedRegions() <= 4);
+        assertEquals(1, storage.getCacheStats().get("worlds").loadCount());
+
+        long hits = regions.hitCount();
+        storage.loadChunk(worldContext, new Vector3i(9 * 32, 0, 0));
+        assertEquals(hits + 1, storage.getCacheStats().get("regions").hitCount());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidCacheSettings() throws Exception
+    {
+        new BinaryDataStorage.CacheSettings(15, 0, 100);
+    }
+}
@@ -0,0 +1,108 @@
+package br.com.gamemods.mychunks.test.data.state;
+
+import br.com.gamemods.mychunks.data.state.AdminCache;
+import br.com.gamemods.mychunks.data.state.ClaimedChunk;
+import br.com.gamemods.mychunks.data.state.Permission;
+import br.com.gamemods.mychunks.data.state.WorldFallbackContext;
+import com.flowpowered.math.vector.Vector3i;
+import org.junit.Before;
+import org.junit.Test;
+import org.spongepowered.api.entity.living.player.Player;
+
+import java.lang.reflect.Proxy;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class AdminCacheTest
+{
+    private AdminCache cache;
+    private AtomicBoolean admin;
+    private AtomicInteger lookups;
+    private Player player;
+
+    /**
+     * A player that only answers its ID and the permission lookups
+     */
+    private static Player player(UUID uniqueId, AtomicBoolean admin, AtomicInteger lookups)
+    {
+        return (Player) Proxy.newProxyInstance(Player.class.getClassLoader(), new Class<?>[]{Player.class},
+                (proxy, method, args) -> {
+                    switch (method.getName())
+                    {
+                        case "getUniqueId":
+                            return uniqueId;
+                        case "hasPermission":
+                            lookups.incrementAndGet();
+                            return AdminCache.PERMISSION.equals(args[args.length - 1]) && admin.get();
+                        case "hashCode":
+                            return uniqueId.hashCode();
+                        case "equals":
+                            return proxy == args[0];
+                        default:
+                            throw new UnsupportedOperationException(method.getName());
+                    }
+                });
+    }
+
+    @Before
+    public void setUp() throws Exception
+    {
+        cache = new AdminCache();
+        admin = new AtomicBoolean(true);
+        lookups = new AtomicInteger();
+        player = player(UUID.randomUUID(), admin, lookups);
+    }
+
+    @Test
+    public void testCached() throws Exception
+    {
+        for(int i = 0; i < 100; i++)
+            assertTrue(cache.isAdmin(player));
+        assertEquals(1, lookups.get());
+
+        admin.set(false);
+        assertTrue("Not refreshed yet", cache.isAdmin(player));
+        assertFalse(cache.refresh(player));
+        assertFalse(cache.isAdmin(player));
+        assertEquals(2, lookups.get());
+    }
+
+    @Test
+    public void testRefreshAll() throws Exception
+    {
+        AtomicBoolean otherAdmin = new AtomicBoolean(false);
+        Player other = player(UUID.randomUUID(), otherAdmin, lookups);
+        assertTrue(cache.isAdmin(player));
+        assertFalse(cache.isAdmin(other));
+
+        admin.set(false);
+        assertEquals(1, cache.refreshAll(Arrays.asList(player, other)));
+        assertFalse(cache.isAdmin(player));
+
+        // The offline player is forgotten and resolved again if it comes back
+        otherAdmin.set(true);
+        assertEquals(0, cache.refreshAll(Collections.singletonList(player)));
+        int before = lookups.get();
+        assertTrue(cache.isAdmin(other));
+        assertEquals(before + 1, lookups.get());
+    }
+
+    @Test
+    public void testPlayerChecks() throws Exception
+    {
+        ClaimedChunk chunk = new ClaimedChunk(new WorldFallbackContext(UUID.randomUUID()), Vector3i.ZERO);
+        for(int i = 0; i < 100; i++)
+            assertTrue(chunk.check(Permission.MODIFY, player, cache, false));
+        assertEquals("The checks read the cache", 1, lookups.get());
+
+        admin.set(false);
+        cache.refresh(player);
+        assertFalse(chunk.check(Permission.MODIFY, player, cache, false));
+        assertEquals(2, lookups.get());
+    }
+}
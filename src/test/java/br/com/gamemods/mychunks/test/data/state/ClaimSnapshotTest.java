@@ -0,0 +1,142 @@
+package br.com.gamemods.mychunks.test.data.state;
+
+import br.com.gamemods.mychunks.data.state.*;
+import com.flowpowered.math.vector.Vector3i;
+import org.junit.Before;
+import org.junit.Test;
+import org.spongepowered.api.util.Tristate;
+
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+public class ClaimSnapshotTest
+{
+    private WorldFallbackContext worldContext;
+    private PlayerName owner, member, outsider;
+    private Rank builderRank;
+
+    @Before
+    public void setUp() throws Exception
+    {
+        worldContext = new WorldFallbackContext(UUID.randomUUID());
+        owner = new PlayerName(UUID.randomUUID(), "Player Owner");
+        member = new PlayerName(UUID.randomUUID(), "Player Member");
+        outsider = new PlayerName(UUID.randomUUID(), "Player Outsider");
+        builderRank = new Rank("builder", EnumSet.of(Permission.MODIFY));
+    }
+
+    private void assertSameResults(ClaimedChunk chunk)
+    {
+        ClaimSnapshot snapshot = chunk.getSnapshot();
+        for(PlayerName player: Arrays.asList(owner, member, outsider))
+            for(boolean isAdmin: new boolean[]{false, true})
+                for(Permission permission: Permission.values())
+                    assertEquals(permission+" for "+player.getName()+" admin:"+isAdmin,
+                            chunk.check(permission, player.getUniqueId(), isAdmin),
+                            snapshot.check(permission, player.getUniqueId(), isAdmin)
+                    );
+    }
+
+    @Test
+    public void testSameResults() throws Exception
+    {
+        Random random = new Random(42);
+        Permission[] permissions = Permission.values();
+        Tristate[] values = Tristate.values();
+        for(int i = 0; i < 200; i++)
+        {
+            Zone zone = new Zone(worldContext, "Zone "+i);
+            ClaimedChunk chunk = new ClaimedChunk(worldContext, new Vector3i(i, 0, 0));
+            if(random.nextBoolean())
+                zone.addChunk(chunk);
+
+            PlayerName chunkOwner = random.nextBoolean()? owner : null;
+            chunk.setOwner(chunkOwner);
+            zone.setOwner(random.nextBoolean()? chunkOwner : null);
+            if(random.nextBoolean())
+                chunk.addMember(new Member(member, builderRank));
+            if(random.nextBoolean())
+                zone.addMember(new Member(member, builderRank));
+
+            for(int p = 0; p < 4; p++)
+            {
+                chunk.setPublicPermission(permissions[random.nextInt(permissions.length)], values[random.nextInt(values.length)]);
+                zone.setPublicPermission(permissions[random.nextInt(permissions.length)], values[random.nextInt(values.length)]);
+            }
+
+            assertSameResults(chunk);
+        }
+    }
+
+    @Test
+    public void testRebuild() throws Exception
+    {
+        Zone zone = new Zone(worldContext, "Zone");
+        ClaimedChunk chunk = new ClaimedChunk(worldContext, new Vector3i(5, 0, -5));
+        chunk.setOwner(owner);
+        zone.setOwner(owner);
+        zone.addChunk(chunk);
+
+        ClaimSnapshot snapshot = chunk.getSnapshot();
+        assertSame("Nothing changed", snapshot, chunk.getSnapshot());
+        assertEquals(zone.getUniqueId(), snapshot.getZoneId().get());
+        assertEquals(owner.getUniqueId(), snapshot.getOwnerId().get());
+        assertFalse(snapshot.check(Permission.MODIFY, member.getUniqueId(), false));
+
+        zone.addMember(new Member(member, builderRank));
+        ClaimSnapshot rebuilt = chunk.getSnapshot();
+        assertNotSame("The zone changed", snapshot, rebuilt);
+        assertTrue(rebuilt.check(Permission.MODIFY, member.getUniqueId(), false));
+        assertFalse("Snapshots are immutable", snapshot.check(Permission.MODIFY, member.getUniqueId(), false));
+
+        builderRank.setPermission(Permission.MODIFY, Tristate.FALSE);
+        assertFalse("A rank changed", chunk.getSnapshot().check(Permission.MODIFY, member.getUniqueId(), false));
+        builderRank.setPermission(Permission.MODIFY, Tristate.TRUE);
+
+        chunk.setPublicPermission(Permission.ENTER, Tristate.FALSE);
+        assertFalse(chunk.getSnapshot().check(Permission.ENTER, outsider.getUniqueId(), false));
+        assertSameResults(chunk);
+
+        zone.removeChunkAt(chunk.getPosition());
+        assertFalse(chunk.getSnapshot().getZoneId().isPresent());
+        assertFalse(chunk.getSnapshot().check(Permission.MODIFY, member.getUniqueId(), false));
+    }
+
+    @Test
+    public void testPublish() throws Exception
+    {
+        ClaimedChunk chunk = new ClaimedChunk(worldContext, new Vector3i(-3, 0, 7));
+        assertFalse(worldContext.getClaimSnapshot(-3, 7).isPresent());
+        assertFalse(worldContext.isPending(-3, 7));
+
+        worldContext.markPending(-3, 7);
+        assertTrue("Loading, not wilderness", worldContext.isPending(-3, 7));
+        assertFalse(worldContext.getClaimSnapshot(-3, 7).isPresent());
+
+        worldContext.publish(chunk);
+        assertFalse(worldContext.isPending(-3, 7));
+        ClaimSnapshot snapshot = worldContext.getClaimSnapshot(-3, 7).get();
+        assertTrue(snapshot.isAdminOwned());
+        assertEquals(-3, snapshot.getChunkX());
+        assertEquals(7, snapshot.getChunkZ());
+        assertTrue(snapshot.check(Permission.MODIFY, outsider.getUniqueId(), true));
+        assertFalse(snapshot.check(Permission.MODIFY, outsider.getUniqueId(), false));
+
+        worldContext.unpublish(-3, 7);
+        assertFalse(worldContext.getClaimSnapshot(-3, 7).isPresent());
+
+        // Unclaimed or unloaded before the data was read
+        worldContext.markPending(-3, 7);
+        worldContext.unpublish(-3, 7);
+        assertFalse(worldContext.isPending(-3, 7));
+
+        try
+        {
+            worldContext.publish(new ClaimedChunk(new WorldFallbackContext(UUID.randomUUID()), Vector3i.ZERO));
+            throw new AssertionError("Accepted a chunk from other world");
+        }
+        catch (IllegalArgumentException ignored)
+        {}
+    }
+}
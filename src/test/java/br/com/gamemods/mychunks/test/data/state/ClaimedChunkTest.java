@@ -6,11 +6,12 @@ import org.junit.Before;
 import org.junit.FixMethodOrder;
 import org.junit.Test;
 import org.junit.runners.MethodSorters;
+import org.spongepowered.api.util.Tristate;
 
+import java.util.Optional;
 import java.util.UUID;
 
-import static org.junit.Assert.assertFalse;
-import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.*;
 
 @FixMethodOrder(MethodSorters.NAME_ASCENDING)
 public class ClaimedChunkTest extends PermissionContextTest
@@ -116,4 +117,27 @@ public class ClaimedChunkTest extends PermissionContextTest
                 integratedChunk.check(Permission.MODIFY, builder)
         );
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testCZonePublicPermission() throws Exception
+    {
+        PlayerName outsider = new PlayerName(UUID.randomUUID(), "Outsider");
+        soldChunk.setPublicPermission(Permission.MODIFY, Tristate.TRUE);
+        assertTrue(soldChunk.check(Permission.MODIFY, outsider));
+
+        zone.setPublicPermission(Permission.MODIFY, Tristate.FALSE);
+        assertFalse("The zone public permission overrides the public permission of a sold chunk",
+                soldChunk.check(Permission.MODIFY, outsider)
+        );
+        assertTrue("The owner of a sold chunk is not affected by the zone public permission",
+                soldChunk.check(Permission.MODIFY, soldChunk.getOwner().get())
+        );
+        assertEquals(Optional.of(false), soldChunk.getPermission(Permission.MODIFY, outsider.getUniqueId(), false));
+
+        integratedChunk.setPublicPermission(Permission.ENTER, Tristate.FALSE);
+        zone.setPublicPermission(Permission.ENTER, Tristate.TRUE);
+        assertFalse("The zone public permission does not override the public permission of an integrated chunk",
+                integratedChunk.check(Permission.ENTER, outsider)
+        );
+    }
+}
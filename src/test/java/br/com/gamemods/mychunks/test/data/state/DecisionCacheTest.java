@@ -0,0 +1,143 @@
+package br.com.gamemods.mychunks.test.data.state;
+
+import br.com.gamemods.mychunks.data.state.*;
+import com.flowpowered.math.vector.Vector3i;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.spongepowered.api.util.Tristate;
+
+import java.lang.ref.WeakReference;
+import java.util.EnumSet;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class DecisionCacheTest
+{
+    private WorldFallbackContext worldContext;
+    private PlayerName owner, member;
+    private Rank builderRank;
+    private DecisionCache cache;
+    private AtomicInteger resolutions;
+
+    /**
+     * Counts how many times the member permissions are resolved
+     */
+    private class CountingChunk extends ClaimedChunk
+    {
+        private CountingChunk(Vector3i position)
+        {
+            super(worldContext, position);
+        }
+
+        @Override
+        public long getPermissionMask(UUID playerUniqueId, boolean isAdmin)
+        {
+            resolutions.incrementAndGet();
+            return super.getPermissionMask(playerUniqueId, isAdmin);
+        }
+    }
+
+    @Before
+    public void setUp() throws Exception
+    {
+        worldContext = new WorldFallbackContext(UUID.randomUUID());
+        owner = new PlayerName(UUID.randomUUID(), "Player Owner");
+        member = new PlayerName(UUID.randomUUID(), "Player Member");
+        builderRank = new Rank("builder", EnumSet.of(Permission.MODIFY));
+        cache = new DecisionCache();
+        resolutions = new AtomicInteger();
+    }
+
+    @After
+    public void tearDown() throws Exception
+    {
+        Permission.ENTER.setAllowedByDefaultOnTheWild(true);
+    }
+
+    @Test
+    public void testRepeatedChecks() throws Exception
+    {
+        ClaimedChunk chunk = new CountingChunk(Vector3i.ZERO);
+        chunk.setOwner(owner);
+        chunk.addMember(new Member(member, builderRank));
+
+        for(int i = 0; i < 100; i++)
+        {
+            assertTrue(cache.check(chunk, Permission.MODIFY, member.getUniqueId(), false));
+            assertTrue("Allowed by the world fallback", cache.check(chunk, Permission.ENTER, member.getUniqueId(), false));
+        }
+        assertEquals("One resolution per permission", 2, resolutions.get());
+
+        assertTrue("Other player", cache.check(chunk, Permission.MODIFY, owner.getUniqueId(), false));
+        assertTrue("Admin flag is part of the key", cache.check(chunk, Permission.ENTER, member.getUniqueId(), true)
+                == chunk.check(Permission.ENTER, member.getUniqueId(), true));
+        assertEquals(2, cache.size());
+
+        cache.remove(member.getUniqueId());
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    public void testInvalidation() throws Exception
+    {
+        Zone zone = new Zone(worldContext, "Zone");
+        zone.setOwner(owner);
+        ClaimedChunk chunk = new ClaimedChunk(worldContext, new Vector3i(3, 0, 3));
+        chunk.setOwner(owner);
+        zone.addChunk(chunk);
+        UUID memberId = member.getUniqueId();
+        assertFalse(cache.check(chunk, Permission.MODIFY, memberId, false));
+
+        zone.addMember(new Member(member, builderRank));
+        assertTrue("The zone changed", cache.check(chunk, Permission.MODIFY, memberId, false));
+
+        builderRank.setPermission(Permission.MODIFY, Tristate.FALSE);
+        assertFalse("A rank changed", cache.check(chunk, Permission.MODIFY, memberId, false));
+        builderRank.setPermission(Permission.MODIFY, Tristate.TRUE);
+        assertTrue(cache.check(chunk, Permission.MODIFY, memberId, false));
+
+        chunk.setPublicPermission(Permission.ENTER, Tristate.FALSE);
+        assertFalse("The chunk changed", cache.check(chunk, Permission.ENTER, memberId, false));
+        chunk.setPublicPermission(Permission.ENTER, Tristate.UNDEFINED);
+
+        WildernessContext wilderness = worldContext.getWilderness();
+        assertTrue(cache.check(wilderness, Permission.ENTER, memberId, false));
+        Permission.ENTER.setAllowedByDefaultOnTheWild(false);
+        assertFalse("The defaults changed", cache.check(wilderness, Permission.ENTER, memberId, false));
+    }
+
+    @Test
+    public void testSlotCollisions() throws Exception
+    {
+        ClaimedChunk[] chunks = new ClaimedChunk[64];
+        for(int i = 0; i < chunks.length; i++)
+        {
+            chunks[i] = new ClaimedChunk(worldContext, new Vector3i(i, 0, 0));
+            chunks[i].setPublicPermission(Permission.MODIFY, Tristate.fromBoolean(i % 3 == 0));
+        }
+
+        for(int round = 0; round < 3; round++)
+            for(int i = 0; i < chunks.length; i++)
+                assertEquals(i % 3 == 0, cache.check(chunks[i], Permission.MODIFY, member.getUniqueId(), false));
+    }
+
+    @Test
+    public void testUnloadedChunksAreReleased() throws Exception
+    {
+        ClaimedChunk chunk = new ClaimedChunk(worldContext, new Vector3i(9, 0, 9));
+        assertFalse(cache.check(chunk, Permission.MODIFY, member.getUniqueId(), false));
+        WeakReference<ClaimedChunk> reference = new WeakReference<>(chunk);
+        chunk = null;
+
+        for(int i = 0; i < 50 && reference.get() != null; i++)
+        {
+            System.gc();
+            Thread.sleep(10);
+        }
+        assertNull("The cached decision keeps the chunk in memory", reference.get());
+        assertEquals(1, cache.size());
+    }
+}
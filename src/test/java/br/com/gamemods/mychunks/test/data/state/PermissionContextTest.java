@@ -7,8 +7,9 @@ import org.junit.Test;
 import org.junit.runners.MethodSorters;
 import org.spongepowered.api.util.Tristate;
 
-import java.util.EnumSet;
-import java.util.UUID;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
 
 import static org.junit.Assert.*;
 
@@ -131,4 +132,147 @@ public class PermissionContextTest
                 context.check(Permission.MODIFY, builder.getUniqueId())
         );
     }
+
+    @Test
+    public void testCMasks() throws Exception
+    {
+        context.setOwner(owner);
+        context.addMember(new Member(builder, builderRank));
+        context.setPublicPermission(Permission.ENTER, Tristate.FALSE);
+
+        assertEquals(Permission.allMask(), context.getPermissionMask(owner.getUniqueId(), false));
+        assertEquals(Permission.MODIFY.mask(), context.getPermissionMask(builder.getUniqueId(), false));
+        assertEquals(0, context.getPermissionMask(UUID.randomUUID(), false));
+        assertEquals(Permission.ENTER.denyMask(), context.getPublicPermissionMask());
+
+        Rank visitorRank = new Rank("visitor", EnumSet.of(Permission.ENTER));
+        context.addMember(new Member(builder, visitorRank));
+        assertEquals("The member masks are recompiled when a member is added",
+                Permission.MODIFY.mask() | Permission.ENTER.mask(), context.getPermissionMask(builder.getUniqueId(), false)
+        );
+        assertTrue(context.check(Permission.ENTER, builder.getUniqueId()));
+
+        context.removeMember(new Member(builder, builderRank));
+        assertEquals("The member masks are recompiled when a member is removed",
+                Permission.ENTER.mask(), context.getPermissionMask(builder.getUniqueId(), false)
+        );
+        assertFalse(context.check(Permission.MODIFY, builder.getUniqueId()));
+
+        context.setModified(false);
+        context.setPublicPermission(Permission.ENTER, Tristate.UNDEFINED);
+        assertTrue("Removing a public permission marks the context as modified", context.isModified());
+        assertEquals(0, context.getPublicPermissionMask());
+    }
+
+    @Test
+    public void testDConcurrentReads() throws Exception
+    {
+        context.setOwner(owner);
+        Rank visitorRank = new Rank("visitor", EnumSet.of(Permission.ENTER));
+        AtomicBoolean running = new AtomicBoolean(true);
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        Thread reader = new Thread(() -> {
+            try
+            {
+                while(running.get())
+                {
+                    // Snapshots never expose a member set while it is being emptied
+                    Map<UUID, Set<Member>> members = context.getMembers();
+                    for(Set<Member> memberSet: members.values())
+                        assertFalse(memberSet.isEmpty());
+                    context.check(Permission.MODIFY, builder.getUniqueId());
+                    assertTrue(context.check(Permission.MODIFY, owner.getUniqueId()));
+                }
+            }
+            catch(Throwable e)
+            {
+                failure.set(e);
+            }
+        });
+        reader.start();
+
+        try
+        {
+            for(int i = 0; i < 2000; i++)
+            {
+                Member member = new Member(new PlayerName(UUID.randomUUID(), "Player "+i), visitorRank);
+                context.addMember(member);
+                context.setPublicPermission(Permission.MODIFY, Tristate.fromBoolean(i % 2 == 0));
+                assertTrue(context.check(Permission.ENTER, member.getPlayerId().getUniqueId()));
+                assertTrue(context.removeMember(member));
+            }
+        }
+        finally
+        {
+            running.set(false);
+            reader.join();
+        }
+
+        if(failure.get() != null)
+            throw new AssertionError("The reader thread failed", failure.get());
+
+        try
+        {
+            context.getMembers().put(UUID.randomUUID(), Collections.emptySet());
+            throw new AssertionError("The members snapshot is mutable");
+        }
+        catch (UnsupportedOperationException ignored)
+        {}
+    }
+
+    @Test
+    public void testERankDenial() throws Exception
+    {
+        context.setOwner(owner);
+        context.setPublicPermission(Permission.ENTER, Tristate.TRUE);
+        Rank banned = new Rank("banned", EnumSet.noneOf(Permission.class), EnumSet.of(Permission.ENTER, Permission.MODIFY));
+        assertEquals(Optional.of(false), banned.getPermission(Permission.ENTER));
+        assertEquals(Optional.empty(), builderRank.getPermission(Permission.ENTER));
+
+        context.addMember(new Member(builder, banned));
+        assertFalse("The rank denial overrides the public permission", context.check(Permission.ENTER, builder));
+        assertEquals(Optional.of(false), context.getPermission(Permission.ENTER, builder.getUniqueId(), false));
+
+        context.addMember(new Member(builder, builderRank));
+        assertFalse("A denial wins over a grant from an other rank", context.check(Permission.MODIFY, builder));
+
+        banned.setPermission(Permission.MODIFY, Tristate.UNDEFINED);
+        assertTrue(banned.isModified());
+        assertTrue("The compiled masks are discarded when a rank changes", context.check(Permission.MODIFY, builder));
+        assertFalse(context.check(Permission.ENTER, builder));
+        assertTrue("The owner is not affected", context.check(Permission.ENTER, owner));
+
+        banned.setPermission(Permission.ENTER, Tristate.TRUE);
+        assertTrue(context.check(Permission.ENTER, builder));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testERankConflict() throws Exception
+    {
+        new Rank("conflict", EnumSet.of(Permission.MODIFY), EnumSet.of(Permission.MODIFY));
+    }
+
+    @Test
+    public void testFWildernessMask() throws Exception
+    {
+        WildernessContext wilderness = new WildernessContext();
+        boolean original = Permission.MODIFY.isAllowedByDefaultOnTheWild();
+        try
+        {
+            for(Tristate value: Tristate.values())
+                for(boolean wildDefault: new boolean[]{false, true})
+                {
+                    wilderness.setPublicPermission(Permission.MODIFY, value);
+                    Permission.MODIFY.setAllowedByDefaultOnTheWild(wildDefault);
+                    boolean expected = wilderness.getPublicPermission(Permission.MODIFY).orElse(wildDefault);
+                    assertEquals(value+" default:"+wildDefault, expected, wilderness.isAllowed(Permission.MODIFY));
+                    assertEquals(expected, wilderness.check(Permission.MODIFY, owner.getUniqueId(), true));
+                    assertEquals(Permission.ENTER.isAllowedByDefaultOnTheWild(), wilderness.isAllowed(Permission.ENTER));
+                }
+        }
+        finally
+        {
+            Permission.MODIFY.setAllowedByDefaultOnTheWild(original);
+        }
+    }
 }
@@ -41,4 +41,21 @@ public class PermissionTest
         modified.add(MODIFY);
         assertEquals(modified, getDefaultWildPermissions());
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testMasks() throws Exception
+    {
+        long all = 0;
+        for(Permission permission: values())
+        {
+            assertEquals(1, Long.bitCount(permission.mask()));
+            assertEquals(0, permission.mask() & all);
+            assertEquals(0, permission.denyMask() & GRANT_BITS);
+            all |= permission.mask();
+        }
+        assertEquals(all, allMask());
+        assertEquals(all, mask(EnumSet.allOf(Permission.class)));
+        assertEquals(EnumSet.allOf(Permission.class), fromMask(all));
+        assertEquals(EnumSet.of(ENTER), fromMask(ENTER.mask() | MODIFY.denyMask()));
+    }
+}
@@ -0,0 +1,39 @@
+package br.com.gamemods.mychunks.test.data.state;
+
+import br.com.gamemods.mychunks.data.state.PlayerName;
+import br.com.gamemods.mychunks.data.state.PlayerNameRegistry;
+import org.junit.Test;
+
+import java.util.UUID;
+
+import static org.junit.Assert.*;
+
+public class PlayerNameRegistryTest
+{
+    @Test
+    public void testInterning() throws Exception
+    {
+        PlayerNameRegistry registry = new PlayerNameRegistry();
+        UUID playerId = UUID.randomUUID();
+        assertFalse(registry.getIfPresent(playerId).isPresent());
+
+        PlayerName player = registry.get(playerId, "Stored Name");
+        assertSame(player, registry.get(playerId, "Other Stored Name"));
+        assertEquals("The stored name does not replace the registered name", "Stored Name", player.getName());
+        assertSame(player, registry.getIfPresent(playerId).get());
+
+        assertSame(player, registry.update(playerId, "Current Name"));
+        assertEquals("Current Name", player.getName());
+        assertTrue(player.isModified());
+
+        assertSame(PlayerName.ADMINS, registry.get(PlayerName.ADMINS.getUniqueId(), "Anything"));
+        assertSame(PlayerName.WILDERNESS, registry.update(PlayerName.WILDERNESS.getUniqueId(), "Anything"));
+        assertEquals("Nature", PlayerName.WILDERNESS.getName());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testEmptyName() throws Exception
+    {
+        new PlayerNameRegistry().get(UUID.randomUUID(), " ");
+    }
+}
@@ -0,0 +1,82 @@
+package br.com.gamemods.mychunks.test.data.state;
+
+import br.com.gamemods.mychunks.data.state.ClaimedChunk;
+import br.com.gamemods.mychunks.data.state.WorldFallbackContext;
+import br.com.gamemods.mychunks.data.state.Zone;
+import br.com.gamemods.mychunks.data.state.ZoneIndex;
+import com.flowpowered.math.vector.Vector3i;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+public class ZoneIndexTest
+{
+    private WorldFallbackContext worldContext;
+    private ZoneIndex index;
+    private Zone line, square;
+
+    @Before
+    public void setUp() throws Exception
+    {
+        worldContext = new WorldFallbackContext(UUID.randomUUID());
+        index = worldContext.getZoneIndex();
+        line = new Zone(worldContext, "Line");
+        square = new Zone(worldContext, "Square");
+
+        // Crosses the regions 0,0 and 1,0
+        for(int x = 0; x <= 40; x++)
+            line.addChunk(new ClaimedChunk(worldContext, new Vector3i(x, 0, 0)));
+
+        // Inside the region -4,-4
+        for(int x = -100; x < -90; x++)
+            for(int z = -100; z < -90; z++)
+                square.addChunk(new ClaimedChunk(worldContext, new Vector3i(x, 0, z)));
+    }
+
+    @Test
+    public void testRegions() throws Exception
+    {
+        assertEquals(Collections.singleton(line), index.getZonesInRegion(0, 0));
+        assertEquals(Collections.singleton(line), index.getZonesInRegion(1, 0));
+        assertEquals(Collections.singleton(square), index.getZonesInRegion(-4, -4));
+        assertTrue(index.getZonesInRegion(0, 1).isEmpty());
+    }
+
+    @Test
+    public void testIntersecting() throws Exception
+    {
+        assertEquals(Collections.singleton(line), index.getZonesIntersecting(35, -5, 50, 5));
+        assertTrue("Same region but no chunk inside", index.getZonesIntersecting(0, 1, 31, 31).isEmpty());
+        assertTrue(index.getZonesIntersecting(41, 0, 60, 0).isEmpty());
+        assertEquals(Collections.singleton(square), index.getZonesIntersecting(-91, -91, -91, -91));
+        assertEquals(new HashSet<>(Arrays.asList(line, square)), index.getZonesIntersecting(-128, -128, 63, 31));
+        assertEquals(new HashSet<>(Arrays.asList(line, square)),
+                index.getZonesIntersecting(-1_000_000, -1_000_000, 1_000_000, 1_000_000));
+    }
+
+    @Test
+    public void testRemoval() throws Exception
+    {
+        for(int x = 40; x >= 32; x--)
+            line.removeChunkAt(new Vector3i(x, 0, 0));
+
+        assertTrue(index.getZonesInRegion(1, 0).isEmpty());
+        assertTrue(index.getZonesIntersecting(32, 0, 100, 0).isEmpty());
+        assertEquals(Collections.singleton(line), index.getZonesIntersecting(31, 0, 100, 0));
+
+        Zone other = new Zone(worldContext, "Other");
+        ClaimedChunk moved = line.getChunkAt(new Vector3i(31, 0, 0)).get();
+        other.addChunk(moved);
+        assertEquals(Collections.singleton(other), index.getZonesIntersecting(31, 0, 31, 0));
+        assertEquals(new HashSet<>(Arrays.asList(line, other)), index.getZonesInRegion(0, 0));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidArea() throws Exception
+    {
+        index.getZonesIntersecting(10, 0, 0, 0);
+    }
+}
@@ -12,6 +12,8 @@ import org.junit.Test;
 import javax.naming.InvalidNameException;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
 
 import static org.junit.Assert.*;
 
@@ -151,4 +153,76 @@ public class ZoneTest extends PermissionContextTest
         catch (IllegalArgumentException ignored)
         {}
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testAdjacency() throws Exception
+    {
+        WorldFallbackContext worldContext = new WorldFallbackContext(zone1.getWorldId());
+        zone1.addChunk(new ClaimedChunk(worldContext, new Vector3i(5, 0, 9)));
+
+        assertTrue(zone1.isTouching(6, 9));
+        assertTrue(zone1.isTouching(5, 8));
+        assertFalse(zone1.isTouching(6, 10));
+        assertFalse(zone1.isTouching(5, 9));
+        try
+        {
+            zone1.addChunk(new ClaimedChunk(worldContext, new Vector3i(6, 0, 20)));
+            throw new AssertionError("Accepted a chunk that is only aligned with the zone in one axis");
+        }
+        catch (IllegalArgumentException ignored)
+        {}
+    }
+
+    @Test
+    public void testLargeZone() throws Exception
+    {
+        WorldFallbackContext worldContext = new WorldFallbackContext(zone1.getWorldId());
+        for(int z = 0; z < 200; z++)
+            for(int x = 0; x < 250; x++)
+                zone1.addChunk(new ClaimedChunk(worldContext, new Vector3i(x - 125, 0, z - 100)));
+
+        assertEquals(50_000, zone1.getChunkCount());
+        assertTrue(zone1.getChunkAt(new Vector3i(124, 0, 99)).isPresent());
+    }
+
+    @Test
+    public void testConcurrentChunkReads() throws Exception
+    {
+        WorldFallbackContext worldContext = new WorldFallbackContext(zone1.getWorldId());
+        zone1.addChunk(new ClaimedChunk(worldContext, new Vector3i(0, 0, 0)));
+        AtomicBoolean running = new AtomicBoolean(true);
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        Thread reader = new Thread(() -> {
+            try
+            {
+                while(running.get())
+                {
+                    int count = zone1.getChunkCount();
+                    assertTrue(zone1.getChunkAt(new Vector3i(0, 0, 0)).isPresent());
+                    assertTrue(zone1.hasChunkInside(-1, -1, count, 1));
+                    zone1.isChunkRequired(new Vector3i(count / 2, 0, 0));
+                }
+            }
+            catch(Throwable e)
+            {
+                failure.set(e);
+            }
+        });
+        reader.start();
+
+        try
+        {
+            for(int x = 1; x < 5000; x++)
+                zone1.addChunk(new ClaimedChunk(worldContext, new Vector3i(x, 0, 0)));
+        }
+        finally
+        {
+            running.set(false);
+            reader.join();
+        }
+
+        if(failure.get() != null)
+            throw new AssertionError("The reader thread failed", failure.get());
+        assertEquals(5000, zone1.getChunkCount());
+    }
+}